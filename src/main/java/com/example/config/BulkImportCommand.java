@@ -0,0 +1,77 @@
+package com.example.config;
+
+import com.example.dto.TransferResult;
+import com.example.service.BulkImportService;
+import com.example.service.FileFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Offline import: loads accounts and/or messages from files and exits instead of serving requests. Accounts are loaded
+ * first, so the messages may refer to them. For example
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none --spring.profiles.active=fast \
+ *      --app.import.accounts-file=accounts.csv --app.import.messages-file=messages.csv --app.import.format=csv
+ * </pre>
+ * Progress is logged every app.import.progress-interval-ms.
+ */
+@Component
+@ConditionalOnExpression("'${app.import.accounts-file:}' != '' or '${app.import.messages-file:}' != ''")
+public class BulkImportCommand implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkImportCommand.class);
+
+    private final BulkImportService bulkImportService;
+    private final ConfigurableApplicationContext context;
+    private final String accountsFile;
+    private final String messagesFile;
+    private final FileFormat format;
+
+    public BulkImportCommand(BulkImportService bulkImportService, ConfigurableApplicationContext context,
+                             @Value("${app.import.accounts-file:}") String accountsFile,
+                             @Value("${app.import.messages-file:}") String messagesFile,
+                             @Value("${app.import.format:ndjson}") String format) {
+        this.bulkImportService = bulkImportService;
+        this.context = context;
+        this.accountsFile = accountsFile;
+        this.messagesFile = messagesFile;
+        this.format = FileFormat.fromName(format);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!accountsFile.isEmpty()) {
+            Path file = Paths.get(accountsFile);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                report("accounts", bulkImportService.importAccounts(format, channel), file);
+            }
+        }
+        if (!messagesFile.isEmpty()) {
+            Path file = Paths.get(messagesFile);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                report("messages", bulkImportService.importMessages(format, channel), file);
+            }
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+
+    private static void report(String target, TransferResult result, Path file) {
+        log.info("Imported {} from {}: {}", target, file.toAbsolutePath(), result);
+        for (String rejection : result.getRejections()) {
+            log.warn("  {}", rejection);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.config;
+
+import com.example.util.Bulkhead;
+import com.example.util.Bulkheaded;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates the read, write and auth {@link Bulkhead}s and runs every {@link Bulkheaded} service method on its
+ * bulkhead. The advice is ordered outside the transaction advice, so a method's transaction, and its connection,
+ * belong to the bulkhead's thread.
+ *
+ * The thread counts alone only bound the bulkheaded paths: the bulk import, export streaming, the archiver and the
+ * other scheduled jobs run on no bulkhead and could still take every connection. The auth bulkhead's connections are
+ * therefore reserved in the primary pool by a {@link ReservedConnectionsDataSource}; every other thread shares the
+ * rest. Accounts only live in the primary database, so the shard and replica pools, which are sized on their own, do
+ * not affect logins. The read and write bulkheads must leave room in the shared part for those unbulkheaded paths.
+ */
+@Configuration
+public class BulkheadConfig {
+
+    private final int readThreads;
+    private final int writeThreads;
+    private final int authThreads;
+    private final int queueCapacity;
+
+    public BulkheadConfig(@Value("${app.bulkheads.reads.threads:4}") int readThreads,
+                          @Value("${app.bulkheads.writes.threads:3}") int writeThreads,
+                          @Value("${app.bulkheads.auth.threads:2}") int authThreads,
+                          @Value("${app.bulkheads.queue-capacity:50}") int queueCapacity,
+                          @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        if (readThreads + writeThreads + authThreads >= poolSize) {
+            throw new IllegalStateException("The bulkheads' " + (readThreads + writeThreads + authThreads)
+                    + " threads have to leave room in the connection pool of " + poolSize + ".");
+        }
+        this.readThreads = readThreads;
+        this.writeThreads = writeThreads;
+        this.authThreads = authThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead readBulkhead(MeterRegistry meterRegistry) {
+        return register(new Bulkhead(Bulkheaded.READS, readThreads, queueCapacity), meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead writeBulkhead(MeterRegistry meterRegistry) {
+        return register(new Bulkhead(Bulkheaded.WRITES, writeThreads, queueCapacity), meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public Bulkhead authBulkhead(MeterRegistry meterRegistry) {
+        return register(new Bulkhead(Bulkheaded.AUTH, authThreads, queueCapacity), meterRegistry);
+    }
+
+    private static Bulkhead register(Bulkhead bulkhead, MeterRegistry meterRegistry) {
+        Gauge.builder("bulkhead.queue.depth", bulkhead, Bulkhead::getQueueDepth)
+                .description("Calls waiting for a bulkhead thread")
+                .tag("name", bulkhead.getName())
+                .register(meterRegistry);
+        Gauge.builder("bulkhead.active", bulkhead, Bulkhead::getActive)
+                .description("Bulkhead threads running a call")
+                .tag("name", bulkhead.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("bulkhead.rejected", bulkhead, Bulkhead::getRejected)
+                .description("Calls rejected because the bulkhead was full")
+                .tag("name", bulkhead.getName())
+                .register(meterRegistry);
+        return bulkhead;
+    }
+
+    /**
+     * Wraps the primary connection pool, the auto-configured one or the primary of a replica setup, so that
+     * app.bulkheads.auth.threads of its connections are kept for the auth bulkhead. Static, since post-processors are
+     * created before ordinary beans.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static BeanPostProcessor reservedAuthConnections(
+            @Value("${app.bulkheads.enabled:true}") boolean enabled,
+            @Value("${app.bulkheads.auth.threads:2}") int authThreads,
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+            @Value("${spring.datasource.hikari.connection-timeout:30000}") long connectionTimeoutMillis) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (enabled && bean instanceof HikariDataSource
+                        && (beanName.equals("dataSource") || beanName.equals("primaryDataSource"))) {
+                    return new ReservedConnectionsDataSource((DataSource) bean, Bulkheaded.AUTH,
+                            poolSize - authThreads, connectionTimeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Static and with the bulkheads looked up on first use, since advisors are created before ordinary beans.
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor bulkheadAdvisor(@Value("${app.bulkheads.enabled:true}") boolean enabled,
+                                          ObjectProvider<Bulkhead> bulkheads) {
+        Map<String, Bulkhead> byName = new ConcurrentHashMap<>();
+        MethodInterceptor interceptor = invocation -> {
+            if (!enabled) {
+                return invocation.proceed();
+            }
+            String name = invocation.getMethod().getAnnotation(Bulkheaded.class).value();
+            Bulkhead bulkhead = byName.computeIfAbsent(name, key -> bulkheads.orderedStream()
+                    .filter(candidate -> candidate.getName().equals(key))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("There is no bulkhead named " + key + ".")));
+            return bulkhead.call(() -> {
+                try {
+                    return invocation.proceed();
+                } catch (Exception | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new UndeclaredThrowableException(t);
+                }
+            });
+        };
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                AnnotationMatchingPointcut.forMethodAnnotation(Bulkheaded.class), interceptor);
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+}
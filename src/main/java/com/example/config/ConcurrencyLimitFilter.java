@@ -0,0 +1,161 @@
+package com.example.config;
+
+import com.example.util.AdaptiveConcurrencyLimit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Sheds load in front of the controller: each request needs a permit from an {@link AdaptiveConcurrencyLimit}, one for
+ * reads (GET and HEAD) and one for writes, so a backlog of slow writes cannot starve reads and the other way around.
+ * Requests beyond the limit get 503 with a Retry-After header straight away instead of queueing for the servlet and
+ * database pools until they time out.
+ *
+ * Requests that go asynchronous, and the bulk imports and exports, hold their permit until they complete but are left
+ * out of the latency samples: they take as long as their file does, and would otherwise read as a collapse of the
+ * latency of ordinary requests and shrink the limit. Actuator and the H2 console are not limited.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> UNSAMPLED_PATHS = Set.of("/accounts/import", "/messages/import",
+            "/messages/export");
+
+    private final boolean enabled;
+    private final long retryAfterSeconds;
+    private final AdaptiveConcurrencyLimit reads;
+    private final AdaptiveConcurrencyLimit writes;
+
+    public ConcurrencyLimitFilter(@Value("${app.concurrency-limit.enabled:true}") boolean enabled,
+                                  @Value("${app.concurrency-limit.reads.initial-limit:20}") int readInitialLimit,
+                                  @Value("${app.concurrency-limit.reads.max-limit:200}") int readMaxLimit,
+                                  @Value("${app.concurrency-limit.writes.initial-limit:10}") int writeInitialLimit,
+                                  @Value("${app.concurrency-limit.writes.max-limit:100}") int writeMaxLimit,
+                                  @Value("${app.concurrency-limit.min-limit:2}") int minLimit,
+                                  @Value("${app.concurrency-limit.tolerance:2.0}") double tolerance,
+                                  @Value("${app.concurrency-limit.smoothing:0.2}") double smoothing,
+                                  @Value("${app.concurrency-limit.window-size:50}") int windowSize,
+                                  @Value("${app.concurrency-limit.retry-after-seconds:1}") long retryAfterSeconds,
+                                  MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.reads = new AdaptiveConcurrencyLimit(readInitialLimit, minLimit, readMaxLimit, tolerance, smoothing,
+                windowSize);
+        this.writes = new AdaptiveConcurrencyLimit(writeInitialLimit, minLimit, writeMaxLimit, tolerance, smoothing,
+                windowSize);
+        register(meterRegistry, "reads", reads);
+        register(meterRegistry, "writes", writes);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String kind, AdaptiveConcurrencyLimit limit) {
+        Gauge.builder("http.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current adaptive limit on requests in flight")
+                .tag("kind", kind)
+                .register(meterRegistry);
+        Gauge.builder("http.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Requests holding a concurrency permit")
+                .tag("kind", kind)
+                .register(meterRegistry);
+        FunctionCounter.builder("http.concurrency.rejected", limit, AdaptiveConcurrencyLimit::getRejected)
+                .description("Requests rejected with 503 because the limit was reached")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return The limit applied to reads, for monitoring and tests.
+     */
+    public AdaptiveConcurrencyLimit getReadLimit() {
+        return reads;
+    }
+
+    /**
+     * @return The limit applied to writes, for monitoring and tests.
+     */
+    public AdaptiveConcurrencyLimit getWriteLimit() {
+        return writes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !enabled || path.startsWith("/actuator") || path.startsWith("/h2-console");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String method = request.getMethod();
+        AdaptiveConcurrencyLimit limit = "GET".equals(method) || "HEAD".equals(method) ? reads : writes;
+
+        // Check if there is room for the request, and turn it away at once if there is not
+        if (!limit.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("The server is at capacity, please try again shortly.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            async = request.isAsyncStarted();
+        } finally {
+            if (async) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(limit));
+            } else if (UNSAMPLED_PATHS.contains(request.getRequestURI())) {
+                limit.release();
+            } else {
+                limit.release(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Gives back the permit of an asynchronous request once it is done, whether it completed, failed or timed out.
+     */
+    private static final class ReleaseOnComplete implements AsyncListener {
+        private final AdaptiveConcurrencyLimit limit;
+
+        private ReleaseOnComplete(AdaptiveConcurrencyLimit limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Stand-in for database replication when the replica is a second local H2 database: on every run it dumps the primary
+ * with H2's SCRIPT command and replays the dump into the replica. The time between runs is the replica lag, which makes
+ * this handy for exercising read routing and lag handling locally. Enabled with
+ * app.datasource.replica.feed-from-primary=true.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(value = "app.datasource.replica.feed-from-primary", havingValue = "true")
+public class H2ReplicaFeeder {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final ReplicaLagMonitor lagMonitor;
+
+    public H2ReplicaFeeder(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                           ReplicaDataSourceConfig.ReplicaProperties replicaProperties,
+                           ReplicaLagMonitor lagMonitor) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        // The replica pool is read-only, so the feed gets its own connections
+        this.replica = new JdbcTemplate(new DriverManagerDataSource(replicaProperties.getUrl(),
+                replicaProperties.getUsername(), replicaProperties.getPassword()));
+        this.lagMonitor = lagMonitor;
+    }
+
+    /**
+     * Replaces the replica's contents with a copy of the primary.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replica.feed-interval-ms:1000}")
+    public void feed() {
+        List<String> script = primary.queryForList("SCRIPT NOPASSWORDS NOSETTINGS", String.class);
+        // Holding the monitor keeps heartbeats from reading a half-built replica
+        synchronized (lagMonitor) {
+            // Reads go to the primary while the replica is being rebuilt
+            lagMonitor.markUnavailable();
+            replica.execute("DROP ALL OBJECTS");
+            for (String statement : script) {
+                replica.execute(statement);
+            }
+            lagMonitor.refreshWatermark();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.config;
+
+import com.example.dto.TransferResult;
+import com.example.service.FileFormat;
+import com.example.service.MessageExportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Offline export: writes the messages to a file and exits instead of serving requests. For example
+ * <pre>
+ * java -jar app.jar --spring.main.web-application-type=none --spring.profiles.active=fast \
+ *      --app.export.file=messages.csv --app.export.format=csv --app.export.posted-by=9999
+ * </pre>
+ * The same filters as GET /messages/export are available as app.export.posted-by, app.export.from and app.export.to.
+ */
+@Component
+@ConditionalOnProperty("app.export.file")
+public class MessageExportCommand implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageExportCommand.class);
+
+    private final MessageExportService messageExportService;
+    private final ConfigurableApplicationContext context;
+    private final Path file;
+    private final FileFormat format;
+    private final Integer postedBy;
+    private final Long from;
+    private final Long to;
+
+    public MessageExportCommand(MessageExportService messageExportService, ConfigurableApplicationContext context,
+                                @Value("${app.export.file}") String file,
+                                @Value("${app.export.format:ndjson}") String format,
+                                @Value("${app.export.posted-by:#{null}}") Integer postedBy,
+                                @Value("${app.export.from:#{null}}") Long from,
+                                @Value("${app.export.to:#{null}}") Long to) {
+        this.messageExportService = messageExportService;
+        this.context = context;
+        this.file = Paths.get(file);
+        this.format = FileFormat.fromName(format);
+        this.postedBy = postedBy;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        TransferResult result;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            result = messageExportService.export(format, postedBy, from, to, channel);
+        }
+        log.info("Exported {} to {}", result, file.toAbsolutePath());
+        System.exit(SpringApplication.exit(context));
+    }
+}
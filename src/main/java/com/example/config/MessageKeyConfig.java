@@ -0,0 +1,20 @@
+package com.example.config;
+
+import com.example.util.KSortableIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the generator of message keys. Every instance that inserts messages into the same database needs its own
+ * app.ids.node-id; two instances sharing one can generate the same key in the same millisecond, which the unique
+ * constraint on messageKey then rejects.
+ */
+@Configuration
+public class MessageKeyConfig {
+
+    @Bean
+    public KSortableIdGenerator messageKeyGenerator(@Value("${app.ids.node-id:0}") int nodeId) {
+        return new KSortableIdGenerator(nodeId);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections for read-only transactions to the replica pool and everything else to the primary.
+ *
+ * Reads fall back to the primary while the replica has not yet caught up with the writes committed through this
+ * instance, which keeps read-your-writes (for example logging in right after registering) intact. This data source
+ * must sit behind a LazyConnectionDataSourceProxy so that the read-only flag is known when the connection is fetched.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    private final ReplicaLagMonitor lagMonitor;
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor lagMonitor) {
+        this.lagMonitor = lagMonitor;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                lagMonitor.recordWriteOnCommit();
+            }
+            return PRIMARY;
+        }
+        return lagMonitor.isReplicaCaughtUp() ? REPLICA : PRIMARY;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how far behind the read replica is, using a heartbeat row that is written to the primary on a schedule and
+ * read back from the replica. The replica's copy of the heartbeat is a watermark: every write committed on the primary
+ * before that time has reached the replica.
+ *
+ * The replica is considered caught up when its watermark is newer than the last write committed through this instance,
+ * or, if app.datasource.replica.max-staleness-ms is set, when the watermark is at most that old.
+ */
+@Component
+@ConditionalOnProperty("app.datasource.replica.url")
+public class ReplicaLagMonitor {
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxStalenessMillis;
+    private final AtomicLong lastWriteMillis = new AtomicLong();
+    private volatile long watermarkMillis;
+
+    public ReplicaLagMonitor(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                             @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                             @Value("${app.datasource.replica.max-staleness-ms:0}") long maxStalenessMillis) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    @PostConstruct
+    public void createHeartbeatTable() {
+        primary.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beatMillis BIGINT)");
+        heartbeat();
+    }
+
+    /**
+     * Writes a fresh heartbeat to the primary and re-reads the replica's watermark.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replica.heartbeat-interval-ms:1000}")
+    public void heartbeat() {
+        primary.update("MERGE INTO replica_heartbeat KEY(id) VALUES (1, ?)", System.currentTimeMillis());
+        refreshWatermark();
+    }
+
+    /**
+     * Reads the newest heartbeat that has reached the replica. An unreachable replica has no watermark.
+     */
+    public synchronized void refreshWatermark() {
+        try {
+            Long beat = replica.queryForObject("SELECT beatMillis FROM replica_heartbeat WHERE id = 1", Long.class);
+            watermarkMillis = beat == null ? 0 : beat;
+        } catch (DataAccessException e) {
+            watermarkMillis = 0;
+        }
+    }
+
+    /**
+     * Stops routing reads to the replica until the next successful {@link #refreshWatermark()}.
+     */
+    public void markUnavailable() {
+        watermarkMillis = 0;
+    }
+
+    /**
+     * @return true if reads may be served by the replica.
+     */
+    public boolean isReplicaCaughtUp() {
+        long watermark = watermarkMillis;
+        if (watermark == 0) {
+            return false;
+        }
+        return watermark >= lastWriteMillis.get()
+                || (maxStalenessMillis > 0 && System.currentTimeMillis() - watermark <= maxStalenessMillis);
+    }
+
+    /**
+     * @return How old the replica's data is, in milliseconds, or -1 if the replica has no watermark.
+     */
+    public long lagMillis() {
+        long watermark = watermarkMillis;
+        return watermark == 0 ? -1 : System.currentTimeMillis() - watermark;
+    }
+
+    /**
+     * Records the commit time of the current read-write transaction once it commits. The time is taken after the
+     * commit, so it can only overestimate, which errs towards reading from the primary.
+     */
+    void recordWriteOnCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                lastWriteMillis.accumulateAndGet(System.currentTimeMillis(), Math::max);
+            }
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.config;
+
+import com.example.util.Bulkhead;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps part of a connection pool for the threads of one bulkhead. Every other thread, whether it runs on another
+ * bulkhead, a request thread, a bulk import worker or a scheduled job, takes a permit from a semaphore of the pool
+ * size minus the reserve before it may borrow a connection, and gives it back when it closes the connection. However
+ * long those threads hold their connections, the reserved bulkhead, whose thread count is the reserve, still finds a
+ * connection free in the pool.
+ */
+public class ReservedConnectionsDataSource extends DelegatingDataSource {
+
+    private final String reservedFor;
+    private final Semaphore shared;
+    private final long timeoutMillis;
+
+    /**
+     * @param target The pool to guard.
+     * @param reservedFor The name of the bulkhead whose threads skip the semaphore.
+     * @param sharedConnections How many connections all other threads may hold together.
+     * @param timeoutMillis How long another thread waits for a permit before giving up, like the pool's own timeout.
+     */
+    public ReservedConnectionsDataSource(DataSource target, String reservedFor, int sharedConnections,
+                                         long timeoutMillis) {
+        super(target);
+        this.reservedFor = reservedFor;
+        this.shared = new Semaphore(sharedConnections, true);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return borrow(() -> getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return borrow(() -> getTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * @return The number of connections other threads may still borrow without waiting.
+     */
+    public int getAvailableSharedConnections() {
+        return shared.availablePermits();
+    }
+
+    private Connection borrow(ConnectionSource source) throws SQLException {
+        Bulkhead bulkhead = Bulkhead.current();
+        if (bulkhead != null && bulkhead.getName().equals(reservedFor)) {
+            return source.get();
+        }
+
+        try {
+            if (!shared.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No connection outside the " + reservedFor
+                        + " reserve became free within " + timeoutMillis + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection.", e);
+        }
+        try {
+            return releasingOnClose(source.get());
+        } catch (SQLException | RuntimeException | Error e) {
+            shared.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps the connection so that closing it, once, gives the permit back.
+     */
+    private Connection releasingOnClose(Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "getTargetConnection":
+                            return connection;
+                        case "close":
+                            try {
+                                connection.close();
+                            } finally {
+                                if (released.compareAndSet(false, true)) {
+                                    shared.release();
+                                }
+                            }
+                            return null;
+                        default:
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getTargetException();
+                            }
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the @Scheduled background jobs (rate limiter sweeps and the like). Kept out of SocialMediaApp, which must not
+ * be changed.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,113 @@
+package com.example.config;
+
+import com.example.entity.Message;
+import com.example.repository.MessageShard;
+import com.example.repository.MessageShards;
+import com.example.repository.ShardedMessageIdGenerator;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.cache.Caching;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the {@link MessageShards} behind MessageRepository.
+ *
+ * With app.sharding.enabled=false (the default) there is one shard: the primary persistence unit. With sharding
+ * enabled, every URL in app.sharding.urls gets its own connection pool and a persistence unit that only manages
+ * {@link Message}; accounts stay on the primary database. Existing rows in the primary message table are not moved.
+ */
+@Configuration
+public class ShardingConfig {
+
+    @Bean
+    public MessageShards messageShards(@Value("${app.sharding.enabled:false}") boolean enabled,
+                                       @Value("${app.sharding.urls:}") List<String> urls,
+                                       @Value("${app.sharding.ddl-auto:create-drop}") String ddlAuto,
+                                       EntityManager entityManager,
+                                       EntityManagerFactory entityManagerFactory,
+                                       PlatformTransactionManager transactionManager,
+                                       DataSource dataSource,
+                                       DataSourceProperties dataSourceProperties,
+                                       JpaProperties jpaProperties,
+                                       HibernateProperties hibernateProperties,
+                                       EntityManagerFactoryBuilder builder) {
+        if (!enabled) {
+            MessageShard primary = new MessageShard(0, entityManager, dataSource, transactionManager);
+            return new MessageShards(Collections.singletonList(primary), null, Collections.emptyList());
+        }
+        if (urls.size() < 2) {
+            throw new IllegalStateException("app.sharding.urls must list at least two databases when sharding is enabled.");
+        }
+
+        List<MessageShard> shards = new ArrayList<>();
+        List<AutoCloseable> resources = new ArrayList<>();
+        for (int index = 0; index < urls.size(); index++) {
+            HikariDataSource shardDataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(urls.get(index))
+                    .username(dataSourceProperties.determineUsername())
+                    .password(dataSourceProperties.determinePassword())
+                    .build();
+            shardDataSource.setPoolName("message-shard-" + index);
+
+            Map<String, Object> properties = hibernateProperties.determineHibernateProperties(
+                    jpaProperties.getProperties(), new HibernateSettings());
+            properties.put("hibernate.hbm2ddl.auto", ddlAuto);
+            properties.put(ShardedMessageIdGenerator.SHARD_INDEX, index);
+            properties.put(ShardedMessageIdGenerator.SHARD_COUNT, urls.size());
+            // Each shard gets its own second-level cache; Hibernate closes it together with the persistence unit
+            properties.put(ConfigSettings.CACHE_MANAGER, Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                    .getCacheManager(URI.create("message-shard-" + index), Message.class.getClassLoader()));
+
+            LocalContainerEntityManagerFactoryBean factoryBean = builder.dataSource(shardDataSource)
+                    .packages(Message.class)
+                    .persistenceUnit("messageShard" + index)
+                    .properties(properties)
+                    .build();
+            // Shards only hold messages, so keep the other entities in the package out of their schema
+            factoryBean.setPersistenceUnitPostProcessors(unit -> {
+                unit.getManagedClassNames().clear();
+                unit.addManagedClassName(Message.class.getName());
+            });
+            factoryBean.afterPropertiesSet();
+            EntityManagerFactory shardFactory = factoryBean.getObject();
+
+            resources.add(shardFactory::close);
+            resources.add(shardDataSource);
+            shards.add(new MessageShard(index, SharedEntityManagerCreator.createSharedEntityManager(shardFactory),
+                    shardDataSource, new JpaTransactionManager(shardFactory)));
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService scatterExecutor = Executors.newFixedThreadPool(urls.size(), runnable -> {
+            Thread thread = new Thread(runnable, "message-shard-scatter-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new MessageShards(shards, scatterExecutor, resources);
+    }
+}
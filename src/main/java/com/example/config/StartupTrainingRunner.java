@@ -0,0 +1,45 @@
+package com.example.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * Training run for the class-data sharing archive built by the appcds Maven profile: once the application is ready it
+ * serves one request to itself, so that the request-handling classes are loaded too, and then exits. The JVM writes
+ * the archive of every class loaded up to that point on exit. Enabled with app.startup.exit-after-ready=true.
+ */
+@Component
+@ConditionalOnProperty(value = "app.startup.exit-after-ready", havingValue = "true")
+public class StartupTrainingRunner implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        int exitCode = 0;
+        if (event.getApplicationContext() instanceof WebServerApplicationContext) {
+            int port = ((WebServerApplicationContext) event.getApplicationContext()).getWebServer().getPort();
+            try {
+                HttpResponse<String> response = HttpClient.newHttpClient().send(
+                        HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/messages")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                exitCode = response.statusCode() == 200 ? 0 : 1;
+            } catch (IOException e) {
+                exitCode = 1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exitCode = 1;
+            }
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(event.getApplicationContext(), () -> status));
+    }
+}
@@ -1,76 +1,244 @@
 package com.example.controller;
 
 
+import com.example.dto.AccountSummary;
+import com.example.dto.MessageBatch;
+import com.example.dto.MessageLikes;
+import com.example.dto.MessagePage;
+import com.example.dto.TransferResult;
 import com.example.entity.Account;
+import com.example.entity.AccountStats;
 import com.example.entity.Message;
+import com.example.exception.ConcurrentEditException;
 import com.example.exception.DuplicateResourceException;
 import com.example.exception.InvalidRequestException;
+import com.example.exception.PreconditionFailedException;
 import com.example.exception.ResourceNotFoundException;
+import com.example.exception.TooManyRequestsException;
+import com.example.exception.UnauthorizedException;
+import com.example.service.AccountSearchService;
 import com.example.service.AccountService;
+import com.example.service.AccountStatsService;
+import com.example.service.BulkImportService;
+import com.example.service.FileFormat;
+import com.example.service.MessageExportService;
 import com.example.service.MessageService;
+import com.example.service.ReactionService;
+import com.example.service.SessionTokens;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.List;
 
 
 @RestController
 public class SocialMediaController {
 
+    /**
+     * Media type of the Jackson Smile binary encoding. Spring has no constant for it, but registers the Smile converter
+     * automatically when jackson-dataformat-smile is on the classpath.
+     */
+    private static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    /**
+     * Request header that lets clients retry a create safely; see {@link com.example.service.IdempotencyStore}.
+     */
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Response header of /login that carries the session token; clients send it back as "Authorization: Bearer ...".
+     */
+    private static final String SESSION_TOKEN_HEADER = "Session-Token";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
     private final AccountService accountService;
     private final MessageService messageService;
+    private final AccountStatsService accountStatsService;
+    private final ReactionService reactionService;
+    private final MessageExportService messageExportService;
+    private final BulkImportService bulkImportService;
+    private final AccountSearchService accountSearchService;
+    private final SessionTokens sessionTokens;
 
-    // Constructor-based dependency injection for AccountService and MessageService
+    // Constructor-based dependency injection for the services
     @Autowired
-    public SocialMediaController(AccountService accountService, MessageService messageService) {
+    public SocialMediaController(AccountService accountService, MessageService messageService,
+                                 AccountStatsService accountStatsService, ReactionService reactionService,
+                                 MessageExportService messageExportService, BulkImportService bulkImportService,
+                                 AccountSearchService accountSearchService, SessionTokens sessionTokens) {
         this.accountService = accountService;
         this.messageService = messageService;
+        this.accountStatsService = accountStatsService;
+        this.reactionService = reactionService;
+        this.messageExportService = messageExportService;
+        this.bulkImportService = bulkImportService;
+        this.accountSearchService = accountSearchService;
+        this.sessionTokens = sessionTokens;
     }
 
     /**
      * Handles user registration.
      * @param account The account information to be registered.
+     * @param idempotencyKey Optional key that makes retries of this registration return the first result.
      * @return A ResponseEntity with the registered account and HTTP status 200 (OK).
      */
     @PostMapping("/register")
-    public ResponseEntity<Account> register(@RequestBody Account account) {
-        return ResponseEntity.status(HttpStatus.OK).body(accountService.register(account));
+    public ResponseEntity<Account> register(@RequestBody Account account,
+                                            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return ResponseEntity.status(HttpStatus.OK).body(accountService.register(account, idempotencyKey));
     }
 
     /**
      * Handles user login.
      * @param account The account information (username and password).
-     * @return A ResponseEntity with the logged-in account and HTTP status 200 (OK).
+     * @return A ResponseEntity with the logged-in account, a Session-Token header for later requests and HTTP status
+     * 200 (OK).
      */
     @PostMapping("/login")
     public ResponseEntity<Account> login(@RequestBody Account account) {
         Account loggedInAccount = accountService.login(account);
-        return ResponseEntity.status(HttpStatus.OK).body(loggedInAccount);
+        return ResponseEntity.status(HttpStatus.OK)
+                .header(SESSION_TOKEN_HEADER, sessionTokens.issue(loggedInAccount.getAccountId()))
+                .body(loggedInAccount);
     }
 
     /**
-     * Creates a new message.
+     * Imports accounts from an NDJSON or CSV request body, read as it arrives. Invalid rows are skipped and reported.
+     * @param format ndjson (the default) or csv.
+     * @param body The file contents.
+     * @return A ResponseEntity with the number of imported and rejected rows and HTTP status 200 (OK).
+     * @throws IOException If reading the request body fails.
+     */
+    @PostMapping("/accounts/import")
+    public ResponseEntity<TransferResult> importAccounts(@RequestParam(defaultValue = "ndjson") String format,
+                                                         InputStream body) throws IOException {
+        TransferResult result = bulkImportService.importAccounts(FileFormat.fromName(format), Channels.newChannel(body));
+        return ResponseEntity.status(HttpStatus.OK).body(result);
+    }
+
+    /**
+     * Creates a new message. With a session token from /login the poster is the token's account, and postedBy may be
+     * left out.
      * @param message The message object to be created.
+     * @param idempotencyKey Optional key that makes retries of this request return the first result.
+     * @param authorization Optional "Bearer" followed by the session token.
      * @return A ResponseEntity with the created message and HTTP status 200 (OK).
      */
     @PostMapping("/messages")
-    public ResponseEntity<Message> createMessage(@RequestBody Message message) {
-        Message createdMessage = messageService.createMessage(message);
+    public ResponseEntity<Message> createMessage(@RequestBody Message message,
+                                                 @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                                 @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        Message createdMessage = messageService.createMessage(message, idempotencyKey, parseBearerToken(authorization));
         return ResponseEntity.status(HttpStatus.OK).body(createdMessage);
     }
 
     /**
-     * Retrieves all messages.
+     * Retrieves all messages. Clients on constrained links can ask for a compact binary encoding with an Accept header
+     * of application/cbor or application/x-jackson-smile; JSON stays the default.
      * @return A ResponseEntity containing a list of all messages and HTTP status 200 (OK).
      */
-    @GetMapping("/messages")
+    @GetMapping(value = "/messages", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE,
+            APPLICATION_SMILE_VALUE})
     public ResponseEntity<List<Message>> getMessages() {
         List<Message> messages = messageService.getMessages();
         return ResponseEntity.status(HttpStatus.OK).body(messages);
     }
 
+    /**
+     * Retrieves several messages by ID in one request, e.g. GET /messages?ids=1,2,3. Takes precedence over
+     * {@link #getMessages()} whenever the ids parameter is present.
+     * @param ids The IDs of the messages to retrieve.
+     * @return A ResponseEntity with the found messages in request order, the IDs that were not found, and HTTP status
+     * 200 (OK).
+     */
+    @GetMapping(value = "/messages", params = {"ids", "!postedBy"})
+    public ResponseEntity<MessageBatch> getMessagesByIds(@RequestParam List<Integer> ids) {
+        return ResponseEntity.status(HttpStatus.OK).body(messageService.getMessagesByIds(ids));
+    }
+
+    /**
+     * Retrieves the combined timeline of several accounts a page at a time, e.g. GET /messages?postedBy=1,2,3&limit=20,
+     * newest first. Takes precedence over {@link #getMessages()} whenever the postedBy parameter is present.
+     * @param postedBy The IDs of the accounts whose messages to merge.
+     * @param limit The maximum number of messages on the page.
+     * @param cursor Optional nextCursor of the previous page, to continue after it.
+     * @return A ResponseEntity with the page of messages, the cursor of the next page if there is one, and HTTP status
+     * 200 (OK).
+     */
+    @GetMapping(value = "/messages", params = {"postedBy", "!ids"})
+    public ResponseEntity<MessagePage> getTimeline(@RequestParam List<Integer> postedBy,
+                                                   @RequestParam(defaultValue = "20") int limit,
+                                                   @RequestParam(required = false) String cursor) {
+        return ResponseEntity.status(HttpStatus.OK).body(messageService.getTimeline(postedBy, limit, cursor));
+    }
+
+    /**
+     * Refuses GET /messages with both ids and postedBy, which would otherwise match both of the handlers above.
+     * @throws InvalidRequestException Always.
+     */
+    @GetMapping(value = "/messages", params = {"ids", "postedBy"})
+    public ResponseEntity<Void> getMessagesByIdsAndPoster() throws InvalidRequestException {
+        throw new InvalidRequestException("Look messages up either by ids or by postedBy, not both.");
+    }
+
+    /**
+     * Retrieves several messages by ID, for ID lists too long for a query string.
+     * @param ids A JSON array of the IDs of the messages to retrieve.
+     * @return A ResponseEntity with the found messages in request order, the IDs that were not found, and HTTP status
+     * 200 (OK).
+     */
+    @PostMapping("/messages/lookup")
+    public ResponseEntity<MessageBatch> lookupMessages(@RequestBody List<Integer> ids) {
+        return ResponseEntity.status(HttpStatus.OK).body(messageService.getMessagesByIds(ids));
+    }
+
+    /**
+     * Streams all messages, or those matching the filters, as NDJSON or CSV. Unlike {@link #getMessages()} the rows are
+     * written to the response as they are read, so the export works for tables of any size.
+     * @param format ndjson (the default) or csv.
+     * @param postedBy Optional account whose messages to export.
+     * @param from Optional lower bound on timePostedEpoch, inclusive.
+     * @param to Optional upper bound on timePostedEpoch, exclusive.
+     * @return A ResponseEntity that streams the export with HTTP status 200 (OK).
+     */
+    @GetMapping("/messages/export")
+    public ResponseEntity<StreamingResponseBody> exportMessages(@RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(required = false) Integer postedBy,
+                                                                @RequestParam(required = false) Long from,
+                                                                @RequestParam(required = false) Long to) {
+        FileFormat fileFormat = FileFormat.fromName(format);
+        StreamingResponseBody body = outputStream ->
+                messageExportService.export(fileFormat, postedBy, from, to, Channels.newChannel(outputStream));
+        return ResponseEntity.status(HttpStatus.OK)
+                .contentType(MediaType.parseMediaType(fileFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"messages." + fileFormat.getExtension() + "\"")
+                .body(body);
+    }
+
+    /**
+     * Imports messages from an NDJSON or CSV request body, read as it arrives. Invalid rows are skipped and reported.
+     * @param format ndjson (the default) or csv.
+     * @param body The file contents.
+     * @return A ResponseEntity with the number of imported and rejected rows and HTTP status 200 (OK).
+     * @throws IOException If reading the request body fails.
+     */
+    @PostMapping("/messages/import")
+    public ResponseEntity<TransferResult> importMessages(@RequestParam(defaultValue = "ndjson") String format,
+                                                         InputStream body) throws IOException {
+        TransferResult result = bulkImportService.importMessages(FileFormat.fromName(format), Channels.newChannel(body));
+        return ResponseEntity.status(HttpStatus.OK).body(result);
+    }
+
     /**
      * Retrieves a message by its ID.
      * @param messageId The ID of the message to be retrieved.
@@ -86,7 +254,12 @@ public class SocialMediaController {
             //This is to avoid the @ExceptionHandler from catching this exception. Instead, we want to execute the
             //return statement below
         }
-        return ResponseEntity.status(HttpStatus.OK).body(messageToFind);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK);
+        // Archived messages cannot be edited and have no version
+        if (messageToFind != null && messageToFind.getVersion() != null) {
+            response.eTag(String.valueOf(messageToFind.getVersion()));
+        }
+        return response.body(messageToFind);
     }
 
     /**
@@ -104,25 +277,122 @@ public class SocialMediaController {
      * Updates (patches) a message partially.
      * @param messageId The ID of the message to be patched.
      * @param message The message object containing the updates.
-     * @return A ResponseEntity with 1 if the update was successful and HTTP status 200 (OK).
+     * @param ifMatch Optional ETag of the message as last read; the update then fails if the message has changed since.
+     * @return A ResponseEntity with 1 if the update was successful, the new ETag and HTTP status 200 (OK).
      */
     @PatchMapping("/messages/{messageId}")
-    public ResponseEntity<Integer> patchMessage(@PathVariable Integer messageId, @RequestBody Message message) {
+    public ResponseEntity<Integer> patchMessage(@PathVariable Integer messageId, @RequestBody Message message,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         // If the patchMessage method is unsuccessful, it will throw an InvalidRequestException
-        messageService.patchMessage(messageId, message);
-        return ResponseEntity.status(HttpStatus.OK).body(1);
+        Message updated = messageService.patchMessage(messageId, message, parseVersion(ifMatch));
+        return ResponseEntity.status(HttpStatus.OK).eTag(String.valueOf(updated.getVersion())).body(1);
+    }
+
+    /**
+     * Reads the version out of an If-Match header holding a single ETag, weak or strong, as sent by
+     * {@link #getMessageById(Integer)}.
+     * @param ifMatch The header value, or null.
+     * @return The version, or null if the header is absent or "*".
+     */
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException("If-Match has to be a single ETag of this message.");
+        }
+    }
+
+    /**
+     * Reads the session token out of an Authorization header.
+     * @param authorization The header value, or null.
+     * @return The token, or null if the header is absent.
+     */
+    private static String parseBearerToken(String authorization) {
+        if (authorization == null) {
+            return null;
+        }
+        if (!authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            throw new UnauthorizedException("Authorization has to be a Bearer session token.");
+        }
+        return authorization.substring(BEARER_PREFIX.length()).trim();
+    }
+
+    /**
+     * Retrieves the like count of a message. Counts are eventually consistent across instances.
+     * @param messageId The ID of the message.
+     * @return A ResponseEntity containing the message's like count and HTTP status 200 (OK).
+     */
+    @GetMapping("/messages/{messageId}/likes")
+    public ResponseEntity<MessageLikes> getLikes(@PathVariable Integer messageId) {
+        return ResponseEntity.status(HttpStatus.OK).body(reactionService.getLikes(messageId));
+    }
+
+    /**
+     * Likes a message on behalf of an account. Repeating the request does not count the like twice.
+     * @param messageId The ID of the message to like.
+     * @param accountId The ID of the account that likes the message.
+     * @return A ResponseEntity containing the message's like count and HTTP status 200 (OK).
+     */
+    @PutMapping("/messages/{messageId}/likes/{accountId}")
+    public ResponseEntity<MessageLikes> likeMessage(@PathVariable Integer messageId, @PathVariable Integer accountId) {
+        return ResponseEntity.status(HttpStatus.OK).body(reactionService.like(messageId, accountId));
     }
 
     /**
-     * Retrieves all messages associated with a specific account.
+     * Withdraws an account's like of a message.
+     * @param messageId The ID of the liked message.
+     * @param accountId The ID of the account that liked the message.
+     * @return A ResponseEntity containing the message's like count and HTTP status 200 (OK).
+     */
+    @DeleteMapping("/messages/{messageId}/likes/{accountId}")
+    public ResponseEntity<MessageLikes> unlikeMessage(@PathVariable Integer messageId, @PathVariable Integer accountId) {
+        return ResponseEntity.status(HttpStatus.OK).body(reactionService.unlike(messageId, accountId));
+    }
+
+    /**
+     * Retrieves all messages associated with a specific account. Supports the same JSON, CBOR and Smile encodings as
+     * {@link #getMessages()}.
      * @param accountId The ID of the account whose messages are to be retrieved.
      * @return A ResponseEntity containing a list of messages belonging to the account.
      */
-    @GetMapping("/accounts/{accountId}/messages")
+    @GetMapping(value = "/accounts/{accountId}/messages", produces = {MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE})
     public ResponseEntity<List<Message>> getMessagesFromAccount(@PathVariable Integer accountId) {
         return ResponseEntity.status(HttpStatus.OK).body(messageService.getMessagesByAccountId(accountId));
     }
 
+    /**
+     * Finds accounts whose username starts with a prefix, ignoring case, for mention autocomplete.
+     * @param prefix The start of the username.
+     * @param limit The maximum number of accounts to return.
+     * @return A ResponseEntity containing the matching accounts ordered by username and HTTP status 200 (OK).
+     */
+    @GetMapping("/accounts/search")
+    public ResponseEntity<List<AccountSummary>> searchAccounts(@RequestParam String prefix,
+                                                               @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.status(HttpStatus.OK).body(accountSearchService.search(prefix, limit));
+    }
+
+    /**
+     * Retrieves the message count and first/last post times of an account without reading its messages.
+     * @param accountId The ID of the account whose statistics are to be retrieved.
+     * @return A ResponseEntity containing the account's statistics and HTTP status 200 (OK).
+     */
+    @GetMapping("/accounts/{accountId}/stats")
+    public ResponseEntity<AccountStats> getAccountStats(@PathVariable Integer accountId) {
+        return ResponseEntity.status(HttpStatus.OK).body(accountStatsService.getStats(accountId));
+    }
+
     // ==============================
     // Exception Handlers
     // ==============================
@@ -138,6 +408,28 @@ public class SocialMediaController {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(exception.getMessage());
     }
 
+    /**
+     * Handles ConcurrentEditException.
+     * Occurs when edits of the same message kept colliding until the retries ran out.
+     * @param exception The exception thrown.
+     * @return A ResponseEntity with HTTP status 409 (CONFLICT) and the error message.
+     */
+    @ExceptionHandler(ConcurrentEditException.class)
+    public ResponseEntity<String> handleConcurrentEditException(ConcurrentEditException exception) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(exception.getMessage());
+    }
+
+    /**
+     * Handles PreconditionFailedException.
+     * Occurs when an If-Match header names a version of the message that is no longer current.
+     * @param exception The exception thrown.
+     * @return A ResponseEntity with HTTP status 412 (PRECONDITION FAILED) and the error message.
+     */
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<String> handlePreconditionFailedException(PreconditionFailedException exception) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(exception.getMessage());
+    }
+
     /**
      * Handles InvalidRequestException.
      * Occurs when a request contains invalid data or is improperly formatted.
@@ -159,4 +451,29 @@ public class SocialMediaController {
     public ResponseEntity<String> handleResourceNotFoundException(ResourceNotFoundException exception) {
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(exception.getMessage());
     }
+
+    /**
+     * Handles UnauthorizedException.
+     * Occurs when a session token is malformed, forged or expired.
+     * @param exception The exception thrown.
+     * @return A ResponseEntity with HTTP status 401 (UNAUTHORIZED) and the error message.
+     */
+    @ExceptionHandler(UnauthorizedException.class)
+    public ResponseEntity<String> handleUnauthorizedException(UnauthorizedException exception) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(exception.getMessage());
+    }
+
+    /**
+     * Handles TooManyRequestsException.
+     * Occurs when an account posts faster than its rate limit allows, when another bulk import is running, or when a
+     * read waits too long for the same read started by another request.
+     * @param exception The exception thrown.
+     * @return A ResponseEntity with HTTP status 429 (TOO MANY REQUESTS), a Retry-After header and the error message.
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequestsException(TooManyRequestsException exception) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(exception.getMessage());
+    }
 }
@@ -0,0 +1,65 @@
+package com.example.dto;
+
+import java.util.Objects;
+
+/**
+ * The public part of an account, without its password, as returned by the account search.
+ */
+public class AccountSummary {
+
+    private Integer accountId;
+    private String username;
+
+    public AccountSummary() {
+
+    }
+
+    /**
+     * Also used by the projection query in {@link com.example.repository.AccountRepository}.
+     * @param accountId
+     * @param username
+     */
+    public AccountSummary(Integer accountId, String username) {
+        this.accountId = accountId;
+        this.username = username;
+    }
+
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Integer accountId) {
+        this.accountId = accountId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        AccountSummary other = (AccountSummary) obj;
+        return Objects.equals(accountId, other.accountId) && Objects.equals(username, other.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId, username);
+    }
+
+    @Override
+    public String toString() {
+        return "AccountSummary{" +
+                "accountId=" + accountId +
+                ", username='" + username + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The result of looking up several messages by ID at once: the messages that exist, in the order their IDs were
+ * requested, and the requested IDs that matched nothing.
+ */
+public class MessageBatch {
+
+    private List<Message> messages = new ArrayList<>();
+    private List<Integer> missingIds = new ArrayList<>();
+
+    public MessageBatch() {
+
+    }
+
+    public MessageBatch(List<Message> messages, List<Integer> missingIds) {
+        this.messages = messages;
+        this.missingIds = missingIds;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public List<Integer> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Integer> missingIds) {
+        this.missingIds = missingIds;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        MessageBatch other = (MessageBatch) obj;
+        return Objects.equals(messages, other.messages) && Objects.equals(missingIds, other.missingIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(messages, missingIds);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageBatch{" +
+                "messages=" + messages +
+                ", missingIds=" + missingIds +
+                '}';
+    }
+}
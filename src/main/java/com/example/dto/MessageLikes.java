@@ -0,0 +1,61 @@
+package com.example.dto;
+
+import java.util.Objects;
+
+/**
+ * The like count of a message, as returned by the reactions endpoints. The count is eventually consistent: likes made
+ * through another instance show up once that instance has flushed them.
+ */
+public class MessageLikes {
+
+    private Integer messageId;
+    private long likeCount;
+
+    public MessageLikes() {
+
+    }
+
+    public MessageLikes(Integer messageId, long likeCount) {
+        this.messageId = messageId;
+        this.likeCount = likeCount;
+    }
+
+    public Integer getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Integer messageId) {
+        this.messageId = messageId;
+    }
+
+    public long getLikeCount() {
+        return likeCount;
+    }
+
+    public void setLikeCount(long likeCount) {
+        this.likeCount = likeCount;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        MessageLikes other = (MessageLikes) obj;
+        return likeCount == other.likeCount && Objects.equals(messageId, other.messageId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(messageId, likeCount);
+    }
+
+    @Override
+    public String toString() {
+        return "MessageLikes{" +
+                "messageId=" + messageId +
+                ", likeCount=" + likeCount +
+                '}';
+    }
+}
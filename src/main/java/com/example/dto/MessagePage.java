@@ -0,0 +1,65 @@
+package com.example.dto;
+
+import com.example.entity.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of a timeline: the messages, newest first, and the cursor that continues after the last of them, or null
+ * when there are no more.
+ */
+public class MessagePage {
+
+    private List<Message> messages = new ArrayList<>();
+    private String nextCursor;
+
+    public MessagePage() {
+
+    }
+
+    public MessagePage(List<Message> messages, String nextCursor) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Message> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        MessagePage other = (MessagePage) obj;
+        return Objects.equals(messages, other.messages) && Objects.equals(nextCursor, other.nextCursor);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(messages, nextCursor);
+    }
+
+    @Override
+    public String toString() {
+        return "MessagePage{" +
+                "messages=" + messages +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
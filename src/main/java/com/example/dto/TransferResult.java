@@ -0,0 +1,89 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk export or import: how many rows were moved and how fast.
+ */
+public class TransferResult {
+
+    private long rows;
+    private long bytes;
+    private long elapsedMillis;
+    private long rejectedRows;
+    private List<String> rejections = new ArrayList<>();
+
+    public TransferResult() {
+
+    }
+
+    public TransferResult(long rows, long bytes, long elapsedMillis) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @param rejectedRows Rows of an import that failed validation and were skipped.
+     * @param rejections The reasons for the first few of them.
+     */
+    public TransferResult(long rows, long bytes, long elapsedMillis, long rejectedRows, List<String> rejections) {
+        this(rows, bytes, elapsedMillis);
+        this.rejectedRows = rejectedRows;
+        this.rejections = rejections;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public void setRejectedRows(long rejectedRows) {
+        this.rejectedRows = rejectedRows;
+    }
+
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    public void setRejections(List<String> rejections) {
+        this.rejections = rejections;
+    }
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public long getRowsPerSecond() {
+        return elapsedMillis == 0 ? rows * 1000 : rows * 1000 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return rows + " rows, " + bytes + " bytes in " + elapsedMillis + " ms (" + getRowsPerSecond() + " rows/s)"
+                + (rejectedRows == 0 ? "" : ", " + rejectedRows + " rows rejected");
+    }
+}
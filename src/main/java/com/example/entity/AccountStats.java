@@ -0,0 +1,142 @@
+package com.example.entity;
+
+import javax.persistence.*;
+import java.util.Objects;
+
+/**
+ * Message statistics of one account: how many messages it has posted and when its first and last ones were posted.
+ *
+ * The live values are kept in memory by {@link com.example.service.AccountStatsService}; this table is a periodic
+ * snapshot of them for reporting, not the source of truth.
+ */
+@Entity
+@Table(name="account_stats")
+public class AccountStats {
+    /**
+     * The account these statistics belong to.
+     */
+    @Column(name="accountId")
+    @Id
+    private Integer accountId;
+    /**
+     * The number of messages posted by the account.
+     */
+    @Column(name="messageCount")
+    private long messageCount;
+    /**
+     * The earliest timePostedEpoch of the account's messages, or null if it has none.
+     */
+    @Column(name="firstPostedEpoch")
+    private Long firstPostedEpoch;
+    /**
+     * The latest timePostedEpoch of the account's messages, or null if it has none.
+     */
+    @Column(name="lastPostedEpoch")
+    private Long lastPostedEpoch;
+
+    /**
+     * A default, no-args constructor, as well as getters and setters, are needed for JPA and Jackson.
+     */
+    public AccountStats() {
+
+    }
+
+    /**
+     * Also used by the aggregate queries in {@link com.example.repository.MessageRepositoryCustom}.
+     * @param accountId
+     * @param messageCount
+     * @param firstPostedEpoch
+     * @param lastPostedEpoch
+     */
+    public AccountStats(Integer accountId, Long messageCount, Long firstPostedEpoch, Long lastPostedEpoch) {
+        this.accountId = accountId;
+        this.messageCount = messageCount;
+        this.firstPostedEpoch = firstPostedEpoch;
+        this.lastPostedEpoch = lastPostedEpoch;
+    }
+
+    public Integer getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(Integer accountId) {
+        this.accountId = accountId;
+    }
+
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public Long getFirstPostedEpoch() {
+        return firstPostedEpoch;
+    }
+
+    public void setFirstPostedEpoch(Long firstPostedEpoch) {
+        this.firstPostedEpoch = firstPostedEpoch;
+    }
+
+    public Long getLastPostedEpoch() {
+        return lastPostedEpoch;
+    }
+
+    public void setLastPostedEpoch(Long lastPostedEpoch) {
+        this.lastPostedEpoch = lastPostedEpoch;
+    }
+
+    /**
+     * Merges the statistics of two disjoint sets of the same account's messages, such as its archived and live ones.
+     * @param a
+     * @param b
+     * @return The statistics of both sets together.
+     */
+    public static AccountStats combine(AccountStats a, AccountStats b) {
+        return new AccountStats(a.accountId, a.messageCount + b.messageCount,
+                minOrNull(a.firstPostedEpoch, b.firstPostedEpoch), maxOrNull(a.lastPostedEpoch, b.lastPostedEpoch));
+    }
+
+    private static Long minOrNull(Long a, Long b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return Math.min(a, b);
+    }
+
+    private static Long maxOrNull(Long a, Long b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return Math.max(a, b);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        AccountStats other = (AccountStats) obj;
+        return messageCount == other.messageCount
+                && Objects.equals(accountId, other.accountId)
+                && Objects.equals(firstPostedEpoch, other.firstPostedEpoch)
+                && Objects.equals(lastPostedEpoch, other.lastPostedEpoch);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId, messageCount, firstPostedEpoch, lastPostedEpoch);
+    }
+
+    @Override
+    public String toString() {
+        return "AccountStats{" +
+                "accountId=" + accountId +
+                ", messageCount=" + messageCount +
+                ", firstPostedEpoch=" + firstPostedEpoch +
+                ", lastPostedEpoch=" + lastPostedEpoch +
+                '}';
+    }
+}
@@ -1,5 +1,14 @@
 package com.example.entity;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.ResultCheckStyle;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.Where;
+
 import javax.persistence.*;
 
 /**
@@ -8,14 +17,54 @@ import javax.persistence.*;
  * You should NOT make any modifications to this class.
  */
 @Entity
-@Table(name="message")
+@Table(name="message", indexes = {@Index(name = "message_deleted", columnList = "deleted"),
+        @Index(name = "message_posted_by_time", columnList = "postedBy, deleted, timePostedEpoch DESC, messageId DESC")})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@SQLDelete(sql = "UPDATE message SET deleted = TRUE, version = version + 1 "
+        + "WHERE messageId = ? AND version = ? AND NOT deleted", check = ResultCheckStyle.COUNT)
+@Where(clause = "NOT deleted")
 public class Message {
      /**
-     * An id for this message which will be automatically generated by the database.
+     * An id for this message which will be automatically generated by the database. When messages are sharded, the
+     * id also identifies the shard holding the message.
      */
      @Column (name="messageId")
-     @Id @GeneratedValue
+     @Id @GeneratedValue(generator = "messageId")
+     @GenericGenerator(name = "messageId", strategy = "com.example.repository.ShardedMessageIdGenerator")
     private Integer messageId;
+    /**
+     * A time-ordered 64-bit key for this message, generated by the application when the message is inserted; see
+     * {@link com.example.util.KSortableIdGenerator}. Messages that existed before the column was added are given keys
+     * derived from timePostedEpoch and messageId at startup. It is written as a JSON string, since JavaScript numbers
+     * cannot hold 64-bit integers exactly.
+     */
+    @Column (name="messageKey", unique = true)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    private Long messageKey;
+    /**
+     * Tombstone set by deleting the message: removing the entity only flags the row, which every entity read then
+     * skips, and MessageCompactor deletes flagged rows later in small batches. Never written by updates, so saving a
+     * stale copy cannot bring a deleted message back, and not part of the JSON representation.
+     */
+    @Column (name="deleted", nullable = false, updatable = false)
+    @JsonIgnore
+    private boolean deleted;
+    /**
+     * Set when the message was accepted although it nearly duplicates many recent messages, for moderators to review;
+     * see {@link com.example.service.NearDuplicateDetector}. Not part of the JSON representation.
+     */
+    @Column (name="flagged", nullable = false)
+    @JsonIgnore
+    private boolean flagged;
+    /**
+     * Incremented by every update and by the delete, which only succeed if the row still has the version it was read
+     * with. Clients see it as the ETag of the message rather than in the JSON representation.
+     */
+    @Version
+    @Column (name="version", nullable = false)
+    @JsonIgnore
+    private Long version;
     /**
      * The id for the user who has posted this message. We will assume that this is provided by the front-end of this
      * application.
@@ -65,6 +114,18 @@ public class Message {
         this.messageText = messageText;
         this.timePostedEpoch = timePostedEpoch;
     }
+    /**
+     * All fields including the messageKey, for reads that select it.
+     * @param messageId
+     * @param messageKey
+     * @param postedBy
+     * @param messageText
+     * @param timePostedEpoch
+     */
+    public Message(Integer messageId, Long messageKey, Integer postedBy, String messageText, Long timePostedEpoch) {
+        this(messageId, postedBy, messageText, timePostedEpoch);
+        this.messageKey = messageKey;
+    }
     /**
      * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
      * @return messageId
@@ -79,6 +140,38 @@ public class Message {
     public void setMessageId(Integer messageId) {
         this.messageId = messageId;
     }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @return messageKey
+     */
+    public Long getMessageKey() {
+        return messageKey;
+    }
+    /**
+     * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
+     * @param messageKey
+     */
+    public void setMessageKey(Long messageKey) {
+        this.messageKey = messageKey;
+    }
+    /**
+     * @return flagged
+     */
+    public boolean isFlagged() {
+        return flagged;
+    }
+    /**
+     * @param flagged
+     */
+    public void setFlagged(boolean flagged) {
+        this.flagged = flagged;
+    }
+    /**
+     * @return version
+     */
+    public Long getVersion() {
+        return version;
+    }
     /**
      * Properly named getters and setters are necessary for Jackson ObjectMapper to work. You may use them as well.
      * @return postedBy
@@ -123,7 +216,9 @@ public class Message {
     }
     /**
      * Overriding the default equals() method adds functionality to tell when two objects are identical, allowing
-     * Assert.assertEquals and List.contains to function.
+     * Assert.assertEquals and List.contains to function. The messageKey is left out: it is a second identifier of the
+     * same row, which messageId already compares. So is the version, which only matters to concurrent updates, and
+     * the moderation flag.
      * @param o the other object.
      * @return true if o is equal to this object.
      */
@@ -167,6 +262,7 @@ public class Message {
     public String toString() {
         return "Message{" +
                 "messageId=" + messageId +
+                ", messageKey=" + messageKey +
                 ", postedBy=" + postedBy +
                 ", messageText='" + messageText + '\'' +
                 ", timePostedEpoch=" + timePostedEpoch +
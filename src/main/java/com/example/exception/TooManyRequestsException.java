@@ -0,0 +1,26 @@
+package com.example.exception;
+
+public class TooManyRequestsException extends RuntimeException{
+
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructs a new runtime exception with the specified detail message and the number of seconds the client should
+     * wait before retrying.
+     *
+     * @param message the detail message. The detail message is saved for
+     *                later retrieval by the {@link #getMessage()} method.
+     * @param retryAfterSeconds the suggested wait before the next attempt, in seconds.
+     */
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return the suggested wait before the next attempt, in seconds.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,19 +1,28 @@
 package com.example.repository;
 
+import com.example.dto.AccountSummary;
 import com.example.entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, Integer> {
+public interface AccountRepository extends JpaRepository<Account, Integer>, AccountRepositoryCustom {
 
 
     /**
      * @param username lookup account by the username
-     * @return An Optional containing the account if it's found based on the username. An empty Optional otherwise
+     * @return An Optional containing the account if it's found based on the username. An empty Optional otherwise.
+     * The result is kept in the query cache until the account table changes.
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<Account> findByUsername(String username);
 
 
@@ -24,4 +33,27 @@ public interface AccountRepository extends JpaRepository<Account, Integer> {
      * otherwise
      */
     Optional<Account> findByUsernameAndPassword(String username, String password);
+
+
+    /**
+     * @param usernames usernames to look for
+     * @return The usernames among them that are already taken.
+     */
+    @Query("SELECT a.username FROM Account a WHERE a.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+
+    /**
+     * @param accountIds IDs to look for
+     * @return The IDs among them that belong to an existing account.
+     */
+    @Query("SELECT a.accountId FROM Account a WHERE a.accountId IN :accountIds")
+    List<Integer> findExistingIds(@Param("accountIds") Collection<Integer> accountIds);
+
+
+    /**
+     * @return The ID and username of every account, for building the in-memory username index.
+     */
+    @Query("SELECT new com.example.dto.AccountSummary(a.accountId, a.username) FROM Account a")
+    List<AccountSummary> findAllSummaries();
 }
@@ -0,0 +1,29 @@
+package com.example.repository;
+
+import com.example.entity.Account;
+
+import java.util.List;
+
+/**
+ * Bulk write path for {@link AccountRepository}, used by the import. Accounts are written with batched JDBC statements
+ * instead of one persist per entity.
+ */
+public interface AccountRepositoryCustom {
+
+    /**
+     * Inserts new accounts with one batched statement within the caller's transaction. Accounts without an ID get one
+     * from hibernate_sequence, drawn in a single round trip; accounts with an ID keep it. Cached query results are
+     * evicted afterwards. Callers validate the accounts, including username and ID uniqueness, beforehand.
+     *
+     * @param accounts accounts to insert
+     */
+    void insertAll(List<Account> accounts);
+
+    /**
+     * Moves hibernate_sequence past an ID that is about to be inserted explicitly, so that later registrations cannot
+     * be handed the same ID. Runs outside of any transaction because H2 commits on sequence changes.
+     *
+     * @param accountId the highest ID about to be inserted
+     */
+    void reserveIdsThrough(int accountId);
+}
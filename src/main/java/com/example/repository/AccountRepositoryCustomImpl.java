@@ -0,0 +1,56 @@
+package com.example.repository;
+
+import com.example.entity.Account;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implements {@link AccountRepositoryCustom} with plain JDBC on the primary database.
+ */
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    public AccountRepositoryCustomImpl(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void insertAll(List<Account> accounts) {
+        int missing = 0;
+        for (Account account : accounts) {
+            if (account.getAccountId() == null) {
+                missing++;
+            }
+        }
+        List<Integer> sequence = missing == 0 ? List.of() : jdbcTemplate.queryForList(
+                "SELECT NEXT VALUE FOR hibernate_sequence FROM SYSTEM_RANGE(1, ?)", Integer.class, missing);
+        List<Object[]> args = new ArrayList<>(accounts.size());
+        int next = 0;
+        for (Account account : accounts) {
+            if (account.getAccountId() == null) {
+                account.setAccountId(sequence.get(next++));
+            }
+            args.add(new Object[]{account.getAccountId(), account.getUsername(), account.getPassword()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO account (accountId, username, password) VALUES (?, ?, ?)", args);
+        // Hibernate does not see JDBC writes, so cached lookups by username would otherwise stay stale
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+    }
+
+    @Override
+    public void reserveIdsThrough(int accountId) {
+        long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR hibernate_sequence", Long.class);
+        if (next <= accountId) {
+            jdbcTemplate.execute("ALTER SEQUENCE hibernate_sequence RESTART WITH " + ((long) accountId + 1));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.repository;
+
+import com.example.entity.AccountStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AccountStatsRepository extends JpaRepository<AccountStats, Integer> {
+}
@@ -0,0 +1,756 @@
+package com.example.repository;
+
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold storage for old messages: immutable, compressed segment files that MessageArchiver fills from the message
+ * table. Reads that miss the table fall back to this archive.
+ *
+ * A segment holds messages ordered by postedBy and then messageId, in deflated blocks of {@value #BLOCK_ROWS} rows, so
+ * an account's messages sit in a few adjacent blocks. After the blocks comes an ID index: every messageId in ascending
+ * order with the block that holds it. The footer, loaded into memory when the segment is opened, is a sparse index over
+ * both: the file position of every block, every {@value #ID_PAGE_ENTRIES}th entry of the ID index, and for every poster
+ * their range of blocks together with their message count and first and last post times. A lookup by ID therefore
+ * reads one page of the ID index and decompresses one block, and a lookup by poster only that poster's blocks.
+ *
+ * A segment is written as {@code .tmp}, renamed to {@code .pending} once complete, and renamed to {@code .seg} once
+ * its messages have been deleted from the message table. Pending segments are already readable; readers drop the
+ * duplicates they see while the delete is in progress. At startup leftover {@code .tmp} files are removed and pending
+ * segments are completed.
+ *
+ * Segments are never rewritten, so a deleted archived message is recorded in the {@value #TOMBSTONE_FILE} file instead:
+ * an append-only list of the deleted messageIds with their posters, loaded into memory at startup. Lookups skip
+ * tombstoned messages, and the statistics of a poster with tombstones are computed from their remaining messages.
+ */
+@Repository
+public class MessageArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchive.class);
+
+    private static final int BLOCK_ROWS = 256;
+    private static final int ID_PAGE_ENTRIES = 512;
+    private static final int ID_ENTRY_SIZE = 2 * Integer.BYTES;
+    /**
+     * Segments written before rows carried a messageKey end in MAGIC_V1; they are still read, without keys.
+     */
+    private static final int MAGIC_V1 = 0x4D534731;
+    private static final int MAGIC = 0x4D534732;
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+    private static final int DELETE_BATCH_SIZE = 10_000;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String TOMBSTONE_FILE = "tombstones";
+    private static final int TOMBSTONE_SIZE = 2 * Integer.BYTES;
+    private static final int NO_POSTER = Integer.MIN_VALUE;
+
+    private final Path directory;
+    private final MessageRepository messageRepository;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicInteger lastSegmentNumber = new AtomicInteger();
+    private final Set<Integer> tombstones = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> tombstonedPosters = ConcurrentHashMap.newKeySet();
+    private FileChannel tombstoneChannel;
+
+    @Autowired
+    public MessageArchive(@Value("${app.archive.directory:archive}") String directory,
+                          MessageRepository messageRepository) {
+        this.directory = Paths.get(directory);
+        this.messageRepository = messageRepository;
+    }
+
+    /**
+     * Opens the existing segments and completes the ones a previous run left pending.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            lastSegmentNumber.accumulateAndGet(segmentNumber(name), Math::max);
+            if (name.endsWith(TEMPORARY_SUFFIX)) {
+                Files.delete(file);
+            } else if (name.endsWith(SEGMENT_SUFFIX) || name.endsWith(PENDING_SUFFIX)) {
+                segments.add(new Segment(file));
+            }
+        }
+        completePending(messageRepository::deleteArchived);
+        loadTombstones();
+        log.info("Opened {} archive segments holding {} messages, {} of them deleted", segments.size(),
+                countMessages(), tombstones.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+        if (tombstoneChannel != null) {
+            tombstoneChannel.close();
+        }
+    }
+
+    /**
+     * Deletes an archived message by appending it to the tombstone file. From then on it is no longer found.
+     *
+     * @param message the archived message, as returned by {@link #findById(int)}
+     * @return true if this call deleted the message, false if it was deleted already.
+     */
+    public synchronized boolean markDeleted(Message message) {
+        if (tombstones.contains(message.getMessageId())) {
+            return false;
+        }
+        int postedBy = message.getPostedBy() == null ? NO_POSTER : message.getPostedBy();
+        try {
+            if (tombstoneChannel == null) {
+                Files.createDirectories(directory);
+                tombstoneChannel = FileChannel.open(directory.resolve(TOMBSTONE_FILE), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer record = ByteBuffer.allocate(TOMBSTONE_SIZE).putInt(message.getMessageId()).putInt(postedBy);
+            record.flip();
+            while (record.hasRemaining()) {
+                tombstoneChannel.write(record);
+            }
+            tombstoneChannel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        addTombstone(message.getMessageId(), postedBy);
+        return true;
+    }
+
+    private void loadTombstones() throws IOException {
+        Path file = directory.resolve(TOMBSTONE_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        // A record torn by a crash during the append is ignored; its delete was never acknowledged
+        ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (records.remaining() >= TOMBSTONE_SIZE) {
+            addTombstone(records.getInt(), records.getInt());
+        }
+    }
+
+    private void addTombstone(int messageId, int postedBy) {
+        if (postedBy != NO_POSTER) {
+            tombstonedPosters.add(postedBy);
+        }
+        tombstones.add(messageId);
+    }
+
+    /**
+     * Starts a new segment. Messages must be added ordered by postedBy and then messageId.
+     *
+     * @return A writer for the segment, which becomes readable once finished.
+     */
+    public SegmentWriter createSegment() throws IOException {
+        Files.createDirectories(directory);
+        String name = String.format("segment-%08d", lastSegmentNumber.incrementAndGet());
+        return new SegmentWriter(directory.resolve(name + TEMPORARY_SUFFIX),
+                directory.resolve(name + PENDING_SUFFIX));
+    }
+
+    /**
+     * Hands the IDs of every pending segment, in batches, to the callback that removes them from the message table,
+     * then marks the segment complete. Deleting the same IDs twice is harmless, so this is safe to repeat.
+     *
+     * @param deleteFromMessageTable removes the given messages from the message table
+     */
+    public synchronized void completePending(Consumer<List<Integer>> deleteFromMessageTable) throws IOException {
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (!segment.file.getFileName().toString().endsWith(PENDING_SUFFIX)) {
+                continue;
+            }
+            List<Integer> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+            for (int block = 0; block < segment.blockCount(); block++) {
+                for (Message message : segment.readBlock(block)) {
+                    batch.add(message.getMessageId());
+                    if (batch.size() == DELETE_BATCH_SIZE) {
+                        deleteFromMessageTable.accept(batch);
+                        batch = new ArrayList<>(DELETE_BATCH_SIZE);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                deleteFromMessageTable.accept(batch);
+            }
+            String name = segment.file.getFileName().toString();
+            Path complete = segment.file.resolveSibling(
+                    name.substring(0, name.length() - PENDING_SUFFIX.length()) + SEGMENT_SUFFIX);
+            Files.move(segment.file, complete, StandardCopyOption.ATOMIC_MOVE);
+            segments.set(i, segment.movedTo(complete));
+        }
+    }
+
+    /**
+     * @param messageId the ID of an archived message
+     * @return The message, if it is archived.
+     */
+    public Optional<Message> findById(int messageId) {
+        if (tombstones.contains(messageId)) {
+            return Optional.empty();
+        }
+        for (Segment segment : segments) {
+            Message message = segment.find(messageId);
+            if (message != null) {
+                return Optional.of(message);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @param postedBy lookup messages by the account that posted them
+     * @return The account's archived messages, ordered by messageId within each segment.
+     */
+    public List<Message> findByPostedBy(int postedBy) {
+        List<Message> messages = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (Segment segment : segments) {
+            for (Message message : segment.findByPostedBy(postedBy)) {
+                if (!tombstones.contains(message.getMessageId()) && seen.add(message.getMessageId())) {
+                    messages.add(message);
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * @return The statistics of every account with archived messages, taken from the segment footers except for
+     * accounts with deleted archived messages.
+     */
+    public List<AccountStats> aggregateStatsByPostedBy() {
+        Map<Integer, AccountStats> stats = new HashMap<>();
+        for (Segment segment : segments) {
+            segment.posters.forEach((postedBy, poster) -> stats.merge(postedBy, poster.stats, AccountStats::combine));
+        }
+        for (Integer postedBy : tombstonedPosters) {
+            AccountStats remaining = aggregateRemaining(postedBy);
+            if (remaining.getMessageCount() == 0) {
+                stats.remove(postedBy);
+            } else {
+                stats.put(postedBy, remaining);
+            }
+        }
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * @param postedBy the account to aggregate
+     * @return The statistics of the account's archived messages, with a count of 0 if it has none.
+     */
+    public AccountStats aggregateStatsForPostedBy(int postedBy) {
+        if (tombstonedPosters.contains(postedBy)) {
+            return aggregateRemaining(postedBy);
+        }
+        AccountStats stats = new AccountStats(postedBy, 0L, null, null);
+        for (Segment segment : segments) {
+            Poster poster = segment.posters.get(postedBy);
+            if (poster != null) {
+                stats = AccountStats.combine(stats, poster.stats);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Aggregates the account's archived messages that have not been deleted. The footers still count deleted ones,
+     * so this reads the account's blocks.
+     */
+    private AccountStats aggregateRemaining(int postedBy) {
+        AccountStats stats = new AccountStats(postedBy, 0L, null, null);
+        for (Message message : findByPostedBy(postedBy)) {
+            stats = AccountStats.combine(stats, new AccountStats(postedBy, 1L, message.getTimePostedEpoch(),
+                    message.getTimePostedEpoch()));
+        }
+        return stats;
+    }
+
+    /**
+     * @return The number of messages in the segments, deleted ones included.
+     */
+    public long countMessages() {
+        long rows = 0;
+        for (Segment segment : segments) {
+            rows += segment.rows;
+        }
+        return rows;
+    }
+
+    public int countSegments() {
+        return segments.size();
+    }
+
+    /**
+     * @return The total size of the segment files in bytes.
+     */
+    public long sizeOnDisk() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.size;
+        }
+        return bytes;
+    }
+
+    private static int segmentNumber(String fileName) {
+        int start = "segment-".length();
+        int end = fileName.indexOf('.', start);
+        try {
+            return Integer.parseInt(fileName.substring(start, end < 0 ? fileName.length() : end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    /**
+     * Builds one segment block by block. Only the current block, the sparse index and the ID index entries, 8 bytes per
+     * message, are held in memory.
+     */
+    public final class SegmentWriter {
+        private final Path temporaryFile;
+        private final Path pendingFile;
+        private final FileChannel channel;
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(BLOCK_ROWS * 64);
+        private final DataOutputStream block = new DataOutputStream(blockBytes);
+        private final List<long[]> blocks = new ArrayList<>();
+        private final List<PosterBuilder> posters = new ArrayList<>();
+        // messageId in the high half, block number in the low half, so that sorting orders the ID index
+        private long[] idEntries = new long[1024];
+        private int blockRows;
+        private int rows;
+        private Message last;
+
+        private SegmentWriter(Path temporaryFile, Path pendingFile) throws IOException {
+            this.temporaryFile = temporaryFile;
+            this.pendingFile = pendingFile;
+            this.channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        /**
+         * @param message the next message, which must not come before the previous one in segment order
+         * @throws IllegalArgumentException If the message is out of order.
+         */
+        public void add(Message message) throws IOException {
+            if (!follows(message)) {
+                throw new IllegalArgumentException("Messages must be added ordered by postedBy and then messageId.");
+            }
+            if (message.getPostedBy() != null) {
+                PosterBuilder poster = posters.isEmpty() ? null : posters.get(posters.size() - 1);
+                if (poster == null || poster.postedBy != message.getPostedBy()) {
+                    poster = new PosterBuilder(message.getPostedBy(), blocks.size());
+                    posters.add(poster);
+                }
+                poster.add(blocks.size(), message.getTimePostedEpoch());
+            }
+            if (rows == idEntries.length) {
+                idEntries = Arrays.copyOf(idEntries, rows * 2);
+            }
+            idEntries[rows] = ((long) message.getMessageId() << 32) | blocks.size();
+            block.writeInt(message.getMessageId());
+            block.writeBoolean(message.getPostedBy() != null);
+            if (message.getPostedBy() != null) {
+                block.writeInt(message.getPostedBy());
+            }
+            block.writeBoolean(message.getMessageText() != null);
+            if (message.getMessageText() != null) {
+                block.writeUTF(message.getMessageText());
+            }
+            writeNullableLong(block, message.getTimePostedEpoch());
+            writeNullableLong(block, message.getMessageKey());
+            blockRows++;
+            rows++;
+            last = message;
+            if (blockRows == BLOCK_ROWS) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * @param message a message to be added
+         * @return Whether the message may be added next: it sorts after the previous one by postedBy, with messages
+         * without a poster first, and then by messageId.
+         */
+        public boolean follows(Message message) {
+            if (last == null) {
+                return true;
+            }
+            Integer previous = last.getPostedBy();
+            Integer next = message.getPostedBy();
+            if (!Objects.equals(previous, next)) {
+                return previous == null || (next != null && next > previous);
+            }
+            return message.getMessageId() > last.getMessageId();
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Writes the ID index and the footer, makes the file durable and publishes the segment as pending.
+         */
+        public void finish() throws IOException {
+            if (blockRows > 0) {
+                flushBlock();
+            }
+            long[] entries = Arrays.copyOf(idEntries, rows);
+            Arrays.sort(entries);
+            long idIndexOffset = channel.position();
+            ByteBuffer idIndex = ByteBuffer.allocate(ID_PAGE_ENTRIES * ID_ENTRY_SIZE);
+            for (long entry : entries) {
+                if (!idIndex.hasRemaining()) {
+                    write(idIndex.flip());
+                    idIndex.clear();
+                }
+                idIndex.putInt((int) (entry >>> 32)).putInt((int) entry);
+            }
+            write(idIndex.flip());
+
+            long footerOffset = channel.position();
+            ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+            DataOutputStream footer = new DataOutputStream(footerBytes);
+            footer.writeInt(blocks.size());
+            for (long[] entry : blocks) {
+                footer.writeLong(entry[0]);
+                footer.writeInt((int) entry[1]);
+                footer.writeInt((int) entry[2]);
+            }
+            footer.writeLong(idIndexOffset);
+            footer.writeInt(rows);
+            for (int i = 0; i < rows; i += ID_PAGE_ENTRIES) {
+                footer.writeInt((int) (entries[i] >>> 32));
+            }
+            footer.writeInt(rows == 0 ? 0 : (int) (entries[rows - 1] >>> 32));
+            footer.writeInt(posters.size());
+            for (PosterBuilder poster : posters) {
+                footer.writeInt(poster.postedBy);
+                footer.writeLong(poster.count);
+                writeNullableLong(footer, poster.first);
+                writeNullableLong(footer, poster.last);
+                footer.writeInt(poster.firstBlock);
+                footer.writeInt(poster.lastBlock);
+            }
+            footer.writeLong(footerOffset);
+            footer.writeInt(MAGIC);
+            write(ByteBuffer.wrap(footerBytes.toByteArray()));
+            channel.force(true);
+            channel.close();
+            Files.move(temporaryFile, pendingFile, StandardCopyOption.ATOMIC_MOVE);
+            segments.add(new Segment(pendingFile));
+        }
+
+        /**
+         * Discards an unfinished segment.
+         */
+        public void abort() throws IOException {
+            channel.close();
+            Files.deleteIfExists(temporaryFile);
+        }
+
+        private void flushBlock() throws IOException {
+            byte[] compressed = deflate(blockBytes.toByteArray());
+            // File position, compressed length, raw length
+            blocks.add(new long[]{channel.position(), compressed.length, blockBytes.size()});
+            write(ByteBuffer.wrap(compressed));
+            blockBytes.reset();
+            blockRows = 0;
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static final class PosterBuilder {
+        private final int postedBy;
+        private final int firstBlock;
+        private int lastBlock;
+        private long count;
+        private Long first;
+        private Long last;
+
+        private PosterBuilder(int postedBy, int firstBlock) {
+            this.postedBy = postedBy;
+            this.firstBlock = firstBlock;
+        }
+
+        private void add(int block, Long timePosted) {
+            count++;
+            lastBlock = block;
+            if (timePosted != null) {
+                first = first == null ? timePosted : Math.min(first, timePosted);
+                last = last == null ? timePosted : Math.max(last, timePosted);
+            }
+        }
+    }
+
+    private static final class Poster {
+        private final AccountStats stats;
+        private final int firstBlock;
+        private final int lastBlock;
+
+        private Poster(AccountStats stats, int firstBlock, int lastBlock) {
+            this.stats = stats;
+            this.firstBlock = firstBlock;
+            this.lastBlock = lastBlock;
+        }
+    }
+
+    /**
+     * An open segment file and its in-memory sparse index.
+     */
+    private static final class Segment {
+        private final Path file;
+        private final FileChannel channel;
+        private final long size;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final int[] rawLengths;
+        private final long idIndexOffset;
+        private final int rows;
+        // The first messageId of every page of the ID index, and the last messageId of the segment
+        private final int[] pageFirstIds;
+        private final int lastId;
+        private final Map<Integer, Poster> posters;
+        private final boolean hasMessageKeys;
+
+        private Segment(Path file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+            ByteBuffer trailer = read(size - TRAILER_SIZE, TRAILER_SIZE);
+            long footerOffset = trailer.getLong();
+            int magic = trailer.getInt();
+            if (magic != MAGIC && magic != MAGIC_V1) {
+                channel.close();
+                throw new IOException(file + " is not an archive segment.");
+            }
+            hasMessageKeys = magic == MAGIC;
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(
+                    read(footerOffset, (int) (size - TRAILER_SIZE - footerOffset)).array()));
+            int blockCount = footer.readInt();
+            offsets = new long[blockCount];
+            lengths = new int[blockCount];
+            rawLengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                offsets[i] = footer.readLong();
+                lengths[i] = footer.readInt();
+                rawLengths[i] = footer.readInt();
+            }
+            idIndexOffset = footer.readLong();
+            rows = footer.readInt();
+            pageFirstIds = new int[(rows + ID_PAGE_ENTRIES - 1) / ID_PAGE_ENTRIES];
+            for (int i = 0; i < pageFirstIds.length; i++) {
+                pageFirstIds[i] = footer.readInt();
+            }
+            lastId = footer.readInt();
+            int posterCount = footer.readInt();
+            posters = new HashMap<>(posterCount * 2);
+            for (int i = 0; i < posterCount; i++) {
+                int postedBy = footer.readInt();
+                long messageCount = footer.readLong();
+                Long first = readNullableLong(footer);
+                Long last = readNullableLong(footer);
+                posters.put(postedBy, new Poster(new AccountStats(postedBy, messageCount, first, last),
+                        footer.readInt(), footer.readInt()));
+            }
+        }
+
+        private Segment(Segment moved, Path file) {
+            this.file = file;
+            this.channel = moved.channel;
+            this.size = moved.size;
+            this.offsets = moved.offsets;
+            this.lengths = moved.lengths;
+            this.rawLengths = moved.rawLengths;
+            this.idIndexOffset = moved.idIndexOffset;
+            this.rows = moved.rows;
+            this.pageFirstIds = moved.pageFirstIds;
+            this.lastId = moved.lastId;
+            this.posters = moved.posters;
+            this.hasMessageKeys = moved.hasMessageKeys;
+        }
+
+        /**
+         * The open channel keeps reading the same file after a rename.
+         */
+        private Segment movedTo(Path file) {
+            return new Segment(this, file);
+        }
+
+        private int blockCount() {
+            return offsets.length;
+        }
+
+        private Message find(int messageId) {
+            if (rows == 0 || messageId < pageFirstIds[0] || messageId > lastId) {
+                return null;
+            }
+            // The last page starting at or before the ID
+            int page = Arrays.binarySearch(pageFirstIds, messageId);
+            if (page < 0) {
+                page = -page - 2;
+            }
+            int entries = Math.min(ID_PAGE_ENTRIES, rows - page * ID_PAGE_ENTRIES);
+            ByteBuffer index;
+            try {
+                index = read(idIndexOffset + (long) page * ID_PAGE_ENTRIES * ID_ENTRY_SIZE, entries * ID_ENTRY_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int low = 0;
+            int high = entries - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int id = index.getInt(mid * ID_ENTRY_SIZE);
+                if (id < messageId) {
+                    low = mid + 1;
+                } else if (id > messageId) {
+                    high = mid - 1;
+                } else {
+                    for (Message message : readBlock(index.getInt(mid * ID_ENTRY_SIZE + Integer.BYTES))) {
+                        if (message.getMessageId() == messageId) {
+                            return message;
+                        }
+                    }
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private List<Message> findByPostedBy(int postedBy) {
+            Poster poster = posters.get(postedBy);
+            if (poster == null) {
+                return List.of();
+            }
+            List<Message> messages = new ArrayList<>((int) poster.stats.getMessageCount());
+            for (int block = poster.firstBlock; block <= poster.lastBlock; block++) {
+                for (Message message : readBlock(block)) {
+                    if (message.getPostedBy() != null && message.getPostedBy() == postedBy) {
+                        messages.add(message);
+                    }
+                }
+            }
+            return messages;
+        }
+
+        private List<Message> readBlock(int block) {
+            try {
+                byte[] raw = new byte[rawLengths[block]];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(read(offsets[block], lengths[block]).array());
+                    inflater.inflate(raw);
+                } catch (DataFormatException e) {
+                    throw new IOException("Corrupt block " + block + " in " + file, e);
+                } finally {
+                    inflater.end();
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+                List<Message> messages = new ArrayList<>(BLOCK_ROWS);
+                while (in.available() > 0) {
+                    int messageId = in.readInt();
+                    Integer postedBy = in.readBoolean() ? in.readInt() : null;
+                    String messageText = in.readBoolean() ? in.readUTF() : null;
+                    Long timePostedEpoch = readNullableLong(in);
+                    Long messageKey = hasMessageKeys ? readNullableLong(in) : null;
+                    messages.add(new Message(messageId, messageKey, postedBy, messageText, timePostedEpoch));
+                }
+                return messages;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Truncated archive segment " + file);
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Plain JDBC access to the message_like and message_like_count tables. Both are written in batches, so unlike the
+ * entity repositories this works on primitive pairs and deltas rather than managed objects.
+ *
+ * A like is identified by a pair packed into one long: the message ID in the high 32 bits and the account ID in the
+ * low 32 bits, see {@link #pack(int, int)}.
+ */
+@Repository
+public class MessageLikeRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public MessageLikeRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * data.sql recreates these tables on every start; this covers profiles that skip data.sql.
+     */
+    @PostConstruct
+    public void createTables() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS message_like (messageId INT, accountId INT, "
+                + "PRIMARY KEY (messageId, accountId))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS message_like_count (messageId INT PRIMARY KEY, "
+                + "likeCount BIGINT NOT NULL)");
+    }
+
+    public static long pack(int messageId, int accountId) {
+        return (long) messageId << 32 | (accountId & 0xFFFFFFFFL);
+    }
+
+    public static int messageIdOf(long pair) {
+        return (int) (pair >>> 32);
+    }
+
+    public static int accountIdOf(long pair) {
+        return (int) pair;
+    }
+
+    /**
+     * @param consumer receives every stored like as a packed pair
+     */
+    public void forEachLike(LongConsumer consumer) {
+        jdbcTemplate.query("SELECT messageId, accountId FROM message_like",
+                (RowCallbackHandler) rs -> consumer.accept(pack(rs.getInt(1), rs.getInt(2))));
+    }
+
+    /**
+     * Inserts the likes that are not stored yet; pairs already stored, for example by another instance, are skipped.
+     *
+     * @param pairs likes as packed pairs
+     * @return Per pair, 1 if it was inserted and 0 if it was already stored.
+     */
+    public int[] insertLikes(long[] pairs) {
+        List<Object[]> args = new ArrayList<>(pairs.length);
+        for (long pair : pairs) {
+            args.add(new Object[]{messageIdOf(pair), accountIdOf(pair), messageIdOf(pair), accountIdOf(pair)});
+        }
+        return jdbcTemplate.batchUpdate("INSERT INTO message_like (messageId, accountId) "
+                + "SELECT CAST(? AS INT), CAST(? AS INT) WHERE NOT EXISTS "
+                + "(SELECT 1 FROM message_like WHERE messageId = ? AND accountId = ?)", args);
+    }
+
+    /**
+     * @param pairs likes as packed pairs
+     * @return Per pair, 1 if it was deleted and 0 if it was not stored.
+     */
+    public int[] deleteLikes(long[] pairs) {
+        return jdbcTemplate.batchUpdate("DELETE FROM message_like WHERE messageId = ? AND accountId = ?",
+                toArgs(pairs));
+    }
+
+    /**
+     * Adds the deltas to the stored counts, creating the count rows that do not exist yet.
+     *
+     * @param deltas message ID to the change in its like count
+     */
+    public void addToCounts(Map<Integer, Long> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((messageId, delta) -> args.add(new Object[]{delta, messageId}));
+        int[] updated = jdbcTemplate.batchUpdate(
+                "UPDATE message_like_count SET likeCount = likeCount + ? WHERE messageId = ?", args);
+
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(new Object[]{args.get(i)[1], args.get(i)[0]});
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO message_like_count (messageId, likeCount) VALUES (?, ?)", missing);
+        }
+    }
+
+    /**
+     * @return The stored like count of the message, 0 if it has none.
+     */
+    public long findCount(int messageId) {
+        List<Long> counts = jdbcTemplate.queryForList(
+                "SELECT likeCount FROM message_like_count WHERE messageId = ?", Long.class, messageId);
+        return counts.isEmpty() ? 0 : counts.get(0);
+    }
+
+    public void deleteByMessageId(int messageId) {
+        jdbcTemplate.update("DELETE FROM message_like WHERE messageId = ?", messageId);
+        jdbcTemplate.update("DELETE FROM message_like_count WHERE messageId = ?", messageId);
+    }
+
+    private static List<Object[]> toArgs(long[] pairs) {
+        List<Object[]> args = new ArrayList<>(pairs.length);
+        for (long pair : pairs) {
+            args.add(new Object[]{messageIdOf(pair), accountIdOf(pair)});
+        }
+        return args;
+    }
+}
@@ -2,16 +2,29 @@ package com.example.repository;
 
 import com.example.entity.Message;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Collection;
+import java.util.Optional;
 
 
+/**
+ * Messages may be spread over several databases; the methods that know about that live in
+ * {@link MessageRepositoryCustom}.
+ */
 @Repository
-public interface MessageRepository extends JpaRepository<Message, Integer> {
+public interface MessageRepository extends JpaRepository<Message, Integer>, MessageRepositoryCustom {
 
-    @Query("SELECT m FROM Message m WHERE m.postedBy = :postedBy")
-    Collection<Message> findByAccount_PostedBy(@Param("postedBy") Integer postedBy);
+    // Redeclared so that callers see a single method; the shard-aware implementation is used
+
+    @Override
+    <S extends Message> S save(S message);
+
+    @Override
+    Optional<Message> findById(Integer messageId);
+
+    @Override
+    boolean existsById(Integer messageId);
+
+    @Override
+    void deleteById(Integer messageId);
 }
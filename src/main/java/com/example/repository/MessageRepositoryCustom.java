@@ -0,0 +1,191 @@
+package com.example.repository;
+
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The shard-aware part of {@link MessageRepository}. These methods take precedence over the JpaRepository defaults
+ * and are routed by {@link MessageShards}: per-account and by-ID calls go to a single shard, findAll scatters to every
+ * shard in parallel. Other inherited JpaRepository methods only see the primary database.
+ */
+public interface MessageRepositoryCustom {
+
+    /**
+     * Inserts a new message on its poster's shard, or updates an existing one on the shard its ID points to. The
+     * poster of an existing message must not change. A new message always gets a freshly generated messageKey.
+     */
+    <S extends Message> S save(S message);
+
+    Optional<Message> findById(Integer messageId);
+
+    /**
+     * Replaces the text of a message with a compare-and-set on its version: the row is read and written in one write
+     * transaction on the primary, and the UPDATE only applies if no other transaction changed the row in between.
+     *
+     * @param messageId the message to update
+     * @param messageText the new text
+     * @param expectedVersion the version the caller last saw, or null to accept whatever version is read
+     * @return The updated message with its new version, or empty if there is no such message.
+     * @throws org.springframework.dao.OptimisticLockingFailureException If the stored version is not the expected
+     * one, or another transaction updated the message first.
+     */
+    Optional<Message> updateMessageText(int messageId, String messageText, Long expectedVersion);
+
+    boolean existsById(Integer messageId);
+
+    /**
+     * Loads several messages at once. Messages in the second-level cache are taken from it; the rest are read with one
+     * {@code IN} query per shard and chunk of IDs.
+     *
+     * @param messageIds the IDs to load
+     * @return The messages that exist, in no particular order.
+     */
+    List<Message> findAllById(Iterable<Integer> messageIds);
+
+    /**
+     * @return Every message, ordered by timePostedEpoch and then messageId.
+     */
+    List<Message> findAll();
+
+    /**
+     * Read path for listing messages. Unlike {@link #findAll()} the returned messages are plain objects built by a
+     * constructor projection: they are not attached to the persistence context, so nothing is snapshotted for dirty
+     * checking, and rows are fetched in large batches.
+     *
+     * @return Every message, ordered by timePostedEpoch and then messageId.
+     */
+    List<Message> findAllProjected();
+
+    /**
+     * Read path for listing an account's messages, with the same unmanaged projection as {@link #findAllProjected()}.
+     * The result is kept in the query cache until the message table changes.
+     *
+     * @param postedBy lookup messages by the account that posted them
+     * @return All messages posted by the account.
+     */
+    List<Message> findProjectedByPostedBy(Integer postedBy);
+
+    /**
+     * Reads one page of the combined timeline of several accounts, newest first by timePostedEpoch and then messageId.
+     * Each account's messages are read through their own cursor on the message_posted_by_time index,
+     * and the cursors are merged by a heap of their heads, so about limit rows are read in all rather than every
+     * message of every account. Shards holding some of the accounts are read in parallel and their pages merged the
+     * same way. Messages without a timePostedEpoch are left out.
+     *
+     * @param postedBy the accounts whose messages to merge
+     * @param beforeTime only messages older than the one with this timePostedEpoch and beforeId, or null from the newest
+     * @param beforeId the messageId that breaks ties at beforeTime; ignored when beforeTime is null
+     * @param limit the most messages to return
+     * @return Up to limit messages, newest first; the objects are not managed.
+     */
+    List<Message> findTimeline(Collection<Integer> postedBy, Long beforeTime, Integer beforeId, int limit);
+
+    /**
+     * Deletes a message by flagging its row as a tombstone (see {@link Message}); the row is removed later by
+     * {@link #purgeDeleted(int)}. Like an edit, the delete is a compare-and-set on the version, and it only changes a
+     * row that is not deleted yet.
+     *
+     * @throws org.springframework.dao.EmptyResultDataAccessException If the message does not exist.
+     * @throws org.springframework.dao.OptimisticLockingFailureException If the message was edited or deleted
+     * concurrently.
+     */
+    void deleteById(Integer messageId);
+
+    /**
+     * Streams matching messages to the consumer one row at a time, reading through a JDBC cursor with a large fetch size
+     * instead of building a list, so memory use does not grow with the number of rows. Rows are ordered by messageId
+     * within each shard; shards are read one after the other.
+     *
+     * @param postedBy only messages posted by this account, or null for all
+     * @param from only messages with timePostedEpoch at or after this, or null
+     * @param to only messages with timePostedEpoch before this, or null
+     * @param consumer receives each message; the objects are not managed
+     * @return The number of messages streamed.
+     */
+    long streamMessages(Integer postedBy, Long from, Long to, Consumer<Message> consumer);
+
+    /**
+     * Streams every message with a timePostedEpoch before the cutoff like {@link #streamMessages}, but ordered by
+     * postedBy and then messageId within each shard: the order {@link MessageArchive} clusters its segments in.
+     *
+     * @param before only messages with timePostedEpoch before this
+     * @param consumer receives each message; the objects are not managed
+     * @return The number of messages streamed.
+     */
+    long streamMessagesOlderThan(long before, Consumer<Message> consumer);
+
+    /**
+     * Bulk write path: inserts new messages with one batched JDBC statement per shard, bypassing the persistence
+     * context. IDs are drawn from each shard's sequence in a single round trip and set on the messages, so they follow
+     * the same scheme as {@link #save(Message)}; messageKeys are generated in process like there. Each shard's batch
+     * commits on its own, and cached query results are evicted afterwards. Callers validate the messages beforehand;
+     * any IDs and messageKeys they carry are replaced.
+     *
+     * @param messages messages whose postedBy is set
+     */
+    void insertAll(List<Message> messages);
+
+    /**
+     * Like {@link #insertAll(List)}, but also runs a callback within each shard's transaction, so that it can register
+     * work to do once exactly those messages have committed.
+     *
+     * @param messages messages whose postedBy is set
+     * @param inTransaction called with the messages of one shard after inserting them, before the commit
+     */
+    void insertAll(List<Message> messages, Consumer<List<Message>> inTransaction);
+
+    /**
+     * Removes messages that {@link MessageArchive} now holds, with one batched JDBC delete per shard. IDs that are
+     * already gone are ignored. The messages are evicted from the second-level cache, as are cached query results.
+     *
+     * @param messageIds IDs of archived messages
+     */
+    void deleteArchived(List<Integer> messageIds);
+
+    /**
+     * Physically removes up to limit tombstoned messages from each shard, with one batched JDBC delete per shard.
+     *
+     * @param limit the most rows to remove per shard
+     * @return The number of rows removed.
+     */
+    int purgeDeleted(int limit);
+
+    /**
+     * Gives every message without a messageKey, such as rows written before the column existed, a key derived from
+     * its timePostedEpoch and messageId: {@code (seconds * 1000 - EPOCH_MILLIS) << 22 | messageId}. A messageId takes
+     * at most 31 of the 32 bits below the second, so these keys are unique and ordered by time and then ID. Times are
+     * clamped to before the call, which keeps the keys below every key generated from then on. Updates run in
+     * messageId ranges of the batch size, each in its own transaction, and the message cache is evicted afterwards.
+     *
+     * @param batchSize the width of each messageId range
+     * @return The number of messages given a key.
+     */
+    long backfillMessageKeys(int batchSize);
+
+    /**
+     * Computes the statistics of every account that has posted, in one aggregate query per shard.
+     *
+     * @return One entry per poster; accounts without messages are absent.
+     */
+    List<AccountStats> aggregateStatsByPostedBy();
+
+    /**
+     * Computes the statistics of a single account from its messages.
+     *
+     * @param postedBy the account to aggregate
+     * @return The account's statistics, with a count of 0 if it has no messages.
+     */
+    AccountStats aggregateStatsForPostedBy(Integer postedBy);
+
+    /**
+     * @param postedBy lookup messages by the account that posted them
+     * @return All messages posted by the account. The result is kept in the query cache until the message table
+     * changes.
+     */
+    Collection<Message> findByAccount_PostedBy(Integer postedBy);
+}
@@ -0,0 +1,535 @@
+package com.example.repository;
+
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import com.example.util.KSortableIdGenerator;
+import com.example.util.KWayMerge;
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import javax.persistence.EntityManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Implements {@link MessageRepositoryCustom} on top of {@link MessageShards}. In an unsharded deployment the only
+ * shard is the primary persistence unit and its templates join the caller's transaction, so behaviour matches the
+ * plain JpaRepository methods.
+ */
+public class MessageRepositoryCustomImpl implements MessageRepositoryCustom {
+
+    private static final Comparator<Message> BY_TIME_POSTED = Comparator
+            .comparing(Message::getTimePostedEpoch, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Message::getMessageId);
+
+    private static final Comparator<Message> NEWEST_FIRST = BY_TIME_POSTED.reversed();
+
+    private static final String TIMELINE_QUERY = "SELECT messageId, messageKey, postedBy, messageText, timePostedEpoch "
+            + "FROM message WHERE postedBy = ? AND deleted = FALSE AND timePostedEpoch IS NOT NULL";
+    // postedBy and deleted are fixed by the WHERE clause; listing them anyway makes the order the index's own, which
+    // H2 needs to read the index in order instead of sorting every message of the account
+    private static final String TIMELINE_ORDER =
+            " ORDER BY postedBy, deleted, timePostedEpoch DESC, messageId DESC FETCH FIRST ? ROWS ONLY";
+
+    /**
+     * Builds unmanaged messages straight from the selected columns, so no entity is hydrated, registered in the
+     * persistence context or put in the second-level cache.
+     */
+    private static final String MESSAGE_PROJECTION =
+            "SELECT new com.example.entity.Message(m.messageId, m.messageKey, m.postedBy, m.messageText, "
+                    + "m.timePostedEpoch) FROM Message m";
+
+    private static final String STATS_PROJECTION = "SELECT new com.example.entity.AccountStats(m.postedBy, COUNT(m), "
+            + "MIN(m.timePostedEpoch), MAX(m.timePostedEpoch)) FROM Message m";
+
+    private final MessageShards shards;
+    private final KSortableIdGenerator messageKeyGenerator;
+    private final int fetchSize;
+    private final int streamFetchSize;
+    private final int multiGetChunkSize;
+
+    @Autowired
+    public MessageRepositoryCustomImpl(MessageShards shards, KSortableIdGenerator messageKeyGenerator,
+                                       @Value("${app.messages.fetch-size:1000}") int fetchSize,
+                                       @Value("${app.export.fetch-size:10000}") int streamFetchSize,
+                                       @Value("${app.messages.multi-get.chunk-size:500}") int multiGetChunkSize) {
+        this.shards = shards;
+        this.messageKeyGenerator = messageKeyGenerator;
+        this.fetchSize = fetchSize;
+        this.streamFetchSize = streamFetchSize;
+        this.multiGetChunkSize = multiGetChunkSize;
+    }
+
+    @Override
+    public <S extends Message> S save(S message) {
+        if (message.getMessageId() == null) {
+            message.setMessageKey(messageKeyGenerator.nextId());
+            MessageShard shard = shards.forPostedBy(message.getPostedBy());
+            return shard.getWriteTransaction().execute(status -> {
+                shard.getEntityManager().persist(message);
+                return message;
+            });
+        }
+        MessageShard shard = shards.forMessageId(message.getMessageId());
+        return shard.getWriteTransaction().execute(status -> shard.getEntityManager().merge(message));
+    }
+
+    @Override
+    public Optional<Message> updateMessageText(int messageId, String messageText, Long expectedVersion) {
+        MessageShard shard = shards.forMessageId(messageId);
+        return shard.getWriteTransaction().execute(status -> {
+            EntityManager entityManager = shard.getEntityManager();
+            Message message = entityManager.find(Message.class, messageId);
+            if (message == null) {
+                return Optional.empty();
+            }
+            if (expectedVersion != null && !expectedVersion.equals(message.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Message.class, messageId);
+            }
+            message.setMessageText(messageText);
+            // The UPDATE only matches the row if its version is still the one just read
+            entityManager.flush();
+            return Optional.of(message);
+        });
+    }
+
+    @Override
+    public Optional<Message> findById(Integer messageId) {
+        MessageShard shard = shards.forMessageId(messageId);
+        return shard.getReadTransaction().execute(status ->
+                Optional.ofNullable(shard.getEntityManager().find(Message.class, messageId)));
+    }
+
+    @Override
+    public boolean existsById(Integer messageId) {
+        return findById(messageId).isPresent();
+    }
+
+    @Override
+    public List<Message> findAllById(Iterable<Integer> messageIds) {
+        Map<MessageShard, List<Integer>> byShard = new LinkedHashMap<>();
+        for (Integer messageId : messageIds) {
+            byShard.computeIfAbsent(shards.forMessageId(messageId), shard -> new ArrayList<>()).add(messageId);
+        }
+        List<Message> messages = new ArrayList<>();
+        byShard.forEach((shard, ids) -> messages.addAll(shard.getReadTransaction().execute(status ->
+                // Checks the persistence context and the second-level cache first, then loads the misses in chunks
+                shard.getEntityManager().unwrap(Session.class)
+                        .byMultipleIds(Message.class)
+                        .withBatchSize(multiGetChunkSize)
+                        .enableOrderedReturn(false)
+                        .multiLoad(ids))));
+        messages.removeIf(Objects::isNull);
+        return messages;
+    }
+
+    @Override
+    public List<Message> findAll() {
+        List<List<Message>> perShard = shards.scatter(shard -> shard.getReadTransaction().execute(status ->
+                shard.getEntityManager()
+                        .createQuery("SELECT m FROM Message m ORDER BY m.timePostedEpoch, m.messageId", Message.class)
+                        .getResultList()));
+        return perShard.size() == 1 ? perShard.get(0) : KWayMerge.merge(perShard, BY_TIME_POSTED);
+    }
+
+    @Override
+    public List<Message> findAllProjected() {
+        List<List<Message>> perShard = shards.scatter(shard -> shard.getReadTransaction().execute(status ->
+                shard.getEntityManager()
+                        .createQuery(MESSAGE_PROJECTION + " ORDER BY m.timePostedEpoch, m.messageId", Message.class)
+                        .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                        .setHint(QueryHints.READ_ONLY, true)
+                        .getResultList()));
+        return perShard.size() == 1 ? perShard.get(0) : KWayMerge.merge(perShard, BY_TIME_POSTED);
+    }
+
+    @Override
+    public List<Message> findProjectedByPostedBy(Integer postedBy) {
+        MessageShard shard = shards.forPostedBy(postedBy);
+        return shard.getReadTransaction().execute(status -> shard.getEntityManager()
+                .createQuery(MESSAGE_PROJECTION + " WHERE m.postedBy = :postedBy", Message.class)
+                .setParameter("postedBy", postedBy)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList());
+    }
+
+    @Override
+    public List<Message> findTimeline(Collection<Integer> postedBy, Long beforeTime, Integer beforeId, int limit) {
+        Map<MessageShard, List<Integer>> byShard = new LinkedHashMap<>();
+        for (Integer accountId : postedBy) {
+            byShard.computeIfAbsent(shards.forPostedBy(accountId), shard -> new ArrayList<>()).add(accountId);
+        }
+        List<List<Message>> perShard = shards.scatter(shard -> {
+            List<Integer> accounts = byShard.get(shard);
+            if (accounts == null) {
+                return List.<Message>of();
+            }
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.getDataSource());
+            return shard.getReadTransaction().execute(status -> lazily(jdbcTemplate, () -> jdbcTemplate.execute(
+                    (ConnectionCallback<List<Message>>) connection ->
+                            mergeTimelines(connection, accounts, beforeTime, beforeId, limit))));
+        });
+        return perShard.size() == 1 ? perShard.get(0) : KWayMerge.merge(perShard, NEWEST_FIRST, limit);
+    }
+
+    /**
+     * Opens one cursor per account on the connection and merges them until the page is full. Each cursor fetches its
+     * share of the page per round trip, as if the accounts posted equally often; busier accounts take more round trips.
+     */
+    private static List<Message> mergeTimelines(Connection connection, List<Integer> accounts, Long beforeTime,
+                                                Integer beforeId, int limit) throws SQLException {
+        // The time bound is a plain range on the index; the tie on equal times is broken by messageId
+        String sql = TIMELINE_QUERY + (beforeTime != null
+                ? " AND timePostedEpoch <= ? AND (timePostedEpoch < ? OR messageId < ?)" : "") + TIMELINE_ORDER;
+        List<PreparedStatement> statements = new ArrayList<>(accounts.size());
+        try {
+            List<Iterable<Message>> cursors = new ArrayList<>(accounts.size());
+            for (Integer accountId : accounts) {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statements.add(statement);
+                int parameter = 1;
+                statement.setInt(parameter++, accountId);
+                if (beforeTime != null) {
+                    statement.setLong(parameter++, beforeTime);
+                    statement.setLong(parameter++, beforeTime);
+                    statement.setInt(parameter++, beforeId);
+                }
+                statement.setInt(parameter, limit);
+                statement.setFetchSize(limit / accounts.size() + 1);
+                RowCursor cursor = new RowCursor(statement.executeQuery(), sql);
+                cursors.add(() -> cursor);
+            }
+            return KWayMerge.merge(cursors, NEWEST_FIRST, limit);
+        } finally {
+            for (PreparedStatement statement : statements) {
+                statement.close();
+            }
+        }
+    }
+
+    @Override
+    public void deleteById(Integer messageId) {
+        MessageShard shard = shards.forMessageId(messageId);
+        shard.getWriteTransaction().executeWithoutResult(status -> {
+            EntityManager entityManager = shard.getEntityManager();
+            Message message = entityManager.find(Message.class, messageId);
+            if (message == null) {
+                throw new EmptyResultDataAccessException(
+                        String.format("No %s entity with id %s exists!", Message.class, messageId), 1);
+            }
+            entityManager.remove(message);
+            // Flush now, so that losing to a concurrent edit or delete fails here even within a caller's transaction
+            entityManager.flush();
+        });
+    }
+
+    @Override
+    public long streamMessages(Integer postedBy, Long from, Long to, Consumer<Message> consumer) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT messageId, messageKey, postedBy, messageText, timePostedEpoch FROM message WHERE deleted = FALSE");
+        List<Object> args = new ArrayList<>();
+        if (postedBy != null) {
+            sql.append(" AND postedBy = ?");
+            args.add(postedBy);
+        }
+        if (from != null) {
+            sql.append(" AND timePostedEpoch >= ?");
+            args.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND timePostedEpoch < ?");
+            args.add(to);
+        }
+        // Primary key order lets the database walk the index instead of sorting the whole table first
+        sql.append(" ORDER BY messageId");
+
+        return stream(sql.toString(), args.toArray(),
+                postedBy != null ? List.of(shards.forPostedBy(postedBy)) : shards.all(), consumer);
+    }
+
+    @Override
+    public long streamMessagesOlderThan(long before, Consumer<Message> consumer) {
+        return stream("SELECT messageId, messageKey, postedBy, messageText, timePostedEpoch FROM message "
+                + "WHERE timePostedEpoch < ? AND deleted = FALSE ORDER BY postedBy, messageId", new Object[]{before},
+                shards.all(), consumer);
+    }
+
+    private long stream(String sql, Object[] args, List<MessageShard> targets, Consumer<Message> consumer) {
+        long rows = 0;
+        for (MessageShard shard : targets) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.getDataSource());
+            jdbcTemplate.setFetchSize(streamFetchSize);
+            // A transaction keeps auto-commit off, which drivers such as PostgreSQL need to use a server-side cursor
+            rows += shard.getReadTransaction().execute(status -> lazily(jdbcTemplate, () -> {
+                long[] count = {0};
+                jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+                    consumer.accept(readMessage(rs));
+                    count[0]++;
+                }, args);
+                return count[0];
+            }));
+        }
+        return rows;
+    }
+
+    /**
+     * Runs queries on the transaction's connection with H2's lazy execution switched on, if the database is H2. H2
+     * materializes results by default; lazy execution makes it produce rows as they are fetched.
+     */
+    private static <T> T lazily(JdbcTemplate jdbcTemplate, Supplier<T> queries) {
+        boolean h2 = "H2".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()));
+        if (h2) {
+            jdbcTemplate.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        }
+        try {
+            return queries.get();
+        } finally {
+            if (h2) {
+                jdbcTemplate.execute("SET LAZY_QUERY_EXECUTION FALSE");
+            }
+        }
+    }
+
+    /**
+     * Builds an unmanaged message from a row of messageId, messageKey, postedBy, messageText and timePostedEpoch.
+     */
+    private static Message readMessage(ResultSet rs) throws SQLException {
+        return new Message(rs.getInt(1), rs.getObject(2, Long.class), rs.getObject(3, Integer.class), rs.getString(4),
+                rs.getObject(5, Long.class));
+    }
+
+    /**
+     * An open result set read as an iterator of messages, one row ahead of the caller at most.
+     */
+    private static final class RowCursor implements Iterator<Message> {
+        private final ResultSet rs;
+        private final String sql;
+        private Message next;
+        private boolean done;
+
+        private RowCursor(ResultSet rs, String sql) {
+            this.rs = rs;
+            this.sql = sql;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    if (rs.next()) {
+                        next = readMessage(rs);
+                    } else {
+                        done = true;
+                    }
+                } catch (SQLException e) {
+                    throw new UncategorizedSQLException("Reading timeline", sql, e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Message message = next;
+            next = null;
+            return message;
+        }
+    }
+
+    @Override
+    public void insertAll(List<Message> messages) {
+        insertAll(messages, batch -> {
+        });
+    }
+
+    @Override
+    public void insertAll(List<Message> messages, Consumer<List<Message>> inTransaction) {
+        Map<MessageShard, List<Message>> byShard = new LinkedHashMap<>();
+        for (Message message : messages) {
+            byShard.computeIfAbsent(shards.forPostedBy(message.getPostedBy()), shard -> new ArrayList<>()).add(message);
+        }
+        byShard.forEach((shard, batch) -> {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.getDataSource());
+            shard.getWriteTransaction().executeWithoutResult(status -> {
+                List<Integer> ids = nextFreeIds(jdbcTemplate, shard, batch.size());
+                List<Object[]> args = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    Message message = batch.get(i);
+                    message.setMessageId(ids.get(i));
+                    message.setMessageKey(messageKeyGenerator.nextId());
+                    args.add(new Object[]{message.getMessageId(), message.getMessageKey(), message.getPostedBy(),
+                            message.getMessageText(), message.getTimePostedEpoch()});
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO message (messageId, messageKey, postedBy, messageText, "
+                        + "timePostedEpoch, deleted, flagged, version) VALUES (?, ?, ?, ?, ?, FALSE, FALSE, 0)", args);
+                inTransaction.accept(batch);
+            });
+            // Hibernate does not see JDBC writes, so cached results for the message table would otherwise stay stale
+            shard.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getCache()
+                    .evictQueryRegions();
+        });
+    }
+
+    @Override
+    public void deleteArchived(List<Integer> messageIds) {
+        Map<MessageShard, List<Object[]>> byShard = new LinkedHashMap<>();
+        for (Integer messageId : messageIds) {
+            byShard.computeIfAbsent(shards.forMessageId(messageId), shard -> new ArrayList<>())
+                    .add(new Object[]{messageId});
+        }
+        byShard.forEach((shard, args) -> {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.getDataSource());
+            shard.getWriteTransaction().executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate("DELETE FROM message WHERE messageId = ?", args));
+            Cache cache = shard.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+            for (Object[] arg : args) {
+                cache.evictEntityData(Message.class, (Integer) arg[0]);
+            }
+            cache.evictQueryRegions();
+        });
+    }
+
+    @Override
+    public int purgeDeleted(int limit) {
+        int purged = 0;
+        for (MessageShard shard : shards.all()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.getDataSource());
+            purged += shard.getWriteTransaction().execute(status -> {
+                List<Object[]> args = new ArrayList<>();
+                for (Integer messageId : jdbcTemplate.queryForList(
+                        "SELECT messageId FROM message WHERE deleted = TRUE FETCH FIRST ? ROWS ONLY", Integer.class,
+                        limit)) {
+                    args.add(new Object[]{messageId});
+                }
+                if (args.isEmpty()) {
+                    return 0;
+                }
+                // Tombstoned rows are invisible to every read and already evicted, so no cache needs evicting here
+                return Arrays.stream(jdbcTemplate.batchUpdate(
+                        "DELETE FROM message WHERE messageId = ? AND deleted = TRUE", args)).sum();
+            });
+        }
+        return purged;
+    }
+
+    @Override
+    public long backfillMessageKeys(int batchSize) {
+        long epochSeconds = KSortableIdGenerator.EPOCH_MILLIS / 1000;
+        // A whole second before now: a legacy key covers up to 2^31 keys past the start of its second
+        long cutoffSeconds = System.currentTimeMillis() / 1000 - 1;
+        String sql = "UPDATE message SET messageKey = (LEAST(GREATEST(COALESCE(timePostedEpoch, ?), ?), ?) * 1000 - ?) "
+                + "* " + (1L << KSortableIdGenerator.TIMESTAMP_SHIFT) + " + messageId "
+                + "WHERE messageKey IS NULL AND messageId >= ? AND messageId < ?";
+        long updated = 0;
+        for (MessageShard shard : shards.all()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.getDataSource());
+            Map<String, Object> range = jdbcTemplate.queryForMap(
+                    "SELECT MIN(messageId) AS low, MAX(messageId) AS high FROM message WHERE messageKey IS NULL");
+            if (range.get("low") == null) {
+                continue;
+            }
+            long high = ((Number) range.get("high")).longValue();
+            for (long low = ((Number) range.get("low")).longValue(); low <= high; low += batchSize) {
+                long from = low;
+                updated += shard.getWriteTransaction().execute(status -> jdbcTemplate.update(sql, epochSeconds,
+                        epochSeconds, cutoffSeconds, KSortableIdGenerator.EPOCH_MILLIS, from, from + batchSize));
+            }
+            Cache cache = shard.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+            cache.evictEntityData(Message.class);
+            cache.evictQueryRegions();
+        }
+        return updated;
+    }
+
+    /**
+     * Draws IDs the way ShardedMessageIdGenerator does, sequence * shardCount + shardIndex, from the sequence named
+     * after the generator. Rows inserted with explicit IDs, such as the data.sql seed, can sit ahead of the sequence;
+     * IDs they already use are skipped rather than failing the whole batch.
+     */
+    private List<Integer> nextFreeIds(JdbcTemplate jdbcTemplate, MessageShard shard, int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            List<Integer> drawn = new ArrayList<>();
+            for (Long sequence : jdbcTemplate.queryForList("SELECT NEXT VALUE FOR messageId FROM SYSTEM_RANGE(1, ?)",
+                    Long.class, count - ids.size())) {
+                drawn.add(Math.toIntExact(sequence * shards.count() + shard.getIndex()));
+            }
+            Set<Integer> taken = new HashSet<>(jdbcTemplate.queryForList(
+                    "SELECT messageId FROM message WHERE messageId BETWEEN ? AND ?", Integer.class,
+                    drawn.get(0), drawn.get(drawn.size() - 1)));
+            for (Integer id : drawn) {
+                if (!taken.contains(id)) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public List<AccountStats> aggregateStatsByPostedBy() {
+        // Every message of an account lives on the same shard, so the per-shard groups never overlap
+        List<List<AccountStats>> perShard = shards.scatter(shard -> shard.getReadTransaction().execute(status ->
+                shard.getEntityManager()
+                        .createQuery(STATS_PROJECTION + " WHERE m.postedBy IS NOT NULL GROUP BY m.postedBy",
+                                AccountStats.class)
+                        .getResultList()));
+        List<AccountStats> stats = new ArrayList<>();
+        perShard.forEach(stats::addAll);
+        return stats;
+    }
+
+    @Override
+    public AccountStats aggregateStatsForPostedBy(Integer postedBy) {
+        MessageShard shard = shards.forPostedBy(postedBy);
+        List<AccountStats> stats = shard.getReadTransaction().execute(status -> shard.getEntityManager()
+                .createQuery(STATS_PROJECTION + " WHERE m.postedBy = :postedBy GROUP BY m.postedBy",
+                        AccountStats.class)
+                .setParameter("postedBy", postedBy)
+                .getResultList());
+        return stats.isEmpty() ? new AccountStats(postedBy, 0L, null, null) : stats.get(0);
+    }
+
+    @Override
+    public Collection<Message> findByAccount_PostedBy(Integer postedBy) {
+        MessageShard shard = shards.forPostedBy(postedBy);
+        return shard.getReadTransaction().execute(status -> shard.getEntityManager()
+                .createQuery("SELECT m FROM Message m WHERE m.postedBy = :postedBy", Message.class)
+                .setParameter("postedBy", postedBy)
+                .setHint(QueryHints.CACHEABLE, true)
+                .getResultList());
+    }
+}
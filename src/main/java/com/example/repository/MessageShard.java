@@ -0,0 +1,62 @@
+package com.example.repository;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+/**
+ * One database holding a slice of the message table, together with the shared EntityManager and transaction templates
+ * used to work on it.
+ */
+public class MessageShard {
+
+    private final int index;
+    private final EntityManager entityManager;
+    private final DataSource dataSource;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+
+    public MessageShard(int index, EntityManager entityManager, DataSource dataSource,
+                        PlatformTransactionManager transactionManager) {
+        this.index = index;
+        this.entityManager = entityManager;
+        this.dataSource = dataSource;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * @return The position of this shard, which is also the remainder of its message IDs modulo the shard count.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return A shared, thread-safe EntityManager bound to this shard's persistence unit.
+     */
+    public EntityManager getEntityManager() {
+        return entityManager;
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return A template for read-write work. It joins a surrounding transaction on the same database.
+     */
+    public TransactionTemplate getWriteTransaction() {
+        return writeTransaction;
+    }
+
+    /**
+     * @return A template for read-only work. It joins a surrounding transaction on the same database.
+     */
+    public TransactionTemplate getReadTransaction() {
+        return readTransaction;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.repository;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * The set of databases the message table is spread over. Messages are placed by a hash of postedBy, and every message
+ * ID encodes its shard (see {@link ShardedMessageIdGenerator}), so both per-account and by-ID access touch exactly
+ * one shard. Only queries that span all accounts have to {@link #scatter(Function) scatter} to every shard.
+ *
+ * An unsharded deployment is a single shard backed by the primary persistence unit.
+ */
+public class MessageShards implements DisposableBean {
+
+    private final List<MessageShard> shards;
+    private final ExecutorService scatterExecutor;
+    private final List<AutoCloseable> resources;
+
+    /**
+     * @param shards The shards, in index order.
+     * @param scatterExecutor Runs per-shard queries in parallel, or null to run them on the calling thread.
+     * @param resources Entity manager factories and pools to close on shutdown.
+     */
+    public MessageShards(List<MessageShard> shards, ExecutorService scatterExecutor, List<AutoCloseable> resources) {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.scatterExecutor = scatterExecutor;
+        this.resources = resources;
+    }
+
+    public int count() {
+        return shards.size();
+    }
+
+    public boolean isSharded() {
+        return shards.size() > 1;
+    }
+
+    public List<MessageShard> all() {
+        return shards;
+    }
+
+    /**
+     * @return The shard that holds every message posted by the account.
+     */
+    public MessageShard forPostedBy(int postedBy) {
+        int hash = postedBy * 0x9E3779B9;
+        return shards.get(Math.floorMod(hash ^ (hash >>> 16), shards.size()));
+    }
+
+    /**
+     * @return The shard that holds the message with this ID.
+     */
+    public MessageShard forMessageId(int messageId) {
+        return shards.get(Math.floorMod(messageId, shards.size()));
+    }
+
+    /**
+     * Runs the query on every shard, in parallel when there is more than one.
+     *
+     * @return The per-shard results, in shard order.
+     */
+    public <T> List<T> scatter(Function<MessageShard, T> query) {
+        if (!isSharded() || scatterExecutor == null) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (MessageShard shard : shards) {
+                results.add(query.apply(shard));
+            }
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (MessageShard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> query.apply(shard), scatterExecutor));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        for (CompletableFuture<T> future : futures) {
+            try {
+                results.add(future.join());
+            } catch (CompletionException e) {
+                // Surface the shard's own exception rather than the wrapper
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+        for (AutoCloseable resource : resources) {
+            resource.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.repository;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Message ID generator that makes every ID identify the shard holding it: {@code id = sequence * shardCount +
+ * shardIndex}, so {@code id % shardCount} is the shard. Each shard's persistence unit passes its position through the
+ * {@link #SHARD_INDEX} and {@link #SHARD_COUNT} settings. Without them (the unsharded persistence unit) the count is 1
+ * and the IDs are exactly the values of the underlying messageId sequence, which Hibernate names after the generator
+ * and which is separate from the hibernate_sequence that account IDs come from.
+ */
+public class ShardedMessageIdGenerator extends SequenceStyleGenerator {
+
+    public static final String SHARD_INDEX = "app.sharding.shard-index";
+    public static final String SHARD_COUNT = "app.sharding.shard-count";
+
+    private int shardIndex;
+    private int shardCount = 1;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        if (settings.containsKey(SHARD_COUNT)) {
+            shardCount = Integer.parseInt(settings.get(SHARD_COUNT).toString());
+            shardIndex = Integer.parseInt(settings.get(SHARD_INDEX).toString());
+        }
+        super.configure(type, params, serviceRegistry);
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        long sequence = ((Number) super.generate(session, object)).longValue();
+        return Math.toIntExact(sequence * shardCount + shardIndex);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.service;
+
+import com.example.dto.AccountSummary;
+import com.example.entity.Account;
+import com.example.exception.InvalidRequestException;
+import com.example.repository.AccountRepository;
+import com.example.util.PrefixIndex;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds accounts by username prefix, for mention autocomplete, without touching the database.
+ *
+ * Usernames live in an in-memory {@link PrefixIndex} that is built from {@link AccountRepository} at startup and
+ * extended when an account is registered or imported, once its transaction commits. A lookup is a binary search over
+ * sorted arrays.
+ */
+@Service
+@Lazy(false)
+public class AccountSearchService implements SmartInitializingSingleton {
+
+    private final AccountRepository accountRepository;
+    private final PrefixIndex index;
+    private final int maxLimit;
+
+    @Autowired
+    public AccountSearchService(AccountRepository accountRepository,
+                                @Value("${app.accounts.search.max-limit:50}") int maxLimit,
+                                @Value("${app.accounts.search.merge-threshold:4096}") int mergeThreshold) {
+        this.accountRepository = accountRepository;
+        this.maxLimit = maxLimit;
+        this.index = new PrefixIndex(mergeThreshold);
+    }
+
+    /**
+     * Builds the index once every bean, including the data.sql initializer, is ready and before the web server starts
+     * taking requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the index with the usernames currently in the account table.
+     */
+    public void rebuild() {
+        List<AccountSummary> accounts = accountRepository.findAllSummaries();
+        List<String> usernames = new ArrayList<>(accounts.size());
+        List<Integer> accountIds = new ArrayList<>(accounts.size());
+        for (AccountSummary account : accounts) {
+            usernames.add(account.getUsername());
+            accountIds.add(account.getAccountId());
+        }
+        index.load(usernames, accountIds);
+    }
+
+    /**
+     * Retrieves the accounts whose username starts with the prefix, ignoring case.
+     *
+     * @param prefix The start of the username.
+     * @param limit The maximum number of accounts to return.
+     * @return Up to limit accounts, ordered by username.
+     * @throws InvalidRequestException If the prefix is blank or the limit is outside 1 to app.accounts.search.max-limit.
+     */
+    public List<AccountSummary> search(String prefix, int limit) throws InvalidRequestException {
+
+        // Check if the prefix narrows the search at all
+        if (prefix == null || prefix.isEmpty()) {
+            throw new InvalidRequestException("Search prefix cannot be blank.");
+        }
+
+        // Check if the limit is within bounds
+        if (limit < 1 || limit > maxLimit) {
+            throw new InvalidRequestException("Search limit has to be between 1 and " + maxLimit + ".");
+        }
+
+        List<AccountSummary> matches = new ArrayList<>(limit);
+        index.search(prefix, limit, (username, accountId) -> matches.add(new AccountSummary(accountId, username)));
+        return matches;
+    }
+
+    /**
+     * Adds newly saved accounts to the index once the current transaction commits.
+     *
+     * @param accounts The saved accounts, with their IDs set.
+     */
+    public void recordRegistered(Collection<Account> accounts) {
+        List<String> usernames = new ArrayList<>(accounts.size());
+        List<Integer> accountIds = new ArrayList<>(accounts.size());
+        for (Account account : accounts) {
+            usernames.add(account.getUsername());
+            accountIds.add(account.getAccountId());
+        }
+        if (usernames.size() == 1) {
+            afterCommit(() -> index.add(usernames.get(0), accountIds.get(0)));
+        } else {
+            afterCommit(() -> index.addAll(usernames, accountIds));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -5,8 +5,13 @@ import com.example.exception.DuplicateResourceException;
 import com.example.exception.InvalidRequestException;
 import com.example.exception.ResourceNotFoundException;
 import com.example.repository.AccountRepository;
+import com.example.util.Bulkheaded;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.List;
 
 
 
@@ -14,10 +19,33 @@ import org.springframework.stereotype.Service;
 public class AccountService {
 
     private final AccountRepository accountRepository;
+    private final IdempotencyStore idempotencyStore;
+    private final AccountSearchService accountSearchService;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(AccountRepository accountRepository, IdempotencyStore idempotencyStore,
+                          AccountSearchService accountSearchService) {
         this.accountRepository = accountRepository;
+        this.idempotencyStore = idempotencyStore;
+        this.accountSearchService = accountSearchService;
+    }
+
+    /**
+     * Registers a new account at most once per idempotency key. Retries with the same key get the account registered
+     * by the first attempt instead of a duplicate-username error.
+     *
+     * @param account The account object containing the username and password.
+     * @param idempotencyKey The client-supplied Idempotency-Key, or null to always attempt the registration.
+     * @return The registered account, or the one registered by an earlier request with the same key.
+     * @throws InvalidRequestException If the account is invalid or the key was already used for a different account.
+     * @throws DuplicateResourceException If an account with the same username already exists.
+     */
+    @Bulkheaded(Bulkheaded.AUTH)
+    @Transactional
+    public Account register(Account account, String idempotencyKey)
+            throws InvalidRequestException, DuplicateResourceException {
+        return idempotencyStore.execute("register", idempotencyKey,
+                Arrays.asList(account.getUsername(), account.getPassword()), () -> register(account));
     }
 
     /**
@@ -28,28 +56,43 @@ public class AccountService {
      * @throws InvalidRequestException If the username is blank or the password is too short.
      * @throws DuplicateResourceException If an account with the same username already exists.
      */
+    @Bulkheaded(Bulkheaded.AUTH)
+    @Transactional
     public Account register(Account account) throws InvalidRequestException, DuplicateResourceException {
 
         // Check if an account with the provided username already exists
         boolean accountExists = accountRepository.findByUsername(account.getUsername()).isPresent();
 
+        validateCredentials(account);
+
+        // Check if the username is already taken
+        if (accountExists) {
+            throw new DuplicateResourceException("A user with this username already exists.");
+        }
+
+        // Persist the validated account in the database, and make it searchable once it commits
+        Account saved = accountRepository.save(account);
+        accountSearchService.recordRegistered(List.of(saved));
+        return saved;
+    }
+
+    /**
+     * The field rules of {@link #register(Account)}, shared with the bulk import.
+     *
+     * @param account The account object containing the username and password.
+     * @throws InvalidRequestException If the username is blank or the password is too short.
+     */
+    static void validateCredentials(Account account) throws InvalidRequestException {
+
         // Validate that the username is not empty
-        if (account.getUsername().isEmpty()) {
+        if (account.getUsername() == null || account.getUsername().isEmpty()) {
             throw new InvalidRequestException("Username cannot be blank.");
         }
 
         // Validate that the password meets the minimum length requirement
-        if (account.getPassword().length() < 4) {
+        if (account.getPassword() == null || account.getPassword().length() < 4) {
             throw new InvalidRequestException("Password has to be at least 4 characters long.");
         }
-
-        // Check if the username is already taken
-        if (accountExists) {
-            throw new DuplicateResourceException("A user with this username already exists.");
-        }
-
-        // Persist the validated account in the database
-        return accountRepository.save(account);
     }
 
     /**
@@ -59,6 +102,8 @@ public class AccountService {
      * @return The authenticated account if credentials match.
      * @throws ResourceNotFoundException If no account with the given credentials is found.
      */
+    @Bulkheaded(Bulkheaded.AUTH)
+    @Transactional(readOnly = true)
     public Account login(Account account) throws ResourceNotFoundException {
         return accountRepository.findByUsernameAndPassword(account.getUsername(), account.getPassword())
                 .orElseThrow(() -> new ResourceNotFoundException("No account was found with given credentials."));
@@ -71,6 +116,8 @@ public class AccountService {
      * @return The account with the specified ID.
      * @throws ResourceNotFoundException If no account with the given ID is found.
      */
+    @Bulkheaded(Bulkheaded.READS)
+    @Transactional(readOnly = true)
     public Account getUserById(int id) throws ResourceNotFoundException {
         return accountRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User with this ID does not exist."));
@@ -0,0 +1,285 @@
+package com.example.service;
+
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import com.example.repository.AccountStatsRepository;
+import com.example.repository.MessageArchive;
+import com.example.repository.MessageRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps per-account message statistics up to date as messages are created and deleted, so that reading them never
+ * touches the message table.
+ *
+ * The aggregates live in a striped in-memory table. They are rebuilt from {@link MessageRepository} at startup, changed
+ * only after the transaction that created or deleted a message commits, and copied to the account_stats table on a
+ * schedule. Deleting an account's earliest or latest message is the one case that needs the database: the new bound is
+ * recomputed with an aggregate query over that account's messages. Archived messages are counted too, from the
+ * archive's segment index.
+ */
+@Service
+@Lazy(false)
+public class AccountStatsService implements SmartInitializingSingleton {
+
+    private static final int STRIPE_COUNT = 64;
+
+    private final MessageRepository messageRepository;
+    private final AccountStatsRepository accountStatsRepository;
+    private final MessageArchive messageArchive;
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    @Autowired
+    public AccountStatsService(MessageRepository messageRepository, AccountStatsRepository accountStatsRepository,
+                               MessageArchive messageArchive) {
+        this.messageRepository = messageRepository;
+        this.accountStatsRepository = accountStatsRepository;
+        this.messageArchive = messageArchive;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Loads the aggregates once every bean, including the data.sql initializer, is ready and before the web server
+     * starts taking requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * Replaces the in-memory aggregates with ones computed from the message table and the archive.
+     */
+    public void rebuild() {
+        Map<Integer, AccountStats> computed = new HashMap<>();
+        for (AccountStats stats : messageArchive.aggregateStatsByPostedBy()) {
+            computed.put(stats.getAccountId(), stats);
+        }
+        for (AccountStats stats : messageRepository.aggregateStatsByPostedBy()) {
+            computed.merge(stats.getAccountId(), stats, AccountStats::combine);
+        }
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+        for (AccountStats stats : computed.values()) {
+            stripeFor(stats.getAccountId()).load(stats);
+        }
+    }
+
+    /**
+     * Retrieves the statistics of an account in constant time.
+     *
+     * @param accountId The ID of the account.
+     * @return The account's statistics; an account without messages has a count of 0 and no post times.
+     */
+    public AccountStats getStats(int accountId) {
+        return stripeFor(accountId).get(accountId);
+    }
+
+    /**
+     * Counts a newly saved message once the current transaction commits.
+     *
+     * @param message The saved message.
+     */
+    public void recordCreated(Message message) {
+        Integer accountId = message.getPostedBy();
+        if (accountId == null) {
+            return;
+        }
+        Long timePosted = message.getTimePostedEpoch();
+        afterCommit(() -> stripeFor(accountId).add(accountId, timePosted));
+    }
+
+    /**
+     * Counts newly saved messages once the current transaction commits, with one update per account.
+     *
+     * @param messages The saved messages.
+     */
+    public void recordCreated(List<Message> messages) {
+        Map<Integer, AccountStats> created = new HashMap<>();
+        for (Message message : messages) {
+            Integer accountId = message.getPostedBy();
+            if (accountId != null) {
+                Long timePosted = message.getTimePostedEpoch();
+                created.merge(accountId, new AccountStats(accountId, 1L, timePosted, timePosted),
+                        AccountStats::combine);
+            }
+        }
+        afterCommit(() -> created.values().forEach(stats -> stripeFor(stats.getAccountId()).add(stats)));
+    }
+
+    /**
+     * Uncounts a deleted message once the current transaction commits, or at once outside a transaction. Must be called
+     * after the delete, within the same transaction if there is one, so that the recomputed bounds no longer include
+     * the message.
+     *
+     * @param message The deleted message.
+     */
+    public void recordDeleted(Message message) {
+        Integer accountId = message.getPostedBy();
+        if (accountId == null) {
+            return;
+        }
+        Long timePosted = message.getTimePostedEpoch();
+        Stripe stripe = stripeFor(accountId);
+        // Only removing the earliest or latest message moves a bound, and only then is the database consulted
+        AccountStats recomputed = stripe.isBound(accountId, timePosted)
+                ? AccountStats.combine(messageRepository.aggregateStatsForPostedBy(accountId),
+                        messageArchive.aggregateStatsForPostedBy(accountId))
+                : null;
+        afterCommit(() -> stripe.remove(accountId, timePosted, recomputed));
+    }
+
+    /**
+     * Writes the aggregates changed since the last run to the account_stats table. The first run waits a full interval
+     * rather than writing at startup.
+     */
+    @Scheduled(fixedDelayString = "${app.account-stats.persist-interval-ms:10000}",
+            initialDelayString = "${app.account-stats.persist-interval-ms:10000}")
+    @Transactional
+    public void persistChanges() {
+        List<AccountStats> changed = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.drainChanged(changed);
+        }
+        for (AccountStats stats : changed) {
+            if (stats.getMessageCount() == 0) {
+                if (accountStatsRepository.existsById(stats.getAccountId())) {
+                    accountStatsRepository.deleteById(stats.getAccountId());
+                }
+            } else {
+                accountStatsRepository.save(stats);
+            }
+        }
+    }
+
+    private Stripe stripeFor(int accountId) {
+        int h = accountId * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (STRIPE_COUNT - 1)];
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Mutable aggregate of one account.
+     */
+    private static final class Counters {
+        private long count;
+        private Long first;
+        private Long last;
+        private boolean changed;
+
+        private AccountStats toStats(int accountId) {
+            return new AccountStats(accountId, count, first, last);
+        }
+    }
+
+    /**
+     * One lock-protected slice of the aggregate table.
+     */
+    private static final class Stripe {
+        private final Map<Integer, Counters> counters = new HashMap<>();
+
+        synchronized void clear() {
+            counters.clear();
+        }
+
+        synchronized void load(AccountStats stats) {
+            Counters c = new Counters();
+            c.count = stats.getMessageCount();
+            c.first = stats.getFirstPostedEpoch();
+            c.last = stats.getLastPostedEpoch();
+            c.changed = true;
+            counters.put(stats.getAccountId(), c);
+        }
+
+        synchronized AccountStats get(int accountId) {
+            Counters c = counters.get(accountId);
+            return c == null ? new AccountStats(accountId, 0L, null, null) : c.toStats(accountId);
+        }
+
+        synchronized void add(int accountId, Long timePosted) {
+            Counters c = counters.computeIfAbsent(accountId, id -> new Counters());
+            c.count++;
+            if (timePosted != null) {
+                c.first = c.first == null ? timePosted : Math.min(c.first, timePosted);
+                c.last = c.last == null ? timePosted : Math.max(c.last, timePosted);
+            }
+            c.changed = true;
+        }
+
+        synchronized void add(AccountStats stats) {
+            Counters c = counters.computeIfAbsent(stats.getAccountId(), id -> new Counters());
+            c.count += stats.getMessageCount();
+            Long first = stats.getFirstPostedEpoch();
+            Long last = stats.getLastPostedEpoch();
+            if (first != null) {
+                c.first = c.first == null ? first : Math.min(c.first, first);
+                c.last = c.last == null ? last : Math.max(c.last, last);
+            }
+            c.changed = true;
+        }
+
+        synchronized boolean isBound(int accountId, Long timePosted) {
+            Counters c = counters.get(accountId);
+            return c != null && timePosted != null && (timePosted.equals(c.first) || timePosted.equals(c.last));
+        }
+
+        synchronized void remove(int accountId, Long timePosted, AccountStats recomputed) {
+            Counters c = counters.get(accountId);
+            if (c == null) {
+                return;
+            }
+            c.count = Math.max(0, c.count - 1);
+            if (c.count == 0) {
+                c.first = null;
+                c.last = null;
+            } else if (recomputed != null) {
+                // A bound that no longer equals the deleted time was moved by a concurrent post and is kept
+                if (timePosted.equals(c.first)) {
+                    c.first = recomputed.getFirstPostedEpoch();
+                }
+                if (timePosted.equals(c.last)) {
+                    c.last = recomputed.getLastPostedEpoch();
+                }
+            }
+            c.changed = true;
+        }
+
+        synchronized void drainChanged(List<AccountStats> changed) {
+            counters.entrySet().removeIf(entry -> {
+                Counters c = entry.getValue();
+                if (c.changed) {
+                    changed.add(c.toStats(entry.getKey()));
+                    c.changed = false;
+                }
+                // Empty aggregates only stay until their removal has been persisted
+                return c.count == 0;
+            });
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package com.example.service;
+
+import com.example.dto.TransferResult;
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.exception.InvalidRequestException;
+import com.example.exception.TooManyRequestsException;
+import com.example.repository.AccountRepository;
+import com.example.repository.MessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Loads accounts and messages from NDJSON or CSV files in batches instead of one request per row.
+ *
+ * The calling thread splits the input into batches of records. Worker threads parse and validate the batches in
+ * parallel with the same rules as {@link AccountService#register(Account)} and
+ * {@link MessageService#createMessage(Message)}, apart from the posting rate limit. The calling thread then inserts the
+ * batches in file order with batched JDBC statements, one transaction per batch. At most two batches per worker are in
+ * flight, so memory use does not depend on the size of the file.
+ *
+ * Invalid rows are skipped and reported; a failure that is not about a single row stops the import and leaves the
+ * batches inserted before it in place. Only one import runs at a time.
+ */
+@Service
+public class BulkImportService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkImportService.class);
+
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private final AccountRepository accountRepository;
+    private final MessageRepository messageRepository;
+    private final AccountStatsService accountStatsService;
+    private final AccountSearchService accountSearchService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader accountReader;
+    private final ObjectReader messageReader;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int batchSize;
+    private final long progressIntervalMillis;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Autowired
+    public BulkImportService(AccountRepository accountRepository, MessageRepository messageRepository,
+                             AccountStatsService accountStatsService, AccountSearchService accountSearchService,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${app.import.parallelism:0}") int parallelism,
+                             @Value("${app.import.batch-size:10000}") int batchSize,
+                             @Value("${app.import.progress-interval-ms:5000}") long progressIntervalMillis) {
+        this.accountRepository = accountRepository;
+        this.messageRepository = messageRepository;
+        this.accountStatsService = accountStatsService;
+        this.accountSearchService = accountSearchService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.accountReader = objectMapper.readerFor(Account.class);
+        this.messageReader = objectMapper.readerFor(Message.class);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.batchSize = batchSize;
+        this.progressIntervalMillis = progressIntervalMillis;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Imports accounts. Rows carry a username and a password, and optionally an accountId to keep; accounts without
+     * one get a new ID. CSV files need a header naming the columns.
+     *
+     * @param format The input format.
+     * @param channel The file or request body to read; it is not closed.
+     * @return The number of accounts imported, the rows rejected and why.
+     * @throws InvalidRequestException If the CSV header lacks username or password, or the input is not UTF-8.
+     * @throws TooManyRequestsException If another import is running.
+     * @throws IOException If reading from the channel fails.
+     */
+    public TransferResult importAccounts(FileFormat format, ReadableByteChannel channel)
+            throws InvalidRequestException, TooManyRequestsException, IOException {
+        return load("accounts", format, channel, new String[]{"username", "password"},
+                (record, columns) -> {
+                    Account account;
+                    if (columns == null) {
+                        account = accountReader.readValue(record);
+                    } else {
+                        List<String> fields = CsvColumns.split(record);
+                        account = new Account(columns.integer(fields, "accountId"), columns.text(fields, "username"),
+                                columns.text(fields, "password"));
+                    }
+                    AccountService.validateCredentials(account);
+                    return account;
+                },
+                batch -> {
+                },
+                this::insertAccounts);
+    }
+
+    /**
+     * Imports messages. Rows carry postedBy, messageText and optionally timePostedEpoch; every message gets a new ID and
+     * messageKey, so messageId and messageKey columns, such as the ones in an export, are ignored. CSV files need a header naming the columns. Each
+     * batch is added to the per-account statistics as it commits.
+     *
+     * @param format The input format.
+     * @param channel The file or request body to read; it is not closed.
+     * @return The number of messages imported, the rows rejected and why.
+     * @throws InvalidRequestException If the CSV header lacks postedBy or messageText, or the input is not UTF-8.
+     * @throws TooManyRequestsException If another import is running.
+     * @throws IOException If reading from the channel fails.
+     */
+    public TransferResult importMessages(FileFormat format, ReadableByteChannel channel)
+            throws InvalidRequestException, TooManyRequestsException, IOException {
+        // Accounts are never deleted, so a poster once found stays valid for the whole import
+        Set<Integer> knownPosters = ConcurrentHashMap.newKeySet();
+        return load("messages", format, channel, new String[]{"postedBy", "messageText"},
+                (record, columns) -> {
+                    Message message;
+                    if (columns == null) {
+                        message = messageReader.readValue(record);
+                        message.setMessageId(null);
+                        message.setMessageKey(null);
+                    } else {
+                        List<String> fields = CsvColumns.split(record);
+                        message = new Message(columns.integer(fields, "postedBy"),
+                                columns.text(fields, "messageText"), columns.longValue(fields, "timePostedEpoch"));
+                    }
+                    if (message.getPostedBy() == null) {
+                        throw new InvalidRequestException("Message needs to be posted by a valid user.");
+                    }
+                    MessageService.validateMessageText(message.getMessageText());
+                    return message;
+                },
+                batch -> {
+                    // Validate that the users posting the messages exist, looking up each unknown poster once
+                    Set<Integer> unknown = new HashSet<>();
+                    for (Row<Message> row : batch.rows) {
+                        if (!knownPosters.contains(row.value.getPostedBy())) {
+                            unknown.add(row.value.getPostedBy());
+                        }
+                    }
+                    knownPosters.addAll(lookUp(unknown, accountRepository::findExistingIds));
+                    batch.rejectIf(row -> knownPosters.contains(row.value.getPostedBy())
+                            ? null : "Message needs to be posted by a valid user.");
+                },
+                batch -> messageRepository.insertAll(batch.values(), accountStatsService::recordCreated));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs on the calling thread, one batch at a time, so uniqueness is checked against every earlier batch.
+     */
+    private void insertAccounts(Batch<Account> batch) {
+        // Check if a username or ID is used twice within the batch
+        Set<String> usernames = new HashSet<>();
+        Set<Integer> accountIds = new HashSet<>();
+        batch.rejectIf(row -> {
+            if (!usernames.add(row.value.getUsername())) {
+                return "A user with this username already exists.";
+            }
+            Integer accountId = row.value.getAccountId();
+            return accountId == null || accountIds.add(accountId) ? null : "An account with this ID already exists.";
+        });
+
+        // Check if a username or ID is already taken
+        Set<String> takenUsernames = new HashSet<>(lookUp(usernames, accountRepository::findExistingUsernames));
+        Set<Integer> takenIds = new HashSet<>(lookUp(accountIds, accountRepository::findExistingIds));
+        batch.rejectIf(row -> {
+            if (takenUsernames.contains(row.value.getUsername())) {
+                return "A user with this username already exists.";
+            }
+            return takenIds.contains(row.value.getAccountId()) ? "An account with this ID already exists." : null;
+        });
+        if (batch.rows.isEmpty()) {
+            return;
+        }
+
+        int maxAccountId = 0;
+        for (Row<Account> row : batch.rows) {
+            if (row.value.getAccountId() != null) {
+                maxAccountId = Math.max(maxAccountId, row.value.getAccountId());
+            }
+        }
+        if (maxAccountId > 0) {
+            accountRepository.reserveIdsThrough(maxAccountId);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            accountRepository.insertAll(batch.values());
+            accountSearchService.recordRegistered(batch.values());
+        });
+    }
+
+    private <T> TransferResult load(String target, FileFormat format, ReadableByteChannel channel,
+                                    String[] requiredColumns, RowParser<T> parser, Consumer<Batch<T>> validator,
+                                    Consumer<Batch<T>> inserter) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new TooManyRequestsException("Another import is running.", 1);
+        }
+        long start = System.nanoTime();
+        RecordReader reader = new RecordReader(format, channel);
+        Progress progress = new Progress();
+        Deque<Future<Batch<T>>> inFlight = new ArrayDeque<>();
+        long rowNumber = 0;
+        try {
+            CsvColumns columns = null;
+            if (format == FileFormat.CSV) {
+                String header = reader.next();
+                columns = new CsvColumns(header == null ? "" : header);
+                columns.require(requiredColumns);
+            }
+
+            while (true) {
+                List<String> records = new ArrayList<>(batchSize);
+                String record;
+                while (records.size() < batchSize && (record = reader.next()) != null) {
+                    records.add(record);
+                }
+                if (records.isEmpty()) {
+                    break;
+                }
+                Batch<T> batch = new Batch<>(rowNumber + 1, records);
+                rowNumber += records.size();
+                CsvColumns batchColumns = columns;
+                inFlight.add(executor.submit(() -> {
+                    batch.parse(parser, batchColumns);
+                    validator.accept(batch);
+                    return batch;
+                }));
+                // Wait for the oldest batch once enough are being parsed, which bounds what is held in memory
+                if (inFlight.size() >= parallelism * 2) {
+                    progress.add(insertNext(inFlight, inserter));
+                    progress.report(target, reader.getBytesRead(), start);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                progress.add(insertNext(inFlight, inserter));
+                progress.report(target, reader.getBytesRead(), start);
+            }
+        } catch (CharacterCodingException e) {
+            throw new InvalidRequestException("The file is not valid UTF-8 after row " + rowNumber + ".");
+        } finally {
+            for (Future<Batch<T>> future : inFlight) {
+                future.cancel(true);
+            }
+            running.set(false);
+        }
+
+        TransferResult result = new TransferResult(progress.rows, reader.getBytesRead(),
+                (System.nanoTime() - start) / 1_000_000, progress.rejectedRows, progress.rejections);
+        log.info("Imported {} {}", target, result);
+        return result;
+    }
+
+    private static <T> Batch<T> insertNext(Deque<Future<Batch<T>>> inFlight, Consumer<Batch<T>> inserter)
+            throws IOException {
+        Batch<T> batch;
+        try {
+            batch = inFlight.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        if (!batch.rows.isEmpty()) {
+            inserter.accept(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * Runs an IN query in chunks, keeping the number of bind parameters per statement small.
+     */
+    private static <K, V> List<V> lookUp(Collection<K> keys, Function<Collection<K>, List<V>> query) {
+        List<V> found = new ArrayList<>();
+        List<K> chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+        for (K key : keys) {
+            chunk.add(key);
+            if (chunk.size() == LOOKUP_CHUNK_SIZE) {
+                found.addAll(query.apply(chunk));
+                chunk = new ArrayList<>(LOOKUP_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            found.addAll(query.apply(chunk));
+        }
+        return found;
+    }
+
+    /**
+     * Turns one record into an object, applying the checks that need nothing but the record itself.
+     */
+    @FunctionalInterface
+    private interface RowParser<T> {
+        /**
+         * @param columns The CSV header, or null for NDJSON.
+         * @throws InvalidRequestException If the row breaks a validation rule.
+         * @throws IOException If the row is not valid JSON.
+         */
+        T parse(String record, CsvColumns columns) throws InvalidRequestException, IOException;
+    }
+
+    private static final class Row<T> {
+        private final long number;
+        private final T value;
+
+        private Row(long number, T value) {
+            this.number = number;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Consecutive records of the file: raw until parsed, then the valid rows and the reasons the others were rejected.
+     */
+    private static final class Batch<T> {
+        private final long firstRow;
+        private List<String> records;
+        private final List<Row<T>> rows = new ArrayList<>();
+        private final List<String> rejections = new ArrayList<>();
+        private long rejectedRows;
+
+        private Batch(long firstRow, List<String> records) {
+            this.firstRow = firstRow;
+            this.records = records;
+        }
+
+        private void parse(RowParser<T> parser, CsvColumns columns) {
+            for (int i = 0; i < records.size(); i++) {
+                try {
+                    rows.add(new Row<>(firstRow + i, parser.parse(records.get(i), columns)));
+                } catch (InvalidRequestException e) {
+                    reject(firstRow + i, e.getMessage());
+                } catch (IOException e) {
+                    reject(firstRow + i, "Malformed JSON.");
+                }
+            }
+            records = null;
+        }
+
+        /**
+         * @param check Returns the reason to reject a row, or null to keep it.
+         */
+        private void rejectIf(Function<Row<T>, String> check) {
+            rows.removeIf(row -> {
+                String reason = check.apply(row);
+                if (reason != null) {
+                    reject(row.number, reason);
+                }
+                return reason != null;
+            });
+        }
+
+        private void reject(long rowNumber, String reason) {
+            rejectedRows++;
+            if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                rejections.add("Row " + rowNumber + ": " + reason);
+            }
+        }
+
+        private List<T> values() {
+            List<T> values = new ArrayList<>(rows.size());
+            for (Row<T> row : rows) {
+                values.add(row.value);
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Running totals of an import, logged every app.import.progress-interval-ms.
+     */
+    private final class Progress {
+        private long rows;
+        private long rejectedRows;
+        private final List<String> rejections = new ArrayList<>();
+        private long lastReport = System.nanoTime();
+
+        private void add(Batch<?> batch) {
+            rows += batch.rows.size();
+            rejectedRows += batch.rejectedRows;
+            for (String rejection : batch.rejections) {
+                if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                    rejections.add(rejection);
+                }
+            }
+        }
+
+        private void report(String target, long bytesRead, long start) {
+            long now = System.nanoTime();
+            if ((now - lastReport) / 1_000_000 < progressIntervalMillis) {
+                return;
+            }
+            lastReport = now;
+            long elapsedMillis = Math.max(1, (now - start) / 1_000_000);
+            log.info("Importing {}: {} rows imported, {} rejected, {} MB read ({} rows/s)", target, rows, rejectedRows,
+                    bytesRead / 1_000_000, rows * 1000 / elapsedMillis);
+        }
+    }
+
+    /**
+     * The header of a CSV file, mapping column names, in any case, to positions.
+     */
+    private static final class CsvColumns {
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        private CsvColumns(String header) {
+            List<String> names = split(header);
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i) != null) {
+                    positions.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+                }
+            }
+        }
+
+        private void require(String... names) throws InvalidRequestException {
+            for (String name : names) {
+                if (!positions.containsKey(name.toLowerCase(Locale.ROOT))) {
+                    throw new InvalidRequestException("The CSV header must name the columns "
+                            + String.join(", ", names) + ".");
+                }
+            }
+        }
+
+        private String text(List<String> fields, String name) {
+            Integer position = positions.get(name.toLowerCase(Locale.ROOT));
+            return position != null && position < fields.size() ? fields.get(position) : null;
+        }
+
+        private Integer integer(List<String> fields, String name) throws InvalidRequestException {
+            String value = text(fields, name);
+            try {
+                return value == null || value.isEmpty() ? null : Integer.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException(name + " must be a number.");
+            }
+        }
+
+        private Long longValue(List<String> fields, String name) throws InvalidRequestException {
+            String value = text(fields, name);
+            try {
+                return value == null || value.isEmpty() ? null : Long.valueOf(value.trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException(name + " must be a number.");
+            }
+        }
+
+        /**
+         * Splits an RFC 4180 record. An empty unquoted field is null, so that "" stays distinguishable from a missing
+         * value.
+         */
+        private static List<String> split(String record) {
+            List<String> fields = new ArrayList<>(4);
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean inQuotes = false;
+            for (int i = 0; i < record.length(); i++) {
+                char c = record.charAt(i);
+                if (inQuotes) {
+                    if (c != '"') {
+                        field.append(c);
+                    } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else if (c == '"') {
+                    inQuotes = true;
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                    field.setLength(0);
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            }
+            fields.add(quoted || field.length() > 0 ? field.toString() : null);
+            return fields;
+        }
+    }
+}
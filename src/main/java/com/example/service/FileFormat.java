@@ -0,0 +1,50 @@
+package com.example.service;
+
+import com.example.exception.InvalidRequestException;
+
+import java.util.Locale;
+
+/**
+ * The line-oriented file formats used to export and import messages and accounts.
+ */
+public enum FileFormat {
+
+    /**
+     * One JSON object per line.
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+
+    /**
+     * RFC 4180 comma-separated values with a header line.
+     */
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String extension;
+
+    FileFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * @param name The format name, in any case.
+     * @return The matching format.
+     * @throws InvalidRequestException If there is no format with that name.
+     */
+    public static FileFormat fromName(String name) throws InvalidRequestException {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException("Unsupported format: " + name + ". Use ndjson or csv.");
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.service;
+
+import com.example.exception.DuplicateResourceException;
+import com.example.exception.InvalidRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of requests sent with an Idempotency-Key header so that client retries replay the first result
+ * instead of running the operation again.
+ *
+ * Entries expire after a TTL and the table never holds more than a configured number of them; once it is full, new
+ * keys are executed without being remembered rather than evicting live entries. A full table is swept for expired
+ * entries at most once per sweep interval, so a burst of new keys does not rescan it on every request. A retry that
+ * arrives while the first execution is still running waits for that execution to commit. Failed executions are not
+ * remembered, so a retry after an error runs again.
+ *
+ * To tell a retry from a different request under the same key, only a salted SHA-256 digest of the request's relevant
+ * fields is kept, never the fields themselves, since they may include a password.
+ */
+@Component
+public class IdempotencyStore {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final byte[] salt = new byte[16];
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final long waitTimeoutMillis;
+    private final long sweepIntervalMillis;
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    public IdempotencyStore(@Value("${app.idempotency.ttl-ms:86400000}") long ttlMillis,
+                            @Value("${app.idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${app.idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis,
+                            @Value("${app.idempotency.sweep-interval-ms:60000}") long sweepIntervalMillis) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        this.sweepIntervalMillis = sweepIntervalMillis;
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Runs the action once per (scope, key) pair and returns the remembered result to every later call.
+     *
+     * @param scope The operation the key belongs to, so that the same key can be reused across endpoints.
+     * @param key The client-supplied idempotency key, or null to simply run the action.
+     * @param requestFields The fields of the request that make it what it is. A key replayed with different fields is
+     * rejected.
+     * @param action The operation to run.
+     * @return The result of the first successful execution.
+     * @throws InvalidRequestException If the key was already used with a different payload.
+     * @throws DuplicateResourceException If the first execution is still running after the wait timeout.
+     */
+    public <T> T execute(String scope, String key, List<?> requestFields, Supplier<T> action)
+            throws InvalidRequestException, DuplicateResourceException {
+        if (key == null || key.isEmpty()) {
+            return action.get();
+        }
+
+        String entryKey = scope + ':' + key;
+        // Digest the fields before the action runs, since persisting the request fills in generated fields
+        byte[] fingerprint = digest(requestFields);
+        Entry entry = new Entry(fingerprint, System.currentTimeMillis() + ttlMillis);
+
+        while (true) {
+            Entry existing = entries.putIfAbsent(entryKey, entry);
+            if (existing == null) {
+                break;
+            }
+            if (existing.isExpired(System.currentTimeMillis())) {
+                entries.remove(entryKey, existing);
+                continue;
+            }
+            if (!MessageDigest.isEqual(existing.fingerprint, fingerprint)) {
+                throw new InvalidRequestException("This Idempotency-Key was already used with a different request.");
+            }
+            return awaitResult(existing);
+        }
+
+        // Keep the table bounded: drop expired entries unless that was done recently, and if it is still full do not
+        // remember this key
+        if (entries.size() > maxEntries) {
+            long now = System.currentTimeMillis();
+            long sweepDue = nextSweep.get();
+            if (now >= sweepDue && nextSweep.compareAndSet(sweepDue, now + sweepIntervalMillis)) {
+                evictExpired();
+            }
+            if (entries.size() > maxEntries) {
+                entries.remove(entryKey, entry);
+            }
+        }
+
+        try {
+            T result = action.get();
+            publishWhenCommitted(entryKey, entry, result);
+            return result;
+        } catch (RuntimeException e) {
+            entries.remove(entryKey, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Hands the result to waiting duplicates. Inside a transaction this is deferred until the commit, so that no
+     * duplicate ever replays a row that was rolled back.
+     */
+    private void publishWhenCommitted(String entryKey, Entry entry, Object result) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            entry.result.complete(result);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    entry.result.complete(result);
+                } else {
+                    entries.remove(entryKey, entry);
+                    entry.result.completeExceptionally(
+                            new IllegalStateException("The original request with this Idempotency-Key was rolled back."));
+                }
+            }
+        });
+    }
+
+    /**
+     * Hashes the salt and each field's string form, prefixed with its length so that no two lists of fields run
+     * together into the same input.
+     */
+    private byte[] digest(List<?> fields) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        sha256.update(salt);
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        for (Object field : fields) {
+            byte[] bytes = field == null ? null : field.toString().getBytes(StandardCharsets.UTF_8);
+            length.clear();
+            sha256.update(length.putInt(bytes == null ? -1 : bytes.length).array());
+            if (bytes != null) {
+                sha256.update(bytes);
+            }
+        }
+        return sha256.digest();
+    }
+
+    /**
+     * Removes every expired entry.
+     */
+    @Scheduled(fixedDelayString = "${app.idempotency.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T awaitResult(Entry entry) {
+        try {
+            return (T) entry.result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new DuplicateResourceException("A request with this Idempotency-Key is still being processed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight request.", e);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] fingerprint;
+        private final long expiresAt;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Entry(byte[] fingerprint, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
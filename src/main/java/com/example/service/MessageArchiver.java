@@ -0,0 +1,121 @@
+package com.example.service;
+
+import com.example.entity.Message;
+import com.example.repository.MessageArchive;
+import com.example.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves messages older than app.archive.max-age-seconds from the message table into {@link MessageArchive}, keeping
+ * the table, its indexes and the buffer pool sized to the recent messages that are read most. Runs on a schedule when
+ * app.archive.enabled=true.
+ *
+ * Old messages are streamed through a database cursor, grouped by poster, into new segments, one or more per shard,
+ * which are made durable before the rows are deleted from the table. Account statistics do not change: they cover both tiers.
+ */
+@Service
+@Lazy(false)
+public class MessageArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchiver.class);
+
+    private final MessageRepository messageRepository;
+    private final MessageArchive messageArchive;
+    private final boolean enabled;
+    private final long maxAgeSeconds;
+    private final long segmentRows;
+
+    @Autowired
+    public MessageArchiver(MessageRepository messageRepository, MessageArchive messageArchive,
+                           @Value("${app.archive.enabled:false}") boolean enabled,
+                           @Value("${app.archive.max-age-seconds:31536000}") long maxAgeSeconds,
+                           @Value("${app.archive.segment-rows:1000000}") long segmentRows) {
+        this.messageRepository = messageRepository;
+        this.messageArchive = messageArchive;
+        this.enabled = enabled;
+        this.maxAgeSeconds = maxAgeSeconds;
+        this.segmentRows = segmentRows;
+    }
+
+    /**
+     * Archives the messages that have reached the maximum age. The first run waits a full interval rather than
+     * archiving at startup.
+     */
+    @Scheduled(fixedDelayString = "${app.archive.interval-ms:3600000}",
+            initialDelayString = "${app.archive.interval-ms:3600000}")
+    public void archiveExpired() throws IOException {
+        if (enabled) {
+            archiveOlderThan(System.currentTimeMillis() / 1000 - maxAgeSeconds);
+        }
+    }
+
+    /**
+     * Moves every message with a timePostedEpoch before the cutoff into new archive segments.
+     *
+     * @param before The cutoff in epoch seconds.
+     * @return The number of messages archived.
+     * @throws IOException If writing a segment fails; the table is left unchanged.
+     */
+    public synchronized long archiveOlderThan(long before) throws IOException {
+        long start = System.nanoTime();
+        List<MessageArchive.SegmentWriter> writers = new ArrayList<>();
+        try {
+            messageRepository.streamMessagesOlderThan(before, message -> {
+                try {
+                    segmentFor(writers, message).add(message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (MessageArchive.SegmentWriter writer : writers) {
+                writer.finish();
+            }
+        } catch (UncheckedIOException e) {
+            abortAll(writers);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            abortAll(writers);
+            throw e;
+        }
+
+        // The rows are deleted outside the streaming read transaction, once every segment is durable
+        messageArchive.completePending(messageRepository::deleteArchived);
+        long rows = writers.stream().mapToLong(MessageArchive.SegmentWriter::getRows).sum();
+        log.info("Archived {} messages posted before {} into {} segments in {} ms", rows, before, writers.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    /**
+     * Segments that were already finished stay pending, and their rows are removed from the table on the next run.
+     */
+    private static void abortAll(List<MessageArchive.SegmentWriter> writers) throws IOException {
+        for (MessageArchive.SegmentWriter writer : writers) {
+            writer.abort();
+        }
+    }
+
+    /**
+     * Rows arrive in segment order per shard, so a row out of order means the next shard has started.
+     */
+    private MessageArchive.SegmentWriter segmentFor(List<MessageArchive.SegmentWriter> writers, Message message)
+            throws IOException {
+        MessageArchive.SegmentWriter current = writers.isEmpty() ? null : writers.get(writers.size() - 1);
+        if (current == null || current.getRows() >= segmentRows || !current.follows(message)) {
+            current = messageArchive.createSegment();
+            writers.add(current);
+        }
+        return current;
+    }
+}
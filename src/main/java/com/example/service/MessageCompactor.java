@@ -0,0 +1,62 @@
+package com.example.service;
+
+import com.example.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Physically removes deleted messages. Deleting a message only flags its row as a tombstone, a single-row update that
+ * does not restructure the table's indexes under concurrent scans; this job deletes the flagged rows afterwards.
+ *
+ * Each run removes at most app.messages.compaction.batch-size rows per shard, and runs are
+ * app.messages.compaction.interval-ms apart, which caps the background delete rate however large a moderation sweep
+ * was. The tombstone column is indexed, so a run with nothing to remove is a single index probe.
+ */
+@Service
+@Lazy(false)
+public class MessageCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageCompactor.class);
+
+    private final MessageRepository messageRepository;
+    private final boolean enabled;
+    private final int batchSize;
+
+    @Autowired
+    public MessageCompactor(MessageRepository messageRepository,
+                            @Value("${app.messages.compaction.enabled:true}") boolean enabled,
+                            @Value("${app.messages.compaction.batch-size:1000}") int batchSize) {
+        this.messageRepository = messageRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Removes one batch of tombstoned messages. The first run waits a full interval rather than running at startup.
+     */
+    @Scheduled(fixedDelayString = "${app.messages.compaction.interval-ms:1000}",
+            initialDelayString = "${app.messages.compaction.interval-ms:1000}")
+    public void compactScheduled() {
+        if (enabled) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes up to one batch of tombstoned messages per shard.
+     *
+     * @return The number of messages removed.
+     */
+    public int compact() {
+        int purged = messageRepository.purgeDeleted(batchSize);
+        if (purged > 0) {
+            log.debug("Removed {} deleted messages", purged);
+        }
+        return purged;
+    }
+}
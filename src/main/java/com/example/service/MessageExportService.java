@@ -0,0 +1,64 @@
+package com.example.service;
+
+import com.example.dto.TransferResult;
+import com.example.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Exports messages as NDJSON or CSV without ever holding more than one row in memory: rows are streamed from the
+ * database cursor straight into a {@link MessageFileWriter} on the target channel.
+ */
+@Service
+public class MessageExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageExportService.class);
+
+    private final MessageRepository messageRepository;
+
+    @Autowired
+    public MessageExportService(MessageRepository messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    /**
+     * Writes every matching message to the channel. The channel is not closed.
+     *
+     * @param format The output format.
+     * @param postedBy Only export messages posted by this account, or null for all.
+     * @param from Only export messages with timePostedEpoch at or after this, or null.
+     * @param to Only export messages with timePostedEpoch before this, or null.
+     * @param channel Where to write, e.g. an HTTP response or a file.
+     * @return The number of rows and bytes written and the throughput.
+     * @throws IOException If writing to the channel fails.
+     */
+    public TransferResult export(FileFormat format, Integer postedBy, Long from, Long to, WritableByteChannel channel)
+            throws IOException {
+        long start = System.nanoTime();
+        MessageFileWriter writer = new MessageFileWriter(format, channel);
+        long rows;
+        try {
+            rows = messageRepository.streamMessages(postedBy, from, to, message -> {
+                try {
+                    writer.write(message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+
+        TransferResult result = new TransferResult(rows, writer.getBytesWritten(),
+                (System.nanoTime() - start) / 1_000_000);
+        log.info("Exported {} as {}", result, format);
+        return result;
+    }
+}
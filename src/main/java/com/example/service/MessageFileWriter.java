@@ -0,0 +1,152 @@
+package com.example.service;
+
+import com.example.entity.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes messages as NDJSON or CSV lines to a channel. Each line is formatted into one reused StringBuilder and encoded
+ * into a fixed direct buffer that is written out whenever it fills, so memory use is the same for ten rows or ten
+ * million.
+ */
+public class MessageFileWriter {
+
+    static final String CSV_HEADER = "messageId,postedBy,messageText,timePostedEpoch";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileFormat format;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder line = new StringBuilder(512);
+    private long bytesWritten;
+
+    public MessageFileWriter(FileFormat format, WritableByteChannel channel) throws IOException {
+        this.format = format;
+        this.channel = channel;
+        if (format == FileFormat.CSV) {
+            line.append(CSV_HEADER);
+            writeLine();
+        }
+    }
+
+    public void write(Message message) throws IOException {
+        if (format == FileFormat.NDJSON) {
+            line.append("{\"messageId\":").append(message.getMessageId())
+                    .append(",\"postedBy\":").append(message.getPostedBy())
+                    .append(",\"messageText\":");
+            appendJsonString(message.getMessageText());
+            line.append(",\"timePostedEpoch\":").append(message.getTimePostedEpoch()).append('}');
+        } else {
+            appendCsvValue(message.getMessageId());
+            line.append(',');
+            appendCsvValue(message.getPostedBy());
+            line.append(',');
+            appendCsvString(message.getMessageText());
+            line.append(',');
+            appendCsvValue(message.getTimePostedEpoch());
+        }
+        writeLine();
+    }
+
+    /**
+     * Writes out whatever is still buffered. Does not close the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void writeLine() throws IOException {
+        line.append('\n');
+        CharBuffer chars = CharBuffer.wrap(line);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flush();
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+        line.setLength(0);
+    }
+
+    private void appendJsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+    private void appendCsvValue(Object value) {
+        if (value != null) {
+            line.append(value);
+        }
+    }
+
+    private void appendCsvString(String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
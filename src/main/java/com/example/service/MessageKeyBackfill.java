@@ -0,0 +1,59 @@
+package com.example.service;
+
+import com.example.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+/**
+ * Migrates messages stored before messageKey existed. Once the column has been added, with
+ * {@code ALTER TABLE message ADD COLUMN messageKey BIGINT}, each startup gives the rows that still lack a key one
+ * derived from their timePostedEpoch and messageId (see {@link MessageRepository#backfillMessageKeys}), so every
+ * message can be addressed and paged by its key. Rows inserted by instances that predate the column are picked up the
+ * next time an instance starts. On a large table, add the unique index on messageKey after the first backfill: keeping
+ * it up to date makes the backfill several times slower.
+ */
+@Service
+@Lazy(false)
+public class MessageKeyBackfill implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageKeyBackfill.class);
+
+    private final MessageRepository messageRepository;
+    private final boolean enabled;
+    private final int batchSize;
+
+    @Autowired
+    public MessageKeyBackfill(MessageRepository messageRepository,
+                              @Value("${app.ids.backfill.enabled:true}") boolean enabled,
+                              @Value("${app.ids.backfill.batch-size:10000}") int batchSize) {
+        this.messageRepository = messageRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            backfill();
+        }
+    }
+
+    /**
+     * Gives every message without a messageKey its derived key.
+     *
+     * @return The number of messages updated.
+     */
+    public long backfill() {
+        long start = System.nanoTime();
+        long updated = messageRepository.backfillMessageKeys(batchSize);
+        if (updated > 0) {
+            log.info("Gave {} messages a messageKey in {} ms", updated, (System.nanoTime() - start) / 1_000_000);
+        }
+        return updated;
+    }
+}
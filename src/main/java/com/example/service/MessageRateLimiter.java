@@ -0,0 +1,206 @@
+package com.example.service;
+
+import com.example.exception.TooManyRequestsException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-account token buckets that limit how fast a single account can post messages.
+ *
+ * Buckets live in a striped, open-addressing table of primitive arrays: each account costs one int key and one long
+ * state (last refill time and remaining tokens packed together) instead of a map node, a boxed key and a bucket object.
+ * A bucket that has refilled to capacity behaves exactly like a missing one, so the periodic sweep drops those entries
+ * and memory stays proportional to the number of recently active posters.
+ */
+@Component
+public class MessageRateLimiter {
+
+    private static final int STRIPE_COUNT = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+    private static final long MILLI_TOKENS_PER_TOKEN = 1000;
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+
+    private final boolean enabled;
+    private final long capacityMilliTokens;
+    private final double refillMilliTokensPerMilli;
+    private final long retryAfterSeconds;
+    private final long originNanos = System.nanoTime();
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    public MessageRateLimiter(@Value("${app.rate-limit.messages.enabled:true}") boolean enabled,
+                              @Value("${app.rate-limit.messages.capacity:20}") int capacity,
+                              @Value("${app.rate-limit.messages.refill-per-second:5}") double refillPerSecond) {
+        if (capacity < 1 || capacity * MILLI_TOKENS_PER_TOKEN > TOKEN_MASK) {
+            throw new IllegalArgumentException("Rate limit capacity must be between 1 and "
+                    + TOKEN_MASK / MILLI_TOKENS_PER_TOKEN + ".");
+        }
+        if (refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate limit refill rate must be positive.");
+        }
+        this.enabled = enabled;
+        this.capacityMilliTokens = capacity * MILLI_TOKENS_PER_TOKEN;
+        // tokens per second and milli-tokens per millisecond are the same number
+        this.refillMilliTokensPerMilli = refillPerSecond;
+        this.retryAfterSeconds = Math.max(1, (long) Math.ceil(1 / refillPerSecond));
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Takes one token from the account's bucket.
+     *
+     * @param accountId The account that is posting.
+     * @throws TooManyRequestsException If the account's bucket is empty.
+     */
+    public void acquire(int accountId) throws TooManyRequestsException {
+        if (!enabled) {
+            return;
+        }
+        int hash = mix(accountId);
+        if (!stripes[hash & (STRIPE_COUNT - 1)].tryAcquire(accountId, hash, nowMillis())) {
+            throw new TooManyRequestsException("Too many messages posted by this account. Try again later.",
+                    retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Drops every bucket that has refilled to capacity since it was last used.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.messages.sweep-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = nowMillis();
+        for (Stripe stripe : stripes) {
+            stripe.evictFull(now);
+        }
+    }
+
+    /**
+     * @return The number of accounts that currently have a partially drained bucket.
+     */
+    public int trackedAccounts() {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.size();
+        }
+        return total;
+    }
+
+    /**
+     * Milliseconds since this limiter was created, offset by one so that a packed state is never 0 (the empty marker).
+     */
+    private long nowMillis() {
+        return (System.nanoTime() - originNanos) / 1_000_000 + 1;
+    }
+
+    /**
+     * Applies the refill for the time elapsed since the state was last written.
+     *
+     * @return The new packed state.
+     */
+    private long refill(long state, long now) {
+        long lastRefill = state >>> TOKEN_BITS;
+        long milliTokens = state & TOKEN_MASK;
+        long gained = (long) ((now - lastRefill) * refillMilliTokensPerMilli);
+        // Only move the refill time forward when something was gained, otherwise slow rates would never refill
+        if (gained > 0) {
+            milliTokens = Math.min(capacityMilliTokens, milliTokens + gained);
+            lastRefill = now;
+        }
+        return pack(lastRefill, milliTokens);
+    }
+
+    private static long pack(long refillMillis, long milliTokens) {
+        return refillMillis << TOKEN_BITS | milliTokens;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * One lock-protected slice of the bucket table, using linear probing over parallel primitive arrays.
+     */
+    private final class Stripe {
+        private int[] keys = new int[INITIAL_STRIPE_CAPACITY];
+        private long[] states = new long[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        synchronized boolean tryAcquire(int key, int hash, long now) {
+            int slot = findSlot(keys, states, key, hash);
+            long state;
+            if (states[slot] == 0) {
+                if ((size + 1) * 2 > keys.length) {
+                    resize(keys.length * 2);
+                    slot = findSlot(keys, states, key, hash);
+                }
+                keys[slot] = key;
+                size++;
+                state = pack(now, capacityMilliTokens);
+            } else {
+                state = refill(states[slot], now);
+            }
+            long milliTokens = state & TOKEN_MASK;
+            boolean allowed = milliTokens >= MILLI_TOKENS_PER_TOKEN;
+            if (allowed) {
+                state -= MILLI_TOKENS_PER_TOKEN;
+            }
+            states[slot] = state;
+            return allowed;
+        }
+
+        synchronized void evictFull(long now) {
+            int live = 0;
+            for (int i = 0; i < states.length; i++) {
+                if (states[i] != 0) {
+                    states[i] = refill(states[i], now);
+                    if ((states[i] & TOKEN_MASK) >= capacityMilliTokens) {
+                        states[i] = 0;
+                    } else {
+                        live++;
+                    }
+                }
+            }
+            int capacity = INITIAL_STRIPE_CAPACITY;
+            while (capacity < live * 2) {
+                capacity *= 2;
+            }
+            size = live;
+            resize(capacity);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void resize(int capacity) {
+            int[] newKeys = new int[capacity];
+            long[] newStates = new long[capacity];
+            for (int i = 0; i < states.length; i++) {
+                if (states[i] != 0) {
+                    int slot = findSlot(newKeys, newStates, keys[i], mix(keys[i]));
+                    newKeys[slot] = keys[i];
+                    newStates[slot] = states[i];
+                }
+            }
+            keys = newKeys;
+            states = newStates;
+        }
+
+        /**
+         * @return The slot holding the key, or the empty slot where it belongs.
+         */
+        private int findSlot(int[] keys, long[] states, int key, int hash) {
+            int mask = keys.length - 1;
+            // The low bits already picked the stripe, so probe with the high ones
+            int slot = (hash >>> 6) & mask;
+            while (states[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
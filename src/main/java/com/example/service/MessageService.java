@@ -1,24 +1,161 @@
 package com.example.service;
 
+import com.example.dto.MessageBatch;
+import com.example.dto.MessagePage;
 import com.example.entity.Message;
+import com.example.exception.ConcurrentEditException;
 import com.example.exception.InvalidRequestException;
+import com.example.exception.PreconditionFailedException;
 import com.example.exception.ResourceNotFoundException;
+import com.example.exception.TooManyRequestsException;
+import com.example.exception.UnauthorizedException;
+import com.example.repository.MessageArchive;
 import com.example.repository.MessageRepository;
+import com.example.util.Bulkheaded;
+import com.example.util.KWayMerge;
+import com.example.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 public class MessageService {
 
+    private static final Comparator<Message> NEWEST_FIRST = Comparator.comparing(Message::getTimePostedEpoch)
+            .thenComparing(Message::getMessageId).reversed();
+
     private final MessageRepository messageRepository;
     private final AccountService accountService;
+    private final MessageRateLimiter rateLimiter;
+    private final IdempotencyStore idempotencyStore;
+    private final AccountStatsService accountStatsService;
+    private final ReactionService reactionService;
+    private final MessageArchive messageArchive;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final SessionTokens sessionTokens;
+    private final boolean singleFlightEnabled;
+    private final SingleFlight<Integer, Optional<Message>> messageLoads;
+    private final SingleFlight<Integer, List<Message>> accountMessageLoads;
+    private final int multiGetMaxIds;
+    private final int timelineMaxAccounts;
+    private final int timelineMaxLimit;
+    private final int editMaxAttempts;
+    private final long editBackoffMillis;
+    private final Counter editConflicts;
+    private final Counter editRetries;
 
     @Autowired
-    public MessageService(MessageRepository messageRepository, AccountService accountService) {
+    public MessageService(MessageRepository messageRepository, AccountService accountService,
+                          MessageRateLimiter rateLimiter, IdempotencyStore idempotencyStore,
+                          AccountStatsService accountStatsService, ReactionService reactionService,
+                          MessageArchive messageArchive, NearDuplicateDetector nearDuplicateDetector,
+                          SessionTokens sessionTokens,
+                          @Value("${app.single-flight.enabled:true}") boolean singleFlightEnabled,
+                          @Value("${app.single-flight.wait-timeout-ms:5000}") long singleFlightWaitTimeoutMillis,
+                          @Value("${app.messages.multi-get.max-ids:1000}") int multiGetMaxIds,
+                          @Value("${app.messages.timeline.max-accounts:100}") int timelineMaxAccounts,
+                          @Value("${app.messages.timeline.max-limit:100}") int timelineMaxLimit,
+                          @Value("${app.messages.edit.max-attempts:3}") int editMaxAttempts,
+                          @Value("${app.messages.edit.backoff-ms:5}") long editBackoffMillis,
+                          MeterRegistry meterRegistry) {
         this.messageRepository = messageRepository;
         this.accountService = accountService;
+        this.rateLimiter = rateLimiter;
+        this.idempotencyStore = idempotencyStore;
+        this.accountStatsService = accountStatsService;
+        this.reactionService = reactionService;
+        this.messageArchive = messageArchive;
+        this.nearDuplicateDetector = nearDuplicateDetector;
+        this.sessionTokens = sessionTokens;
+        this.singleFlightEnabled = singleFlightEnabled;
+        this.messageLoads = new SingleFlight<>(singleFlightWaitTimeoutMillis);
+        this.accountMessageLoads = new SingleFlight<>(singleFlightWaitTimeoutMillis);
+        this.multiGetMaxIds = multiGetMaxIds;
+        this.timelineMaxAccounts = timelineMaxAccounts;
+        this.timelineMaxLimit = timelineMaxLimit;
+        this.editMaxAttempts = editMaxAttempts;
+        this.editBackoffMillis = editBackoffMillis;
+        this.editConflicts = Counter.builder("messages.edit.conflicts")
+                .description("Message edits that lost a compare-and-set on the version")
+                .register(meterRegistry);
+        this.editRetries = Counter.builder("messages.edit.retries")
+                .description("Message edits retried after a conflict")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a new message at most once per idempotency key. Retries with the same key get the message created by the
+     * first attempt instead of a duplicate row.
+     *
+     * @param message The message object containing the text and the user who posted it.
+     * @param idempotencyKey The client-supplied Idempotency-Key, or null to always create the message.
+     * @return The created message, or the one created by an earlier request with the same key.
+     * @throws InvalidRequestException If the message is invalid, the posting user does not exist, or the key was
+     * already used for a different message.
+     * @throws TooManyRequestsException If the posting user has exceeded their posting rate.
+     */
+    @Bulkheaded(Bulkheaded.WRITES)
+    @Transactional
+    public Message createMessage(Message message, String idempotencyKey)
+            throws InvalidRequestException, TooManyRequestsException {
+        return idempotencyStore.execute("messages", idempotencyKey, idempotencyFields(message),
+                () -> createMessage(message));
+    }
+
+    /**
+     * Creates a new message on behalf of the account named by a session token from /login, at most once per
+     * idempotency key. The token takes the place of the account lookup that {@link #createMessage(Message)} performs.
+     *
+     * @param message The message object containing the text and, optionally, the user who posted it.
+     * @param idempotencyKey The client-supplied Idempotency-Key, or null to always create the message.
+     * @param sessionToken The token issued by {@link SessionTokens#issue(int)}, or null to check postedBy instead.
+     * @return The created message, or the one created by an earlier request with the same key.
+     * @throws UnauthorizedException If the token is invalid or has expired.
+     * @throws InvalidRequestException If the message is invalid, names a different poster than the token, or the key
+     * was already used for a different message.
+     * @throws TooManyRequestsException If the posting user has exceeded their posting rate.
+     */
+    @Bulkheaded(Bulkheaded.WRITES)
+    @Transactional
+    public Message createMessage(Message message, String idempotencyKey, String sessionToken)
+            throws UnauthorizedException, InvalidRequestException, TooManyRequestsException {
+        if (sessionToken == null) {
+            return createMessage(message, idempotencyKey);
+        }
+
+        // Check if the token is genuine and, if the body names a poster too, that it is the same account
+        int accountId = sessionTokens.verify(sessionToken);
+        if (message.getPostedBy() != null && message.getPostedBy() != accountId) {
+            throw new InvalidRequestException("Message has to be posted by the logged-in user.");
+        }
+        message.setPostedBy(accountId);
+        return idempotencyStore.execute("messages", idempotencyKey, idempotencyFields(message),
+                () -> createMessage(message, true));
+    }
+
+    /**
+     * The fields that make two create requests the same message for {@link IdempotencyStore}.
+     */
+    private static List<Object> idempotencyFields(Message message) {
+        return Arrays.asList(message.getPostedBy(), message.getMessageText(), message.getTimePostedEpoch());
     }
 
     /**
@@ -26,106 +163,416 @@ public class MessageService {
      *
      * @param message The message object containing the text and the user who posted it.
      * @return The created message after being saved to the database.
-     * @throws InvalidRequestException If the message is invalid or the posting user does not exist.
+     * @throws InvalidRequestException If the message is invalid, the posting user does not exist, or the message nearly
+     * duplicates too many recent messages under the REJECT policy of {@link NearDuplicateDetector}.
+     * @throws TooManyRequestsException If the posting user has exceeded their posting rate.
      */
-    public Message createMessage(Message message) throws InvalidRequestException {
+    @Bulkheaded(Bulkheaded.WRITES)
+    @Transactional
+    public Message createMessage(Message message) throws InvalidRequestException, TooManyRequestsException {
+        return createMessage(message, false);
+    }
 
-        // Validate that the user posting the message exists
-        try {
-            accountService.getUserById(message.getPostedBy());
-        } catch (ResourceNotFoundException e) {
-            throw new InvalidRequestException("Message needs to be posted by a valid user.");
+    /**
+     * @param message The message object containing the text and the user who posted it.
+     * @param posterVerified Whether postedBy comes from a session token, so the account is known to exist.
+     * @return The created message after being saved to the database.
+     */
+    private Message createMessage(Message message, boolean posterVerified)
+            throws InvalidRequestException, TooManyRequestsException {
+
+        // Throttle the poster before doing any database work
+        if (message.getPostedBy() != null) {
+            rateLimiter.acquire(message.getPostedBy());
         }
 
+        // Validate that the user posting the message exists, unless a session token already vouched for it
+        if (!posterVerified) {
+            try {
+                accountService.getUserById(message.getPostedBy());
+            } catch (ResourceNotFoundException e) {
+                throw new InvalidRequestException("Message needs to be posted by a valid user.");
+            }
+        }
+
+        validateMessageText(message.getMessageText());
+
+        // The messageKey is generated when the message is saved; a key sent by the client is never kept
+        message.setMessageKey(null);
+
+        // Check if the text nearly repeats many recent messages, which flags or rejects it depending on the policy
+        nearDuplicateDetector.check(message);
+
+        // Save the valid message and count it in the poster's statistics
+        Message savedMessage = messageRepository.save(message);
+        accountStatsService.recordCreated(savedMessage);
+        return savedMessage;
+    }
+
+    /**
+     * The text rules of {@link #createMessage(Message)} and {@link #patchMessage(Integer, Message)}, shared with the
+     * bulk import.
+     *
+     * @param messageText The text of the message.
+     * @throws InvalidRequestException If the text is blank or over 255 characters.
+     */
+    static void validateMessageText(String messageText) throws InvalidRequestException {
+
         // Check if the message is empty
-        if (message.getMessageText().isEmpty()) {
+        if (messageText == null || messageText.isEmpty()) {
             throw new InvalidRequestException("Message cannot be blank.");
         }
 
         // Check if the message exceeds the 255-character limit
-        if (message.getMessageText().length() > 255) {
+        if (messageText.length() > 255) {
             throw new InvalidRequestException("Message cannot be over 255 characters.");
         }
-
-        // Save and return the valid message
-        return messageRepository.save(message);
     }
 
     /**
-     * Retrieves a message by its ID.
+     * Retrieves a message by its ID, from the message table or, for old messages, from the archive. Concurrent
+     * requests for the same ID share one load.
+     *
+     * Not transactional on purpose: the repository reads run in their own read-only transactions, so callers waiting
+     * on another caller's load do not hold a connection.
      *
      * @param messageId The ID of the message to retrieve.
      * @return The message if found.
      * @throws ResourceNotFoundException If no message with the specified ID exists.
+     * @throws TooManyRequestsException If a load of the same message by another request takes longer than the wait
+     * timeout.
      */
-    public Message getMessageById(int messageId) throws ResourceNotFoundException {
-        return messageRepository.findById(messageId)
+    @Bulkheaded(Bulkheaded.READS)
+    public Message getMessageById(int messageId) throws ResourceNotFoundException, TooManyRequestsException {
+        return coalesce(messageLoads, messageId, () -> messageRepository.findById(messageId)
+                .or(() -> messageArchive.findById(messageId)))
                 .orElseThrow(() -> new ResourceNotFoundException("Message with this ID does not exist."));
     }
 
     /**
-     * Retrieves all messages stored in the database.
+     * Retrieves several messages by ID with one round trip per shard and chunk of IDs instead of one per message.
+     * Messages in the second-level cache or the archive are taken from there.
+     *
+     * @param messageIds The IDs to look up. Duplicates are answered once.
+     * @return The messages that exist, in the order of their first occurrence in the request, and the IDs that do not.
+     * @throws InvalidRequestException If more IDs are requested than app.messages.multi-get.max-ids allows.
+     */
+    @Bulkheaded(Bulkheaded.READS)
+    public MessageBatch getMessagesByIds(List<Integer> messageIds) throws InvalidRequestException {
+
+        // Check if the ID list is present and small enough to answer in one go
+        if (messageIds == null || messageIds.contains(null)) {
+            throw new InvalidRequestException("Message IDs cannot be blank.");
+        }
+        Set<Integer> requested = new LinkedHashSet<>(messageIds);
+        if (requested.size() > multiGetMaxIds) {
+            throw new InvalidRequestException("Cannot look up more than " + multiGetMaxIds + " messages at once.");
+        }
+
+        Map<Integer, Message> found = new HashMap<>();
+        for (Message message : messageRepository.findAllById(requested)) {
+            found.put(message.getMessageId(), message);
+        }
+        List<Message> messages = new ArrayList<>(requested.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer messageId : requested) {
+            // IDs missing from the message table may have been archived
+            Message message = found.containsKey(messageId)
+                    ? found.get(messageId)
+                    : messageArchive.findById(messageId).orElse(null);
+            if (message != null) {
+                messages.add(message);
+            } else {
+                missingIds.add(messageId);
+            }
+        }
+        return new MessageBatch(messages, missingIds);
+    }
+
+    /**
+     * Retrieves one page of the combined timeline of several accounts, newest first by timePostedEpoch and then
+     * messageId. Only about as many rows are read as the page holds, whatever the size of the accounts' histories.
+     * An account's archived messages are merged in once the page reaches back to the newest of them, which the archive
+     * index tells without reading any messages; from then on each page reads that account's archived blocks. Messages
+     * without a timePostedEpoch are not included.
+     *
+     * @param postedBy The accounts whose messages to merge. Duplicates are read once.
+     * @param limit The most messages to return.
+     * @param cursor The nextCursor of the previous page, or null for the newest messages.
+     * @return The page and, if more messages follow, the cursor of the next page.
+     * @throws InvalidRequestException If the accounts are missing or too many, the limit is out of range, or the cursor
+     * is not one this method returned.
+     */
+    @Bulkheaded(Bulkheaded.READS)
+    public MessagePage getTimeline(List<Integer> postedBy, int limit, String cursor) throws InvalidRequestException {
+
+        // Check if the account list is present and small enough to merge in one go
+        if (postedBy == null || postedBy.isEmpty() || postedBy.contains(null)) {
+            throw new InvalidRequestException("Account IDs cannot be blank.");
+        }
+        Set<Integer> accounts = new LinkedHashSet<>(postedBy);
+        if (accounts.size() > timelineMaxAccounts) {
+            throw new InvalidRequestException("Cannot merge more than " + timelineMaxAccounts + " accounts at once.");
+        }
+
+        // Check if the limit is within range
+        if (limit < 1 || limit > timelineMaxLimit) {
+            throw new InvalidRequestException("Limit has to be between 1 and " + timelineMaxLimit + ".");
+        }
+
+        // The cursor is the timePostedEpoch and messageId of the last message of the previous page
+        Long beforeTime = null;
+        Integer beforeId = null;
+        if (cursor != null) {
+            int dot = cursor.lastIndexOf('.');
+            try {
+                beforeTime = Long.valueOf(cursor.substring(0, Math.max(dot, 0)));
+                beforeId = Integer.valueOf(cursor.substring(dot + 1));
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException("Cursor is invalid.");
+            }
+        }
+
+        // One message past the page tells whether there is a next page
+        List<Message> messages = mergeArchivedTimeline(accounts, beforeTime, beforeId, limit + 1,
+                messageRepository.findTimeline(accounts, beforeTime, beforeId, limit + 1));
+        if (messages.size() <= limit) {
+            return new MessagePage(messages, null);
+        }
+        Message last = messages.get(limit - 1);
+        return new MessagePage(new ArrayList<>(messages.subList(0, limit)),
+                last.getTimePostedEpoch() + "." + last.getMessageId());
+    }
+
+    /**
+     * Merges the archived messages that belong on a timeline page into the page read from the message table.
+     *
+     * @param live Up to limit messages from the message table, newest first.
+     * @return Up to limit messages from both tiers, newest first.
+     */
+    private List<Message> mergeArchivedTimeline(Set<Integer> accounts, Long beforeTime, Integer beforeId, int limit,
+                                                List<Message> live) {
+        // An account's archive only matters if its newest archived message could still make the page
+        Long oldestLive = live.size() < limit ? null : live.get(live.size() - 1).getTimePostedEpoch();
+        List<List<Message>> sources = new ArrayList<>();
+        sources.add(live);
+        for (Integer accountId : accounts) {
+            Long newestArchived = messageArchive.aggregateStatsForPostedBy(accountId).getLastPostedEpoch();
+            if (newestArchived == null || (oldestLive != null && newestArchived < oldestLive)) {
+                continue;
+            }
+            List<Message> archived = new ArrayList<>();
+            for (Message message : messageArchive.findByPostedBy(accountId)) {
+                Long time = message.getTimePostedEpoch();
+                if (time != null && (beforeTime == null || time < beforeTime
+                        || (time.equals(beforeTime) && message.getMessageId() < beforeId))) {
+                    archived.add(message);
+                }
+            }
+            archived.sort(NEWEST_FIRST);
+            sources.add(archived);
+        }
+        if (sources.size() == 1) {
+            return live;
+        }
+
+        // A message being archived right now can briefly be in both
+        Set<Integer> seen = new HashSet<>();
+        List<Message> merged = new ArrayList<>(limit);
+        for (Message message : KWayMerge.merge(sources, NEWEST_FIRST)) {
+            if (seen.add(message.getMessageId())) {
+                merged.add(message);
+                if (merged.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Retrieves all messages stored in the database. Archived messages are not included.
      *
      * @return A list of all available messages.
      */
+    @Bulkheaded(Bulkheaded.READS)
+    @Transactional(readOnly = true)
     public List<Message> getMessages() {
-        return messageRepository.findAll();
+        return messageRepository.findAllProjected();
     }
 
     /**
-     * Deletes a message by its ID if it exists.
+     * Deletes a message by its ID if it exists. The message disappears from every read at once; its row is removed
+     * later by {@link MessageCompactor}. An archived message is deleted by tombstoning it in the archive.
+     *
+     * Like {@link #patchMessage(Integer, Message, Long)}, the delete is a compare-and-set on the version and not
+     * transactional on purpose: a delete that loses to a concurrent edit is retried on the fresh row, and of concurrent
+     * deletes only the one that flagged the row reports and counts it.
      *
      * @param messageId The ID of the message to delete.
-     * @return 1 if the message was successfully deleted, 0 otherwise.
+     * @return 1 if this request deleted the message, 0 otherwise.
+     * @throws ConcurrentEditException If concurrent edits won every attempt.
      */
-    public Integer deleteMessage(Integer messageId) {
+    @Bulkheaded(Bulkheaded.WRITES)
+    public Integer deleteMessage(Integer messageId) throws ConcurrentEditException {
+
+        for (int attempt = 1; ; attempt++) {
+            // Check if the message exists before deleting
+            Optional<Message> message = messageRepository.findById(messageId);
+            if (message.isEmpty()) {
+                break;
+            }
+            try {
+                messageRepository.deleteById(messageId);
+            } catch (EmptyResultDataAccessException e) {
+                return 0;
+            } catch (OptimisticLockingFailureException e) {
+                // Check if the retries are used up; otherwise re-read, which finds nothing if the winner deleted it
+                if (attempt >= editMaxAttempts) {
+                    throw new ConcurrentEditException("The message is being edited concurrently, please try again.");
+                }
+                backOff(attempt);
+                continue;
+            }
+            accountStatsService.recordDeleted(message.get());
+            reactionService.forgetMessage(messageId);
+            return 1;
+        }
 
-        // Check if the message exists before deleting
-        if (messageRepository.findById(messageId).isPresent()) {
-            messageRepository.deleteById(messageId);
+        // Check if the message was archived, and if so whether this request is the one that deleted it
+        Optional<Message> archived = messageArchive.findById(messageId);
+        if (archived.isPresent() && messageArchive.markDeleted(archived.get())) {
+            accountStatsService.recordDeleted(archived.get());
+            reactionService.forgetMessage(messageId);
             return 1;
         }
         return 0;
     }
 
     /**
-     * Updates an existing message with new content.
+     * Updates an existing message with new content, whatever its current version.
      *
      * @param messageId The ID of the message to update.
      * @param message The message containing updated content.
+     * @return The updated message with its new version.
      * @throws InvalidRequestException If the message is invalid or if the message ID does not exist.
+     * @throws ConcurrentEditException If concurrent edits won every attempt.
+     */
+    @Bulkheaded(Bulkheaded.WRITES)
+    public Message patchMessage(Integer messageId, Message message)
+            throws InvalidRequestException, ConcurrentEditException {
+        return patchMessage(messageId, message, null);
+    }
+
+    /**
+     * Updates an existing message with new content, without locking it: the update is a compare-and-set on the
+     * message's version. Without an expected version, an update that loses to a concurrent edit is retried on the
+     * fresh row, up to app.messages.edit.max-attempts times in all with a short randomized backoff. With one, as sent
+     * in an If-Match header, a version mismatch fails at once, since the client edited a message that has changed.
+     *
+     * @param messageId The ID of the message to update.
+     * @param message The message containing updated content.
+     * @param expectedVersion The version the client last read, or null to update whatever version is current.
+     * @return The updated message with its new version.
+     * @throws InvalidRequestException If the message is invalid, if the message ID does not exist, or if the message is
+     * archived.
+     * @throws PreconditionFailedException If the message no longer has the expected version.
+     * @throws ConcurrentEditException If concurrent edits won every attempt.
      */
-    public void patchMessage(Integer messageId, Message message) throws InvalidRequestException {
+    @Bulkheaded(Bulkheaded.WRITES)
+    public Message patchMessage(Integer messageId, Message message, Long expectedVersion)
+            throws InvalidRequestException, PreconditionFailedException, ConcurrentEditException {
 
-        // Validate that the message to update exists
-        Message messageToUpdate = messageRepository.findById(messageId)
-                .orElseThrow(() -> new InvalidRequestException("Cannot update a message with this ID because it does not exist."));
+        validateMessageText(message.getMessageText());
 
-        // Check if the new message text is empty
-        if (message.getMessageText().isEmpty()) {
-            throw new InvalidRequestException("Message cannot be blank.");
-        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // Validate that the message to update exists while updating it
+                Optional<Message> updated = messageRepository.updateMessageText(messageId, message.getMessageText(),
+                        expectedVersion);
+                if (updated.isPresent()) {
+                    return updated.get();
+                }
 
-        // Check if the new message text exceeds the 255-character limit
-        if (message.getMessageText().length() > 255) {
-            throw new InvalidRequestException("Message cannot be over 255 characters.");
+                // Check if the message was archived, since archived messages are read-only
+                if (messageArchive.findById(messageId).isPresent()) {
+                    throw new InvalidRequestException("Cannot update an archived message.");
+                }
+                throw new InvalidRequestException("Cannot update a message with this ID because it does not exist.");
+            } catch (OptimisticLockingFailureException e) {
+                editConflicts.increment();
+
+                // Check if the client's copy is stale, which retrying cannot fix
+                if (expectedVersion != null) {
+                    throw new PreconditionFailedException("The message has changed since version " + expectedVersion + ".");
+                }
+
+                // Check if the retries are used up
+                if (attempt >= editMaxAttempts) {
+                    throw new ConcurrentEditException("The message is being edited concurrently, please try again.");
+                }
+                editRetries.increment();
+                backOff(attempt);
+            }
         }
+    }
 
-        // Update the message content and save the changes
-        messageToUpdate.setMessageText(message.getMessageText());
-        messageRepository.save(messageToUpdate);
+    /**
+     * Sleeps a random time of up to app.messages.edit.backoff-ms per attempt so far, which spreads out the retries of
+     * edits that collided.
+     */
+    private void backOff(int attempt) {
+        if (editBackoffMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(editBackoffMillis * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentEditException("Interrupted while retrying a concurrent edit.");
+        }
     }
 
     /**
-     * Retrieves all messages posted by a specific account.
+     * Retrieves all messages posted by a specific account, including archived ones. Concurrent requests for the same
+     * account share one load, as in {@link #getMessageById(int)}.
      *
      * @param accountId The ID of the account whose messages should be retrieved.
-     * @return A list of messages posted by the specified account.
+     * @return A list of messages posted by the specified account, archived ones first.
+     * @throws TooManyRequestsException If a load of the same account's messages by another request takes longer than
+     * the wait timeout.
      */
-    public List<Message> getMessagesByAccountId(Integer accountId) {
+    @Bulkheaded(Bulkheaded.READS)
+    public List<Message> getMessagesByAccountId(Integer accountId) throws TooManyRequestsException {
+        return coalesce(accountMessageLoads, accountId, () -> loadMessagesByAccountId(accountId));
+    }
+
+    private List<Message> loadMessagesByAccountId(Integer accountId) {
+        List<Message> recent = messageRepository.findProjectedByPostedBy(accountId);
+        List<Message> archived = messageArchive.findByPostedBy(accountId);
+
+        // Check if the account has archived messages before merging the two tiers
+        if (archived.isEmpty()) {
+            return recent;
+        }
 
-        // Return the list of messages posted by the given account ID
-        return (List<Message>) messageRepository.findByAccount_PostedBy(accountId);
+        // A message being archived right now can briefly be in both
+        Set<Integer> archivedIds = new HashSet<>();
+        archived.forEach(message -> archivedIds.add(message.getMessageId()));
+        List<Message> messages = new ArrayList<>(archived.size() + recent.size());
+        messages.addAll(archived);
+        for (Message message : recent) {
+            if (!archivedIds.contains(message.getMessageId())) {
+                messages.add(message);
+            }
+        }
+        return messages;
     }
-}
 
+    /**
+     * Runs the load through the single-flight group unless coalescing is switched off.
+     */
+    private <K, V> V coalesce(SingleFlight<K, V> group, K key, Supplier<V> loader) {
+        return singleFlightEnabled ? group.execute(key, loader) : loader.get();
+    }
+}
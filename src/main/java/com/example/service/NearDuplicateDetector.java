@@ -0,0 +1,93 @@
+package com.example.service;
+
+import com.example.entity.Message;
+import com.example.exception.InvalidRequestException;
+import com.example.util.SimHash;
+import com.example.util.SimHashIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Catches messages that nearly repeat many other recent messages, as bots posting the same text with small changes do,
+ * before they are written. Every new message's {@link SimHash} fingerprint is looked up in, and then added to, an
+ * in-memory {@link SimHashIndex} of the latest fingerprints from all accounts. When at least threshold of them within
+ * the window are within max-distance bits, the policy decides: FLAG saves the message with its flagged column set for
+ * moderators, REJECT refuses it, and OFF skips the check.
+ *
+ * Short texts are not checked, since they are too easily alike by chance. The index lives in this process only and
+ * starts empty on every restart.
+ */
+@Component
+public class NearDuplicateDetector {
+
+    /**
+     * What to do with a message that nearly duplicates too many recent ones.
+     */
+    public enum Policy {
+        OFF, FLAG, REJECT
+    }
+
+    private final Policy policy;
+    private final int threshold;
+    private final int minLength;
+    private final SimHashIndex index;
+    private final Counter flagged;
+    private final Counter rejected;
+
+    public NearDuplicateDetector(@Value("${app.messages.near-duplicates.policy:FLAG}") Policy policy,
+                                 @Value("${app.messages.near-duplicates.threshold:3}") int threshold,
+                                 @Value("${app.messages.near-duplicates.max-distance:6}") int maxDistance,
+                                 @Value("${app.messages.near-duplicates.window-seconds:600}") long windowSeconds,
+                                 @Value("${app.messages.near-duplicates.capacity:100000}") int capacity,
+                                 @Value("${app.messages.near-duplicates.min-length:20}") int minLength,
+                                 MeterRegistry meterRegistry) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Near-duplicate threshold must be at least 1.");
+        }
+        this.index = new SimHashIndex(capacity, windowSeconds * 1000, maxDistance);
+        // Check if the index can count that many copies of one text; a ring holds only its depth of them
+        if (threshold > index.getMinDepth()) {
+            throw new IllegalArgumentException("Near-duplicate threshold must be at most " + index.getMinDepth()
+                    + " at this capacity and max-distance.");
+        }
+        this.policy = policy;
+        this.threshold = threshold;
+        this.minLength = minLength;
+        this.flagged = Counter.builder("messages.near-duplicates")
+                .description("New messages that nearly duplicated too many recent ones")
+                .tag("action", "flagged")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("messages.near-duplicates")
+                .description("New messages that nearly duplicated too many recent ones")
+                .tag("action", "rejected")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the message's text and applies the policy if it nearly duplicates too many recent messages.
+     *
+     * @param message The message about to be saved; it is flagged in place under the FLAG policy.
+     * @throws InvalidRequestException If the message is a near-duplicate and the policy is REJECT.
+     */
+    public void check(Message message) throws InvalidRequestException {
+
+        // Check if the message is worth fingerprinting at all
+        String text = message.getMessageText();
+        if (policy == Policy.OFF || text == null || text.length() < minLength) {
+            return;
+        }
+
+        int nearDuplicates = index.addAndCount(SimHash.fingerprint(text), System.currentTimeMillis(), threshold);
+        if (nearDuplicates < threshold) {
+            return;
+        }
+        if (policy == Policy.REJECT) {
+            rejected.increment();
+            throw new InvalidRequestException("Message is too similar to other recent messages.");
+        }
+        flagged.increment();
+        message.setFlagged(true);
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.service;
+
+import com.example.dto.MessageLikes;
+import com.example.exception.InvalidRequestException;
+import com.example.exception.ResourceNotFoundException;
+import com.example.repository.MessageLikeRepository;
+import com.example.repository.MessageRepository;
+import com.example.util.LongHashSet;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Likes on messages, built so that a popular message never becomes a single-row lock hotspot.
+ *
+ * A like only touches memory on the request path: the account/message pair goes into a striped set that rejects
+ * duplicate likes, and the message's pending count is a {@link LongAdder}, whose cells spread concurrent increments
+ * instead of contending on one value. A scheduled flush writes the new and withdrawn pairs to the database in one
+ * batched transaction, so the stored counts trail the in-memory ones by at most one flush interval. Counts returned by
+ * this instance include its unflushed likes.
+ *
+ * Pairs are written idempotently and the stored counts only change by the rows the flush actually inserted or
+ * deleted, so instances that share the database and record the same like neither fail nor count it twice.
+ *
+ * Likes accepted since the last flush are lost if the process dies. The set of likes is reloaded from the database at
+ * startup.
+ */
+@Service
+@Lazy(false)
+public class ReactionService implements SmartInitializingSingleton, DisposableBean {
+
+    private static final int STRIPE_COUNT = 64;
+
+    private final MessageRepository messageRepository;
+    private final AccountService accountService;
+    private final MessageLikeRepository likeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<Integer, LongAdder> pendingCounts = new ConcurrentHashMap<>();
+    /**
+     * Stored counts read since the last flush. Cleared by every flush, so counts flushed by other instances show up
+     * within one interval.
+     */
+    private final ConcurrentHashMap<Integer, Long> storedCounts = new ConcurrentHashMap<>();
+    /**
+     * Messages deleted since the last flush. Their in-memory likes are dropped by the next flush's pass over each
+     * stripe rather than by one pass per deleted message.
+     */
+    private final Set<Integer> forgottenMessages = ConcurrentHashMap.newKeySet();
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    @Autowired
+    public ReactionService(MessageRepository messageRepository, AccountService accountService,
+                           MessageLikeRepository likeRepository, PlatformTransactionManager transactionManager) {
+        this.messageRepository = messageRepository;
+        this.accountService = accountService;
+        this.likeRepository = likeRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Loads the stored likes into the duplicate check before the web server starts taking requests.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        likeRepository.forEachLike(pair -> stripeFor(pair).load(pair));
+    }
+
+    /**
+     * Likes a message on behalf of an account. Liking the same message twice has no further effect.
+     *
+     * @param messageId The ID of the message to like.
+     * @param accountId The ID of the account that likes it.
+     * @return The message's like count, including this like.
+     * @throws InvalidRequestException If the message or the account does not exist.
+     */
+    public MessageLikes like(int messageId, int accountId) throws InvalidRequestException {
+        validate(messageId, accountId);
+        long pair = MessageLikeRepository.pack(messageId, accountId);
+        if (stripeFor(pair).like(pair)) {
+            pendingCounts.computeIfAbsent(messageId, id -> new LongAdder()).increment();
+        }
+        return new MessageLikes(messageId, countLikes(messageId));
+    }
+
+    /**
+     * Withdraws an account's like. Unliking a message that the account has not liked has no effect.
+     *
+     * @param messageId The ID of the liked message.
+     * @param accountId The ID of the account that liked it.
+     * @return The message's like count, without this like.
+     * @throws InvalidRequestException If the message or the account does not exist.
+     */
+    public MessageLikes unlike(int messageId, int accountId) throws InvalidRequestException {
+        validate(messageId, accountId);
+        long pair = MessageLikeRepository.pack(messageId, accountId);
+        if (stripeFor(pair).unlike(pair)) {
+            pendingCounts.computeIfAbsent(messageId, id -> new LongAdder()).decrement();
+        }
+        return new MessageLikes(messageId, countLikes(messageId));
+    }
+
+    /**
+     * Retrieves the like count of a message.
+     *
+     * @param messageId The ID of the message.
+     * @return The message's like count.
+     * @throws InvalidRequestException If the message does not exist.
+     */
+    public MessageLikes getLikes(int messageId) throws InvalidRequestException {
+        // Check if the message exists
+        if (!messageRepository.existsById(messageId)) {
+            throw new InvalidRequestException("Message with this ID does not exist.");
+        }
+        return new MessageLikes(messageId, countLikes(messageId));
+    }
+
+    /**
+     * Drops the likes of a message that is being deleted: the stored rows within the current transaction, or a new one
+     * if there is none, the in-memory counts once it commits. Its in-memory pairs are dropped by the next flush.
+     *
+     * @param messageId The ID of the deleted message.
+     */
+    public void forgetMessage(int messageId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            likeRepository.deleteByMessageId(messageId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    forgottenMessages.add(messageId);
+                    pendingCounts.remove(messageId);
+                    storedCounts.remove(messageId);
+                }
+            });
+        });
+    }
+
+    /**
+     * Writes the likes and unlikes accumulated since the last flush in one transaction, and moves the stored counts
+     * by the rows that changed. If the transaction fails the pairs are put back and retried by the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.likes.flush-interval-ms:1000}")
+    public void flush() {
+        Set<Integer> forgotten = forgottenMessages.isEmpty()
+                ? Collections.emptySet() : new HashSet<>(forgottenMessages);
+        Map<Stripe, long[][]> pairs = new HashMap<>();
+        for (Stripe stripe : stripes) {
+            long[][] drained = stripe.drain(forgotten);
+            if (drained[0].length > 0 || drained[1].length > 0) {
+                pairs.put(stripe, drained);
+            }
+        }
+        forgottenMessages.removeAll(forgotten);
+        if (pairs.isEmpty()) {
+            storedCounts.clear();
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Integer, Long> deltas = new HashMap<>();
+                for (long[][] drained : pairs.values()) {
+                    addChanged(deltas, drained[0], likeRepository.insertLikes(drained[0]), 1);
+                    addChanged(deltas, drained[1], likeRepository.deleteLikes(drained[1]), -1);
+                }
+                deltas.values().removeIf(delta -> delta == 0);
+                if (!deltas.isEmpty()) {
+                    likeRepository.addToCounts(deltas);
+                }
+            });
+        } catch (RuntimeException e) {
+            pairs.forEach((stripe, drained) -> stripe.restore(drained[0], drained[1]));
+            throw e;
+        }
+
+        // The flushed pairs are part of the stored counts now, so they no longer count as pending
+        for (long[][] drained : pairs.values()) {
+            for (long pair : drained[0]) {
+                pendingCounts.computeIfAbsent(MessageLikeRepository.messageIdOf(pair), id -> new LongAdder())
+                        .decrement();
+            }
+            for (long pair : drained[1]) {
+                pendingCounts.computeIfAbsent(MessageLikeRepository.messageIdOf(pair), id -> new LongAdder())
+                        .increment();
+            }
+        }
+        storedCounts.clear();
+    }
+
+    /**
+     * Adds the sign to the delta of every pair whose row the statement changed.
+     */
+    private static void addChanged(Map<Integer, Long> deltas, long[] pairs, int[] updateCounts, long sign) {
+        for (int i = 0; i < pairs.length; i++) {
+            if (updateCounts[i] > 0) {
+                deltas.merge(MessageLikeRepository.messageIdOf(pairs[i]), sign, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Flushes what is still pending on shutdown.
+     */
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private long countLikes(int messageId) {
+        LongAdder pending = pendingCounts.get(messageId);
+        long stored = storedCounts.computeIfAbsent(messageId, likeRepository::findCount);
+        return stored + (pending == null ? 0 : pending.sum());
+    }
+
+    private void validate(int messageId, int accountId) throws InvalidRequestException {
+        // Check if the message exists
+        if (!messageRepository.existsById(messageId)) {
+            throw new InvalidRequestException("Message with this ID does not exist.");
+        }
+
+        // Check if the liking account exists
+        try {
+            accountService.getUserById(accountId);
+        } catch (ResourceNotFoundException e) {
+            throw new InvalidRequestException("Message needs to be liked by a valid user.");
+        }
+    }
+
+    private Stripe stripeFor(long pair) {
+        int h = (int) (pair ^ (pair >>> 32)) * 0x9E3779B9;
+        return stripes[(h ^ (h >>> 16)) & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * One lock-protected slice of the like set, with the pairs liked and unliked since the last flush.
+     */
+    private static final class Stripe {
+        private final LongHashSet likes = new LongHashSet();
+        private LongHashSet inserted = new LongHashSet();
+        private LongHashSet deleted = new LongHashSet();
+
+        synchronized void load(long pair) {
+            likes.add(pair);
+        }
+
+        synchronized boolean like(long pair) {
+            if (!likes.add(pair)) {
+                return false;
+            }
+            // An unlike and a like within one flush interval cancel out
+            if (!deleted.remove(pair)) {
+                inserted.add(pair);
+            }
+            return true;
+        }
+
+        synchronized boolean unlike(long pair) {
+            if (!likes.remove(pair)) {
+                return false;
+            }
+            if (!inserted.remove(pair)) {
+                deleted.add(pair);
+            }
+            return true;
+        }
+
+        /**
+         * @param forgotten Deleted messages, whose pairs are dropped rather than drained.
+         * @return The pairs to insert and the pairs to delete since the last drain.
+         */
+        synchronized long[][] drain(Set<Integer> forgotten) {
+            if (!forgotten.isEmpty()) {
+                likes.removeIf(pair -> forgotten.contains(MessageLikeRepository.messageIdOf(pair)));
+                inserted.removeIf(pair -> forgotten.contains(MessageLikeRepository.messageIdOf(pair)));
+                deleted.removeIf(pair -> forgotten.contains(MessageLikeRepository.messageIdOf(pair)));
+            }
+            long[][] drained = {inserted.toArray(), deleted.toArray()};
+            if (!inserted.isEmpty()) {
+                inserted = new LongHashSet();
+            }
+            if (!deleted.isEmpty()) {
+                deleted = new LongHashSet();
+            }
+            return drained;
+        }
+
+        /**
+         * Puts back the pairs of a failed flush, cancelling them against anything that happened since.
+         */
+        synchronized void restore(long[] failedInserts, long[] failedDeletes) {
+            for (long pair : failedInserts) {
+                if (!deleted.remove(pair)) {
+                    inserted.add(pair);
+                }
+            }
+            for (long pair : failedDeletes) {
+                if (!inserted.remove(pair)) {
+                    deleted.add(pair);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a UTF-8 channel into the records of an NDJSON or CSV file. Input goes through one fixed direct buffer and one
+ * char buffer, so only the record being returned is ever held as a String. In CSV a line break inside a quoted field
+ * belongs to the record; NDJSON escapes line breaks, so there every line is a record. Blank lines are skipped.
+ */
+class RecordReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final boolean quoted;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final StringBuilder record = new StringBuilder(512);
+    private boolean endOfInput;
+    private long bytesRead;
+
+    RecordReader(FileFormat format, ReadableByteChannel channel) {
+        this.channel = channel;
+        this.quoted = format == FileFormat.CSV;
+        chars.flip();
+    }
+
+    /**
+     * @return The next record without its line break, or null at the end of the input.
+     * @throws java.nio.charset.CharacterCodingException If the input is not valid UTF-8.
+     * @throws IOException If reading from the channel fails.
+     */
+    String next() throws IOException {
+        record.setLength(0);
+        boolean inQuotes = false;
+        while (true) {
+            if (!chars.hasRemaining() && !fill()) {
+                return record.length() == 0 ? null : record.toString();
+            }
+            char c = chars.get();
+            if (c == '\n' && !inQuotes) {
+                if (record.length() > 0 && record.charAt(record.length() - 1) == '\r') {
+                    record.setLength(record.length() - 1);
+                }
+                if (record.length() > 0) {
+                    return record.toString();
+                }
+                continue;
+            }
+            // A doubled quote inside a quoted field toggles twice and so leaves the state unchanged
+            if (c == '"' && quoted) {
+                inQuotes = !inQuotes;
+            }
+            record.append(c);
+        }
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !endOfInput) {
+            int n = channel.read(bytes);
+            if (n < 0) {
+                endOfInput = true;
+            } else {
+                bytesRead += n;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            bytes.compact();
+            if (endOfInput) {
+                result = decoder.flush(chars);
+                if (result.isError()) {
+                    result.throwException();
+                }
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
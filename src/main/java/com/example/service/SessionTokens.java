@@ -0,0 +1,180 @@
+package com.example.service;
+
+import com.example.exception.UnauthorizedException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Stateless session tokens handed out by /login, so later requests can name their account without a database lookup.
+ *
+ * A token reads accountId.expiresAtEpochSeconds.signature, where the signature is the unpadded base64url HMAC-SHA256
+ * of the text before it. Nothing is stored on the server: a token is valid as long as its signature matches and it
+ * has not expired, and it cannot be revoked before then. Accounts are never deleted, so an account named by a valid
+ * token always exists.
+ *
+ * Verification works on the token's characters in place, with per-thread buffers and Mac instances, so a request pays
+ * one HMAC and no parsing garbage.
+ *
+ * Without a configured secret a random one is drawn at startup; tokens then stop working on restart and are only
+ * accepted by the instance that issued them.
+ */
+@Component
+public class SessionTokens {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 32;
+    private static final int SIGNATURE_CHARS = (SIGNATURE_BYTES * 8 + 5) / 6;
+    // An int account ID, a dot and an 18-digit expiry; longer numbers could overflow while parsing
+    private static final int MAX_PAYLOAD_CHARS = 10 + 1 + 18;
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final ThreadLocal<Signer> signers = ThreadLocal.withInitial(this::newSigner);
+
+    public SessionTokens(@Value("${app.sessions.secret:}") String secret,
+                         @Value("${app.sessions.ttl-seconds:3600}") long ttlSeconds) {
+        byte[] keyBytes;
+        if (secret.isEmpty()) {
+            keyBytes = new byte[SIGNATURE_BYTES];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = Base64.getDecoder().decode(secret);
+        }
+        if (keyBytes.length < SIGNATURE_BYTES) {
+            throw new IllegalArgumentException("Session secret must be at least " + SIGNATURE_BYTES
+                    + " bytes, base64-encoded.");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @param accountId The account that logged in.
+     * @return A token naming the account that is valid for app.sessions.ttl-seconds.
+     */
+    public String issue(int accountId) {
+        String payload = accountId + "." + (System.currentTimeMillis() / 1000 + ttlSeconds);
+        Signer signer = signers.get();
+        byte[] bytes = payload.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, signer.payload, 0, bytes.length);
+        signer.sign(bytes.length);
+        return payload + '.' + new String(signer.signature);
+    }
+
+    /**
+     * Checks a token's signature and expiry.
+     *
+     * @param token The token as issued by {@link #issue(int)}.
+     * @return The ID of the account the token was issued to.
+     * @throws UnauthorizedException If the token is malformed, its signature does not match, or it has expired.
+     */
+    public int verify(CharSequence token) throws UnauthorizedException {
+
+        // Check if the token has the shape accountId.expiry.signature, copying the signed part as it goes
+        int payloadLength = token.length() - 1 - SIGNATURE_CHARS;
+        if (payloadLength < 3 || payloadLength > MAX_PAYLOAD_CHARS || token.charAt(payloadLength) != '.') {
+            throw invalid();
+        }
+        Signer signer = signers.get();
+        long accountId = 0;
+        long expiresAt = 0;
+        int dot = -1;
+        for (int i = 0; i < payloadLength; i++) {
+            char c = token.charAt(i);
+            if (c == '.' && dot < 0 && i > 0) {
+                dot = i;
+            } else if (c >= '0' && c <= '9' && (dot < 0 ? i < 10 : i - dot <= 18)) {
+                if (dot < 0) {
+                    accountId = accountId * 10 + c - '0';
+                } else {
+                    expiresAt = expiresAt * 10 + c - '0';
+                }
+            } else {
+                throw invalid();
+            }
+            signer.payload[i] = (byte) c;
+        }
+        if (dot < 0 || dot == payloadLength - 1 || accountId > Integer.MAX_VALUE) {
+            throw invalid();
+        }
+
+        // Compare every signature character, so the time taken does not tell how much of a forgery was right
+        signer.sign(payloadLength);
+        int difference = 0;
+        for (int i = 0; i < SIGNATURE_CHARS; i++) {
+            difference |= signer.signature[i] ^ token.charAt(payloadLength + 1 + i);
+        }
+        if (difference != 0) {
+            throw invalid();
+        }
+
+        // Check if the token has expired
+        if (expiresAt <= System.currentTimeMillis() / 1000) {
+            throw new UnauthorizedException("Session token has expired. Log in again.");
+        }
+        return (int) accountId;
+    }
+
+    private static UnauthorizedException invalid() {
+        return new UnauthorizedException("Session token is invalid.");
+    }
+
+    private Signer newSigner() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return new Signer(mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available.", e);
+        }
+    }
+
+    /**
+     * A thread's Mac and the buffers of one signing.
+     */
+    private static final class Signer {
+        private final Mac mac;
+        private final byte[] payload = new byte[MAX_PAYLOAD_CHARS];
+        private final byte[] digest = new byte[SIGNATURE_BYTES];
+        private final char[] signature = new char[SIGNATURE_CHARS];
+
+        private Signer(Mac mac) {
+            this.mac = mac;
+        }
+
+        /**
+         * Signs the first length bytes of payload into signature, as unpadded base64url.
+         */
+        private void sign(int length) {
+            mac.update(payload, 0, length);
+            try {
+                mac.doFinal(digest, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+            int out = 0;
+            int in = 0;
+            for (; in + 2 < SIGNATURE_BYTES; in += 3) {
+                int bits = (digest[in] & 0xff) << 16 | (digest[in + 1] & 0xff) << 8 | digest[in + 2] & 0xff;
+                signature[out++] = ALPHABET[bits >>> 18];
+                signature[out++] = ALPHABET[bits >>> 12 & 63];
+                signature[out++] = ALPHABET[bits >>> 6 & 63];
+                signature[out++] = ALPHABET[bits & 63];
+            }
+            // 32 bytes leave two, which take three characters
+            int bits = (digest[in] & 0xff) << 16 | (digest[in + 1] & 0xff) << 8;
+            signature[out++] = ALPHABET[bits >>> 18];
+            signature[out++] = ALPHABET[bits >>> 12 & 63];
+            signature[out] = ALPHABET[bits >>> 6 & 63];
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of requests in flight at a limit that adapts to the latency they see, instead of a fixed pool size
+ * that is either too small for fast requests or too large for slow ones.
+ *
+ * Latencies are averaged over windows of completed requests and compared with a baseline, the lowest window average
+ * seen. While the window average stays within tolerance times the baseline, the limit grows by about the square root
+ * of itself per window; once requests start queueing and latency climbs past that, the limit is scaled down by the
+ * ratio, by at most half per window. The baseline drifts slowly towards higher window averages, so a lasting change in
+ * the cost of requests, rather than queueing, is eventually accepted as the new normal. Windows in which fewer than
+ * half the permits were used do not change the limit, since they say nothing about capacity.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    // How far the baseline moves towards a slower window, so it takes about a hundred windows to accept a slowdown
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final int windowSize;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double limit;
+
+    // Current window and baseline latency, guarded by this
+    private long windowNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private double baselineNanos;
+
+    /**
+     * @param initialLimit The limit to start with.
+     * @param minLimit The limit never drops below this.
+     * @param maxLimit The limit never grows past this.
+     * @param tolerance How many times the baseline latency a window may average before the limit shrinks.
+     * @param smoothing How much of each new estimate is taken over into the limit, 0 to 1.
+     * @param windowSize The number of completed requests per window.
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                                    int windowSize) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max.");
+        }
+        if (tolerance < 1 || smoothing <= 0 || smoothing > 1 || windowSize < 1) {
+            throw new IllegalArgumentException("Concurrency limit tolerance must be at least 1, smoothing between 0 "
+                    + "and 1, and the window at least one request.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.windowSize = windowSize;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Takes a permit if fewer requests than the limit are in flight. Every permit taken must be given back with
+     * {@link #release(long)} or {@link #release()}.
+     *
+     * @return false if the request should be rejected.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit and records how long its request took.
+     *
+     * @param latencyNanos The time from {@link #tryAcquire()} to completion.
+     */
+    public void release(long latencyNanos) {
+        int previous = inFlight.getAndDecrement();
+        sample(latencyNanos, previous);
+    }
+
+    /**
+     * Gives back a permit without recording a latency, for requests whose duration says nothing about load, such as
+     * long-running streams.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void sample(long latencyNanos, int inFlightBefore) {
+        windowNanos += latencyNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightBefore);
+        if (windowSamples < windowSize) {
+            return;
+        }
+
+        double shortTermNanos = (double) windowNanos / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        if (baselineNanos == 0 || shortTermNanos < baselineNanos) {
+            baselineNanos = shortTermNanos;
+        } else {
+            baselineNanos += (shortTermNanos - baselineNanos) * BASELINE_DRIFT;
+        }
+
+        // Check if the window used enough of the limit to tell anything about capacity
+        double current = limit;
+        if (maxInFlight < current / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineNanos / shortTermNanos));
+        double estimate = current * gradient + Math.sqrt(current);
+        double next = current * (1 - smoothing) + estimate * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+
+    /**
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return The number of times {@link #tryAcquire()} returned false.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.util;
+
+import com.example.exception.TooManyRequestsException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed set of threads with a bounded queue that one class of work runs on, so that it cannot take the threads, and
+ * with them the database connections, that another class needs. Each thread holds at most one connection at a time,
+ * so the thread count is also the bulkhead's share of the connection pool.
+ *
+ * Callers block until their task is done, as if they had run it themselves. When every thread is busy and the queue
+ * is full, the task is rejected at once.
+ */
+public final class Bulkhead {
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name The name used in thread names, metrics and errors.
+     * @param threads The number of threads, and so of connections, the bulkhead may use.
+     * @param queueCapacity How many tasks may wait for a thread before further tasks are rejected.
+     */
+    public Bulkhead(String name, int threads, int queueCapacity) {
+        this.name = name;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(() -> {
+                        CURRENT.set(this);
+                        runnable.run();
+                    }, "bulkhead-" + name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Runs the task on one of this bulkhead's threads and waits for it, or in place if the calling thread already
+     * belongs to a bulkhead, which keeps nested calls from waiting on a thread of their own bulkhead.
+     *
+     * @param task The work to run.
+     * @return The task's result.
+     * @throws TooManyRequestsException If every thread is busy and the queue is full.
+     * @throws Exception Whatever the task threw.
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        if (CURRENT.get() != null) {
+            return task.call();
+        }
+
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("The server is too busy with " + name + ", please try again shortly.", 1);
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The bulkhead the calling thread belongs to, or null if it is not a bulkhead thread.
+     */
+    public static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of tasks waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return The number of threads running a task.
+     */
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return The number of tasks turned away because the bulkhead was full.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.util;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a public method of a Spring bean on the threads of the named {@link Bulkhead} instead of the caller's. The
+ * switch happens before the method's transaction starts, so its database connection is taken on the bulkhead's
+ * thread. Calls made from a thread that already belongs to a bulkhead run in place.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Bulkheaded {
+
+    String READS = "reads";
+    String WRITES = "writes";
+    String AUTH = "auth";
+
+    /**
+     * @return The name of the bulkhead, one of {@link #READS}, {@link #WRITES} and {@link #AUTH}.
+     */
+    String value();
+}
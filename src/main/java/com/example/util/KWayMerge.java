@@ -0,0 +1,63 @@
+package com.example.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges several individually sorted sequences into one sorted list with a heap of their heads, so merging k sequences
+ * of n elements in total costs O(n log k) instead of re-sorting everything.
+ */
+public final class KWayMerge {
+
+    private KWayMerge() {
+    }
+
+    /**
+     * @param sources Sequences that are each sorted by the comparator.
+     * @param comparator The order shared by all sources.
+     * @param limit The maximum number of elements to return.
+     * @return The first {@code limit} elements of all sources, in order.
+     */
+    public static <T> List<T> merge(List<? extends Iterable<? extends T>> sources, Comparator<? super T> comparator,
+                                    int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> comparator.compare(a.value, b.value));
+        for (Iterable<? extends T> source : sources) {
+            Iterator<? extends T> iterator = source.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head<>(iterator.next(), iterator));
+            }
+        }
+
+        List<T> merged = new ArrayList<>();
+        while (!heads.isEmpty() && merged.size() < limit) {
+            Head<T> head = heads.poll();
+            merged.add(head.value);
+            if (head.rest.hasNext()) {
+                head.value = head.rest.next();
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Merges all elements of the sources.
+     */
+    public static <T> List<T> merge(List<? extends Iterable<? extends T>> sources, Comparator<? super T> comparator) {
+        return merge(sources, comparator, Integer.MAX_VALUE);
+    }
+
+    private static final class Head<T> {
+        private T value;
+        private final Iterator<? extends T> rest;
+
+        private Head(T value, Iterator<? extends T> rest) {
+            this.value = value;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.util;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * A set of non-zero longs stored in a single open-addressing array: 8 bytes per slot, no boxing and no per-element
+ * nodes. Removal shifts the following entries back instead of leaving tombstones, so the table never degrades.
+ *
+ * Not thread-safe; callers guard it themselves.
+ */
+public final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slots;
+    private int size;
+
+    public LongHashSet() {
+        slots = new long[MIN_CAPACITY];
+    }
+
+    /**
+     * @param value A non-zero value; 0 marks an empty slot.
+     * @return true if the value was not already present.
+     */
+    public boolean add(long value) {
+        requireNonZero(value);
+        int slot = findSlot(slots, value);
+        if (slots[slot] == value) {
+            return false;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            resize(slots.length * 2);
+            slot = findSlot(slots, value);
+        }
+        slots[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the value was present.
+     */
+    public boolean remove(long value) {
+        requireNonZero(value);
+        int mask = slots.length - 1;
+        int slot = findSlot(slots, value);
+        if (slots[slot] != value) {
+            return false;
+        }
+        // Backward-shift deletion: pull later entries of the probe run into the hole when that is closer to home
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (slots[next] != 0) {
+            int home = home(slots[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                slots[hole] = slots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        slots[hole] = 0;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes every value matching the filter.
+     *
+     * @return The number of values removed.
+     */
+    public int removeIf(LongPredicate filter) {
+        int removed = 0;
+        for (long value : toArray()) {
+            if (filter.test(value) && remove(value)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public boolean contains(long value) {
+        return value != 0 && slots[findSlot(slots, value)] == value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(LongConsumer action) {
+        for (long value : slots) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * @return The values in no particular order.
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        for (long value : slots) {
+            if (value != 0) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    private void resize(int capacity) {
+        long[] newSlots = new long[capacity];
+        for (long value : slots) {
+            if (value != 0) {
+                newSlots[findSlot(newSlots, value)] = value;
+            }
+        }
+        slots = newSlots;
+    }
+
+    /**
+     * @return The slot holding the value, or the empty slot where it belongs.
+     */
+    private static int findSlot(long[] slots, long value) {
+        int mask = slots.length - 1;
+        int slot = home(value, mask);
+        while (slots[slot] != 0 && slots[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int home(long value, int mask) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static void requireNonZero(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("LongHashSet cannot hold 0.");
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Case-insensitive prefix lookup of strings, each carrying an int value, held in sorted parallel arrays instead of a
+ * trie: one String reference and one int per entry, no per-node objects. A prefix matches a contiguous range of the
+ * sorted keys, found by binary search.
+ *
+ * Additions go to a small sorted overflow run, copied on each write, which is merged into the main run once it reaches
+ * the merge threshold, so a write costs at most a copy of the overflow run plus an amortized share of the merge. Reads
+ * take no lock: they work on an immutable snapshot of both runs. Writes are serialized.
+ */
+public final class PrefixIndex {
+
+    /**
+     * Orders keys by their lower-cased form, and case variants of the same key by their exact form.
+     */
+    private static final Comparator<String> ORDER = ((Comparator<String>) PrefixIndex::compareFolded)
+            .thenComparing(Comparator.naturalOrder());
+
+    private final int mergeThreshold;
+    private volatile Snapshot snapshot = new Snapshot(Run.EMPTY, Run.EMPTY);
+
+    /**
+     * @param mergeThreshold The size at which the overflow run is merged into the main run.
+     */
+    public PrefixIndex(int mergeThreshold) {
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /**
+     * Replaces the contents of the index.
+     *
+     * @param keys The keys, in any order.
+     * @param values The value of each key.
+     */
+    public synchronized void load(List<String> keys, List<Integer> values) {
+        snapshot = new Snapshot(Run.sorted(keys, values), Run.EMPTY);
+    }
+
+    /**
+     * Adds a key. Adding a key that is already present adds a second entry for it.
+     */
+    public synchronized void add(String key, int value) {
+        Snapshot current = snapshot;
+        publish(current.main, current.overflow.with(key, value));
+    }
+
+    /**
+     * Adds several keys with one merge instead of one copy of the overflow run per key.
+     *
+     * @param keys The keys, in any order.
+     * @param values The value of each key.
+     */
+    public synchronized void addAll(List<String> keys, List<Integer> values) {
+        Snapshot current = snapshot;
+        publish(current.main, Run.merge(current.overflow, Run.sorted(keys, values)));
+    }
+
+    private void publish(Run main, Run overflow) {
+        snapshot = overflow.size() >= mergeThreshold
+                ? new Snapshot(Run.merge(main, overflow), Run.EMPTY)
+                : new Snapshot(main, overflow);
+    }
+
+    /**
+     * Finds the keys that start with the prefix, ignoring case, in key order.
+     *
+     * @param prefix The prefix to match.
+     * @param limit The maximum number of matches.
+     * @param consumer Receives each matching key and its value.
+     * @return The number of matches passed to the consumer.
+     */
+    public int search(String prefix, int limit, BiConsumer<String, Integer> consumer) {
+        Snapshot current = snapshot;
+        int i = current.main.lowerBound(prefix);
+        int j = current.overflow.lowerBound(prefix);
+        int found = 0;
+        while (found < limit) {
+            boolean mainMatches = current.main.matches(i, prefix);
+            boolean overflowMatches = current.overflow.matches(j, prefix);
+            if (!mainMatches && !overflowMatches) {
+                break;
+            }
+            // Merge the two runs' matching ranges in key order
+            if (mainMatches && (!overflowMatches
+                    || ORDER.compare(current.main.keys[i], current.overflow.keys[j]) <= 0)) {
+                consumer.accept(current.main.keys[i], current.main.values[i]);
+                i++;
+            } else {
+                consumer.accept(current.overflow.keys[j], current.overflow.values[j]);
+                j++;
+            }
+            found++;
+        }
+        return found;
+    }
+
+    public int size() {
+        Snapshot current = snapshot;
+        return current.main.size() + current.overflow.size();
+    }
+
+    /**
+     * Compares two strings by their lower-cased characters without building lower-cased copies, which would otherwise
+     * be allocated on every step of a binary search.
+     */
+    private static int compareFolded(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            int difference = Character.toLowerCase(a.charAt(i)) - Character.toLowerCase(b.charAt(i));
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static boolean startsWithFolded(String key, String prefix) {
+        if (key.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(key.charAt(i)) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Snapshot {
+        private final Run main;
+        private final Run overflow;
+
+        private Snapshot(Run main, Run overflow) {
+            this.main = main;
+            this.overflow = overflow;
+        }
+    }
+
+    /**
+     * An immutable run of keys sorted in {@link #ORDER}, with their values.
+     */
+    private static final class Run {
+        private static final Run EMPTY = new Run(new String[0], new int[0]);
+
+        private final String[] keys;
+        private final int[] values;
+
+        private Run(String[] keys, int[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int size() {
+            return keys.length;
+        }
+
+        /**
+         * @return The position of the first key whose lower-cased form is not less than the lower-cased prefix.
+         */
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareFolded(keys[mid], prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private boolean matches(int position, String prefix) {
+            return position < keys.length && startsWithFolded(keys[position], prefix);
+        }
+
+        private Run with(String key, int value) {
+            int position = Arrays.binarySearch(keys, key, ORDER);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            String[] newKeys = new String[keys.length + 1];
+            int[] newValues = new int[values.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, position);
+            System.arraycopy(values, 0, newValues, 0, position);
+            newKeys[position] = key;
+            newValues[position] = value;
+            System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+            System.arraycopy(values, position, newValues, position + 1, values.length - position);
+            return new Run(newKeys, newValues);
+        }
+
+        private static Run sorted(List<String> keys, List<Integer> values) {
+            Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> ORDER.compare(keys.get(a), keys.get(b)));
+            String[] sortedKeys = new String[order.length];
+            int[] sortedValues = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i]);
+                sortedValues[i] = values.get(order[i]);
+            }
+            return new Run(sortedKeys, sortedValues);
+        }
+
+        private static Run merge(Run a, Run b) {
+            String[] keys = new String[a.size() + b.size()];
+            int[] values = new int[keys.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < keys.length; k++) {
+                if (j >= b.size() || (i < a.size() && ORDER.compare(a.keys[i], b.keys[j]) <= 0)) {
+                    keys[k] = a.keys[i];
+                    values[k] = a.values[i++];
+                } else {
+                    keys[k] = b.keys[j];
+                    values[k] = b.values[j++];
+                }
+            }
+            return new Run(keys, values);
+        }
+    }
+}
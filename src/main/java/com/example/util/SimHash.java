@@ -0,0 +1,126 @@
+package com.example.util;
+
+/**
+ * 64-bit SimHash fingerprints of short texts: texts that share most of their character 4-grams get fingerprints that
+ * differ in few bits, so near-duplicates can be found by Hamming distance.
+ *
+ * Before shingling, letters and digits are lower-cased and every run of other characters becomes a single space, so
+ * changes in case, punctuation and spacing do not change the fingerprint. Every run of digits becomes a single '0', so
+ * different numbers in otherwise equal texts do not either.
+ *
+ * A fingerprint bit is set when more than half of the shingle hashes have it set. Rather than keeping one counter per
+ * bit and touching all 64 of them for every shingle, the counters are bit-sliced: counter bit k of all 64 positions
+ * lives in one long, and adding a hash is a ripple-carry addition over those longs, which usually stops after a few of
+ * them.
+ */
+public final class SimHash {
+
+    private static final int SHINGLE = 4;
+
+    private SimHash() {
+    }
+
+    /**
+     * @param text The text to fingerprint.
+     * @return The text's fingerprint.
+     */
+    public static long fingerprint(CharSequence text) {
+        Counters counters = new Counters();
+        // The last SHINGLE normalized characters, 16 bits each
+        long window = 0;
+        int length = 0;
+        boolean pendingSpace = false;
+        boolean inNumber = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                pendingSpace = length > 0;
+                inNumber = false;
+                continue;
+            }
+            if (Character.isDigit(c)) {
+                // A run of digits counts as one '0', so appended counters and random numbers barely matter
+                if (inNumber && !pendingSpace) {
+                    continue;
+                }
+                inNumber = true;
+                c = '0';
+            } else {
+                inNumber = false;
+            }
+            if (pendingSpace) {
+                window = window << 16 | ' ';
+                length++;
+                pendingSpace = false;
+                if (length >= SHINGLE) {
+                    counters.add(mix(window));
+                }
+            }
+            window = window << 16 | Character.toLowerCase(c);
+            length++;
+            if (length >= SHINGLE) {
+                counters.add(mix(window));
+            }
+        }
+        // Texts shorter than one shingle are fingerprinted whole
+        if (length > 0 && length < SHINGLE) {
+            counters.add(mix(window));
+        }
+        return counters.majority();
+    }
+
+    /**
+     * @return The number of bits in which two fingerprints differ.
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * The SplitMix64 finalizer, which spreads every input bit over the whole hash.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 64 bit-sliced counters of how many added hashes had each bit set.
+     */
+    private static final class Counters {
+        private final long[] planes = new long[Integer.SIZE];
+        private int planesUsed;
+        private int added;
+
+        private void add(long hash) {
+            added++;
+            long carry = hash;
+            int plane = 0;
+            while (carry != 0) {
+                long next = planes[plane] & carry;
+                planes[plane] ^= carry;
+                carry = next;
+                plane++;
+            }
+            planesUsed = Math.max(planesUsed, plane);
+        }
+
+        /**
+         * @return A long with the bits set that were set in more than half of the added hashes.
+         */
+        private long majority() {
+            long fingerprint = 0;
+            for (int bit = 0; bit < 64; bit++) {
+                int ones = 0;
+                for (int plane = 0; plane < planesUsed; plane++) {
+                    ones |= (int) (planes[plane] >>> bit & 1) << plane;
+                }
+                if (2 * ones > added) {
+                    fingerprint |= 1L << bit;
+                }
+            }
+            return fingerprint;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.util;
+
+/**
+ * Recent {@link SimHash} fingerprints, indexed for counting the ones within a Hamming distance of a new fingerprint.
+ *
+ * The 64 bits are split into maxDistance + 1 bands. Two fingerprints that differ in at most maxDistance bits agree
+ * exactly on at least one band, so only the entries that share a band value with the query need comparing. Each band
+ * keeps a table of small rings of the latest fingerprints and their times, in flat primitive arrays, so a lookup reads
+ * one short contiguous run per band. A band narrow enough gets one ring per band value; a wider one hashes its values
+ * into as many rings as keep them about TARGET_DEPTH deep, since a table per value would take up to 2^64 rings. Either
+ * way each band holds about capacity entries, which fixes memory up front, and a ring that several band values share
+ * only costs a few more distance comparisons. An entry also stops counting once it is older than the window.
+ *
+ * Lookups and additions are serialized; each takes well under the time of the database write it guards.
+ */
+public final class SimHashIndex {
+
+    private static final int MAX_DISTANCE = 7;
+    // Rings never shrink below this, so a burst of copies landing in one band value is still seen
+    private static final int MIN_DEPTH = 8;
+    // Rings of hashed band values are kept about this deep, which bounds the comparisons per band and lookup
+    private static final int TARGET_DEPTH = 64;
+
+    private final long windowMillis;
+    private final int maxDistance;
+    private final int bands;
+    private final int[] bandShift;
+    private final long[] bandMask;
+    // Per band: whether band values are hashed into the rings rather than each having its own, and the ring count - 1
+    private final boolean[] hashed;
+    private final int[] ringMask;
+    private final int[] depth;
+
+    // Per band: all its rings back to back, and the next position to write in each ring
+    private final long[][] fingerprints;
+    private final long[][] times;
+    private final int[][] cursors;
+
+    /**
+     * @param capacity About how many fingerprints each band keeps; older ones are overwritten.
+     * @param windowMillis How far back, in milliseconds, entries count.
+     * @param maxDistance The largest number of differing bits that counts as near, at most 7.
+     */
+    public SimHashIndex(int capacity, long windowMillis, int maxDistance) {
+        if (capacity < 1 || maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new IllegalArgumentException("SimHash index needs a positive capacity and a distance between 0 and "
+                    + MAX_DISTANCE + ".");
+        }
+        this.windowMillis = windowMillis;
+        this.maxDistance = maxDistance;
+        this.bands = maxDistance + 1;
+        this.bandShift = new int[bands];
+        this.bandMask = new long[bands];
+        this.hashed = new boolean[bands];
+        this.ringMask = new int[bands];
+        this.depth = new int[bands];
+        this.fingerprints = new long[bands][];
+        this.times = new long[bands][];
+        this.cursors = new int[bands][];
+        for (int band = 0; band < bands; band++) {
+            int from = band * 64 / bands;
+            int width = (band + 1) * 64 / bands - from;
+            // As many rings as keep them TARGET_DEPTH deep, but no more than there are band values
+            int ringBits = Math.min(width, 31 - Integer.numberOfLeadingZeros(Math.max(1, capacity / TARGET_DEPTH)));
+            int rings = 1 << ringBits;
+            bandShift[band] = from;
+            bandMask[band] = width == 64 ? -1L : (1L << width) - 1;
+            hashed[band] = ringBits < width;
+            ringMask[band] = rings - 1;
+            depth[band] = Math.max(MIN_DEPTH, (capacity + rings - 1) / rings);
+            fingerprints[band] = new long[rings * depth[band]];
+            times[band] = new long[rings * depth[band]];
+            cursors[band] = new int[rings];
+        }
+    }
+
+    /**
+     * @return The number of fingerprint slots across all bands, each taking 16 bytes.
+     */
+    public long getSlots() {
+        long slots = 0;
+        for (int band = 0; band < bands; band++) {
+            slots += fingerprints[band].length;
+        }
+        return slots;
+    }
+
+    /**
+     * @return The number of slots a lookup reads: one ring per band.
+     */
+    public int getSlotsPerLookup() {
+        int slots = 0;
+        for (int band = 0; band < bands; band++) {
+            slots += depth[band];
+        }
+        return slots;
+    }
+
+    /**
+     * @return The most copies of one fingerprint that are ever counted at once: the depth of the shallowest ring,
+     *         since each band keeps only that many of the latest entries with the same band value.
+     */
+    public int getMinDepth() {
+        int min = Integer.MAX_VALUE;
+        for (int band = 0; band < bands; band++) {
+            min = Math.min(min, depth[band]);
+        }
+        return min;
+    }
+
+    /**
+     * Counts the entries within the window that are near the fingerprint, then adds the fingerprint.
+     *
+     * @param fingerprint The new fingerprint.
+     * @param nowMillis The current time, which the fingerprint is recorded with.
+     * @param limit Counting stops here, since callers only need to know whether a threshold is reached.
+     * @return The number of near entries, at most limit.
+     */
+    public synchronized int addAndCount(long fingerprint, long nowMillis, int limit) {
+        int count = count(fingerprint, nowMillis - windowMillis, limit);
+        add(fingerprint, nowMillis);
+        return count;
+    }
+
+    private int count(long fingerprint, long cutoffMillis, int limit) {
+        int count = 0;
+        for (int band = 0; band < bands; band++) {
+            int start = ring(fingerprint, band) * depth[band];
+            long[] ring = fingerprints[band];
+            long[] ringTimes = times[band];
+            for (int i = start; i < start + depth[band]; i++) {
+                // Check if the slot holds a live entry near the fingerprint; free slots have time 0
+                if (ringTimes[i] == 0 || ringTimes[i] < cutoffMillis
+                        || SimHash.distance(fingerprint, ring[i]) > maxDistance) {
+                    continue;
+                }
+                // Count each entry in the first band it shares with the fingerprint only
+                if (!sharesEarlierBand(fingerprint, ring[i], band) && ++count >= limit) {
+                    return count;
+                }
+            }
+        }
+        return count;
+    }
+
+    private void add(long fingerprint, long nowMillis) {
+        for (int band = 0; band < bands; band++) {
+            int ring = ring(fingerprint, band);
+            int position = cursors[band][ring];
+            int slot = ring * depth[band] + position;
+            fingerprints[band][slot] = fingerprint;
+            // Time 0 marks a free slot, so an entry recorded at time 0 is kept as 1
+            times[band][slot] = Math.max(1, nowMillis);
+            cursors[band][ring] = position + 1 == depth[band] ? 0 : position + 1;
+        }
+    }
+
+    private boolean sharesEarlierBand(long a, long b, int band) {
+        for (int earlier = 0; earlier < band; earlier++) {
+            if (band(a, earlier) == band(b, earlier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long band(long fingerprint, int band) {
+        return fingerprint >>> bandShift[band] & bandMask[band];
+    }
+
+    private int ring(long fingerprint, int band) {
+        long value = band(fingerprint, band);
+        if (!hashed[band]) {
+            return (int) value;
+        }
+        // Fibonacci hashing: the high bits of the product mix all bits of the band value
+        return (int) (value * 0x9E3779B97F4A7C15L >>> 33) & ringMask[band];
+    }
+}
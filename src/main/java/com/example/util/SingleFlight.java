@@ -0,0 +1,98 @@
+package com.example.util;
+
+import com.example.exception.TooManyRequestsException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load and every caller that arrives while it
+ * is in flight waits for that result instead of running its own. Nothing is kept once the load finishes, so this is not
+ * a cache and never serves stale data; the next caller after completion loads again.
+ *
+ * Waiting callers share the result object and the exception of the load, so results must not be mutated. A caller
+ * that has waited longer than the timeout gives up rather than piling onto a slow backend.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long waitTimeoutMillis;
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * @param waitTimeoutMillis How long a caller waits for a load started by another caller.
+     */
+    public SingleFlight(long waitTimeoutMillis) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    /**
+     * Returns the result of the load in flight for the key, or runs the loader if there is none.
+     *
+     * @param key The key being loaded.
+     * @param loader Loads the value on the calling thread when this caller is the first.
+     * @return The loaded value.
+     * @throws TooManyRequestsException If another caller's load is still running after the wait timeout.
+     * @throws RuntimeException Whatever the load threw, to every caller that shared it.
+     */
+    public V execute(K key, Supplier<V> loader) throws TooManyRequestsException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return await(existing);
+        }
+
+        loads.increment();
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * @return The number of loads that ran.
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * @return The number of calls served by another caller's load.
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    private V await(CompletableFuture<V> flight) {
+        try {
+            return flight.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new TooManyRequestsException("The requested resource is still being loaded.",
+                    Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitTimeoutMillis)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an in-flight load.", e);
+        }
+    }
+}
@@ -1,3 +1,5 @@
+drop table if exists message_like;
+drop table if exists message_like_count;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -10,8 +12,30 @@ create table message (
     postedBy int,
     messageText varchar(255),
     timePostedEpoch bigint,
+    -- Time-ordered key generated by the application; rows inserted without one are backfilled at startup
+    messageKey bigint unique,
+    -- Tombstone of a deleted message; MessageCompactor removes tombstoned rows in the background
+    deleted boolean default false not null,
+    -- Set on messages accepted although they nearly duplicate many recent ones
+    flagged boolean default false not null,
+    -- Optimistic lock: incremented by every update of the row
+    version bigint default 0 not null,
     foreign key (postedBy) references account(accountId)
 );
+create index message_deleted on message (deleted);
+-- Lets the multi-account timeline walk each account's live messages newest first without sorting them; deleted is in
+-- the index so that its filter does not steer the planner to message_deleted
+create index message_posted_by_time on message (postedBy, deleted, timePostedEpoch desc, messageId desc);
+-- Likes are written in batches by ReactionService; messages may live on other shards, so there is no foreign key
+create table message_like (
+    messageId int,
+    accountId int,
+    primary key (messageId, accountId)
+);
+create table message_like_count (
+    messageId int primary key,
+    likeCount bigint not null
+);
 
 -- Starting test values with ids of 9999 to avoid test issues
 insert into account values (9999, 'testuser1', 'password');
@@ -19,7 +43,7 @@ insert into account values (9998, 'testuser2', 'password');
 insert into account values (9997, 'testuser3', 'password');
 insert into account values (9996, 'testuser4', 'password');
 
-insert into message values (9999, 9999,'test message 1',1669947792);
-insert into message values (9997, 9997,'test message 2',1669947792);
-insert into message values (9996, 9996,'test message 3',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9999, 9999,'test message 1',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9997, 9997,'test message 2',1669947792);
+insert into message (messageId, postedBy, messageText, timePostedEpoch) values (9996, 9996,'test message 3',1669947792);
 
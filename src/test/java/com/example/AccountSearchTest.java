@@ -0,0 +1,119 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.AccountSummary;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccountSearchTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/search?prefix=TEST&limit=2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the first two seeded accounts, matched regardless of case
+     */
+    @Test
+    public void searchSeededAccounts() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("prefix=TEST&limit=2");
+        Assertions.assertEquals(200, response.statusCode());
+        List<AccountSummary> expectedResult = List.of(new AccountSummary(9999, "testuser1"),
+                new AccountSummary(9998, "testuser2"));
+        Assertions.assertEquals(expectedResult, readAccounts(response));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/search?prefix=ali after registering
+     * alice, Alicia and bob
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: alice and Alicia, ordered by username
+     */
+    @Test
+    public void searchRegisteredAccounts() throws IOException, InterruptedException {
+        int bob = register("bob");
+        int alicia = register("Alicia");
+        int alice = register("alice");
+
+        HttpResponse<String> response = search("prefix=ali");
+        Assertions.assertEquals(200, response.statusCode());
+        List<AccountSummary> expectedResult = List.of(new AccountSummary(alice, "alice"),
+                new AccountSummary(alicia, "Alicia"));
+        Assertions.assertEquals(expectedResult, readAccounts(response));
+        Assertions.assertEquals(List.of(new AccountSummary(bob, "bob")), readAccounts(search("prefix=b")));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/search with a blank prefix, and with a limit above the
+     * maximum
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchInvalid() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, search("prefix=").statusCode());
+        Assertions.assertEquals(400, search("prefix=test&limit=1000").statusCode());
+    }
+
+    private HttpResponse<String> search(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/search?" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<AccountSummary> readAccounts(HttpResponse<String> response) throws IOException {
+        return objectMapper.readValue(response.body(), new TypeReference<List<AccountSummary>>() {});
+    }
+
+    private int register(String username) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\": \"" + username + "\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readTree(response.body()).get("accountId").asInt();
+    }
+}
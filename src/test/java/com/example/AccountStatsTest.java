@@ -0,0 +1,135 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import com.example.repository.AccountStatsRepository;
+import com.example.service.AccountStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AccountStatsTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/stats (statistics rebuilt from the seeded messages)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one message, first and last posted at 1669947792
+     */
+    @Test
+    public void getStatsRebuiltAtStartup() throws IOException, InterruptedException {
+        HttpResponse<String> response = getStats(9999);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(new AccountStats(9999, 1L, 1669947792L, 1669947792L),
+                objectMapper.readValue(response.body(), AccountStats.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9998/stats (no messages for user)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a count of 0 and no post times
+     */
+    @Test
+    public void getStatsNoMessages() throws IOException, InterruptedException {
+        HttpResponse<String> response = getStats(9998);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(new AccountStats(9998, 0L, null, null),
+                objectMapper.readValue(response.body(), AccountStats.class));
+    }
+
+    /**
+     * Posting three messages for account 9998, deleting its latest one, then sending GET localhost:8080/accounts/9998/stats
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the counts and bounds follow every create and delete
+     */
+    @Test
+    public void getStatsFollowsCreatesAndDeletes() throws IOException, InterruptedException {
+        postMessage(9998, 1669947800L);
+        Message latest = postMessage(9998, 1669947900L);
+        postMessage(9998, 1669947700L);
+        Assertions.assertEquals(new AccountStats(9998, 3L, 1669947700L, 1669947900L),
+                objectMapper.readValue(getStats(9998).body(), AccountStats.class));
+
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + latest.getMessageId()))
+                .DELETE()
+                .build();
+        Assertions.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(new AccountStats(9998, 2L, 1669947700L, 1669947800L),
+                objectMapper.readValue(getStats(9998).body(), AccountStats.class));
+    }
+
+    /**
+     * Posting a message, then running the periodic persist
+     *
+     * Expected Result:
+     *  The account_stats table holds the same statistics as the endpoint
+     */
+    @Test
+    public void persistChangesWritesSnapshot() throws IOException, InterruptedException {
+        postMessage(9997, 1669947999L);
+        app.getBean(AccountStatsService.class).persistChanges();
+        Assertions.assertEquals(new AccountStats(9997, 2L, 1669947792L, 1669947999L),
+                app.getBean(AccountStatsRepository.class).findById(9997).orElse(null));
+        Assertions.assertEquals(new AccountStats(9999, 1L, 1669947792L, 1669947792L),
+                app.getBean(AccountStatsRepository.class).findById(9999).orElse(null));
+    }
+
+    private HttpResponse<String> getStats(int accountId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/" + accountId + "/stats"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Message postMessage(int postedBy, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":" + postedBy
+                        + ",\"messageText\": \"stats message\",\"timePostedEpoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
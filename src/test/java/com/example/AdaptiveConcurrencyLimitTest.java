@@ -0,0 +1,83 @@
+package com.example;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.util.AdaptiveConcurrencyLimit;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLI = 1_000_000;
+
+    /**
+     * Acquiring more permits than the limit, then releasing one
+     *
+     * Expected Result:
+     *  Requests over the limit are rejected and counted, and a released permit can be taken again
+     */
+    @Test
+    public void rejectsOverLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 2.0, 0.2, 10);
+        Assertions.assertTrue(limit.tryAcquire());
+        Assertions.assertTrue(limit.tryAcquire());
+        Assertions.assertFalse(limit.tryAcquire());
+        Assertions.assertEquals(1, limit.getRejected());
+        limit.release();
+        Assertions.assertEquals(1, limit.getInFlight());
+        Assertions.assertTrue(limit.tryAcquire());
+    }
+
+    /**
+     * Completing windows of fully loaded requests at a steady latency, then at ten times that latency
+     *
+     * Expected Result:
+     *  The limit grows while latency holds, up to the maximum, and shrinks once latency climbs past the tolerance
+     */
+    @Test
+    public void growsWhileLatencyHoldsAndShrinksWhenItClimbs() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 40, 2.0, 0.5, 10);
+        for (int window = 0; window < 50; window++) {
+            runWindow(limit, 1 * MILLI);
+        }
+        Assertions.assertEquals(40, limit.getLimit());
+
+        for (int window = 0; window < 2; window++) {
+            runWindow(limit, 10 * MILLI);
+        }
+        Assertions.assertTrue(limit.getLimit() < 25, "Limit was " + limit.getLimit());
+    }
+
+    /**
+     * Completing windows of one request at a time, far below the limit
+     *
+     * Expected Result:
+     *  The limit stays where it was, since idle windows say nothing about capacity
+     */
+    @Test
+    public void idleWindowsLeaveLimitAlone() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 40, 2.0, 0.5, 10);
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertTrue(limit.tryAcquire());
+            limit.release(MILLI);
+        }
+        Assertions.assertEquals(10, limit.getLimit());
+    }
+
+    /**
+     * Takes every permit the limit allows, then releases them all with the same latency, repeating until a window
+     * has been completed.
+     */
+    private static void runWindow(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+        int released = 0;
+        while (released < 10) {
+            int taken = 0;
+            while (limit.tryAcquire()) {
+                taken++;
+            }
+            for (int i = 0; i < taken; i++) {
+                limit.release(latencyNanos);
+            }
+            released += taken;
+        }
+    }
+}
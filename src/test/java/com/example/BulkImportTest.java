@@ -0,0 +1,161 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.TransferResult;
+import com.example.entity.Account;
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BulkImportTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/accounts/import?format=csv with two valid accounts, a blank
+     * username, a taken username and a short password
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: two rows imported and three rejected; the imported accounts can log in
+     */
+    @Test
+    public void importAccountsFromCsv() throws IOException, InterruptedException {
+        String csv = "username,password\n"
+                + "importeduser1,password1\n"
+                + ",password2\n"
+                + "testuser1,password3\n"
+                + "importeduser2,abc\n"
+                + "\"imported, user 3\",password4\n";
+        HttpResponse<String> response = importFile("accounts", "csv", csv);
+        Assertions.assertEquals(200, response.statusCode());
+        TransferResult result = objectMapper.readValue(response.body(), TransferResult.class);
+        Assertions.assertEquals(2, result.getRows());
+        Assertions.assertEquals(3, result.getRejectedRows());
+        Assertions.assertEquals(List.of("Row 2: Username cannot be blank.",
+                "Row 4: Password has to be at least 4 characters long.",
+                "Row 3: A user with this username already exists."), result.getRejections());
+
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"imported, user 3\",\"password\":\"password4\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> loginResponse = webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, loginResponse.statusCode());
+        Assertions.assertEquals("imported, user 3",
+                objectMapper.readValue(loginResponse.body(), Account.class).getUsername());
+    }
+
+    /**
+     * Reading GET localhost:8080/accounts/9998/messages, then sending POST localhost:8080/messages/import with one
+     * valid message, an unknown poster, a message over 255 characters and a malformed line
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one row imported and three rejected; the account's messages and statistics include the import
+     */
+    @Test
+    public void importMessagesFromNdjson() throws IOException, InterruptedException {
+        Assertions.assertEquals("[]", getBody("/accounts/9998/messages"));
+        String ndjson = "{\"postedBy\":9998,\"messageText\":\"imported message\",\"timePostedEpoch\":1669947800}\n"
+                + "{\"postedBy\":1234,\"messageText\":\"unknown poster\",\"timePostedEpoch\":1669947800}\n"
+                + "{\"postedBy\":9998,\"messageText\":\"" + "x".repeat(256) + "\",\"timePostedEpoch\":1669947800}\n"
+                + "{\"postedBy\":9998,\n";
+        HttpResponse<String> response = importFile("messages", "ndjson", ndjson);
+        Assertions.assertEquals(200, response.statusCode());
+        TransferResult result = objectMapper.readValue(response.body(), TransferResult.class);
+        Assertions.assertEquals(1, result.getRows());
+        Assertions.assertEquals(3, result.getRejectedRows());
+
+        List<Message> messages = objectMapper.readValue(getBody("/accounts/9998/messages"),
+                new TypeReference<List<Message>>() {});
+        Assertions.assertEquals(1, messages.size());
+        Assertions.assertEquals("imported message", messages.get(0).getMessageText());
+        Assertions.assertEquals(new AccountStats(9998, 1L, 1669947800L, 1669947800L),
+                objectMapper.readValue(getBody("/accounts/9998/stats"), AccountStats.class));
+    }
+
+    /**
+     * Exporting every message as CSV and importing the export again
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the three seeded messages are imported under new IDs, so six messages exist afterwards
+     */
+    @Test
+    public void importExportedCsv() throws IOException, InterruptedException {
+        String csv = getBody("/messages/export?format=csv");
+        HttpResponse<String> response = importFile("messages", "csv", csv);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(3, objectMapper.readValue(response.body(), TransferResult.class).getRows());
+        List<Message> messages = objectMapper.readValue(getBody("/messages"), new TypeReference<List<Message>>() {});
+        Assertions.assertEquals(6, messages.size());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/import?format=csv without a messageText column
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void importCsvWithoutRequiredColumns() throws IOException, InterruptedException {
+        HttpResponse<String> response = importFile("messages", "csv", "postedBy,timePostedEpoch\n9999,1669947800\n");
+        Assertions.assertEquals(400, response.statusCode());
+    }
+
+    private HttpResponse<String> importFile(String target, String format, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + target + "/import?format=" + format))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "text/csv")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String getBody(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response.body();
+    }
+}
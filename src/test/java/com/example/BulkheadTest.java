@@ -0,0 +1,120 @@
+package com.example;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.config.ReservedConnectionsDataSource;
+import com.example.exception.InvalidRequestException;
+import com.example.exception.TooManyRequestsException;
+import com.example.util.Bulkhead;
+import com.example.util.Bulkheaded;
+
+public class BulkheadTest {
+    ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    /**
+     * Occupying the single thread and the single queue slot of a bulkhead, then calling it once more
+     *
+     * Expected Result:
+     *  The extra call is rejected at once with TooManyRequestsException and counted; the occupied calls finish once
+     *  released
+     */
+    @Test
+    public void rejectsWhenThreadsAndQueueAreFull() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<String> running = callers.submit(() -> bulkhead.call(() -> {
+                started.countDown();
+                release.await();
+                return "first";
+            }));
+            started.await();
+            Future<String> queued = callers.submit(() -> bulkhead.call(() -> "second"));
+            while (bulkhead.getQueueDepth() == 0) {
+                Thread.sleep(1);
+            }
+
+            Assertions.assertThrows(TooManyRequestsException.class, () -> bulkhead.call(() -> "third"));
+            Assertions.assertEquals(1, bulkhead.getRejected());
+
+            release.countDown();
+            Assertions.assertEquals("first", running.get());
+            Assertions.assertEquals("second", queued.get());
+        } finally {
+            bulkhead.shutdown();
+        }
+    }
+
+    /**
+     * Calling a bulkhead from a task already running on a bulkhead thread, and from a task that throws
+     *
+     * Expected Result:
+     *  The nested call runs in place instead of waiting for the only thread, which it holds itself, and the task's
+     *  exception reaches the caller unwrapped
+     */
+    @Test
+    public void nestedCallsRunInPlaceAndExceptionsPassThrough() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("test", 1, 1);
+        try {
+            String threadName = bulkhead.call(() -> bulkhead.call(() -> Thread.currentThread().getName()));
+            Assertions.assertEquals("bulkhead-test-1", threadName);
+
+            Assertions.assertThrows(InvalidRequestException.class, () -> bulkhead.call(() -> {
+                throw new InvalidRequestException("invalid");
+            }));
+        } finally {
+            bulkhead.shutdown();
+        }
+    }
+
+    /**
+     * Borrowing the only shared connection of a pool with a reserve for the auth bulkhead, then borrowing another from
+     * the same thread and from an auth bulkhead thread, and closing the first connection
+     *
+     * Expected Result:
+     *  The second shared borrow times out while the auth thread still gets a connection; closing the first connection
+     *  twice gives its permit back once
+     */
+    @Test
+    public void authConnectionsAreReserved() throws Exception {
+        JdbcDataSource pool = new JdbcDataSource();
+        pool.setURL("jdbc:h2:mem:reserved");
+        ReservedConnectionsDataSource dataSource = new ReservedConnectionsDataSource(pool, Bulkheaded.AUTH, 1, 50);
+        Bulkhead auth = new Bulkhead(Bulkheaded.AUTH, 1, 1);
+        try {
+            Connection first = dataSource.getConnection();
+            Assertions.assertEquals(0, dataSource.getAvailableSharedConnections());
+            Assertions.assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            Assertions.assertTrue(auth.call(() -> {
+                try (Connection reserved = dataSource.getConnection()) {
+                    return reserved.isValid(1);
+                }
+            }));
+
+            first.close();
+            first.close();
+            Assertions.assertEquals(1, dataSource.getAvailableSharedConnections());
+            try (Connection second = dataSource.getConnection()) {
+                Assertions.assertTrue(second.isValid(1));
+            }
+        } finally {
+            auth.shutdown();
+        }
+    }
+}
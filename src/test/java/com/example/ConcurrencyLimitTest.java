@@ -0,0 +1,97 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.config.ConcurrencyLimitFilter;
+
+public class ConcurrencyLimitTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app with a write limit of one request in flight, and create
+     * a new webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.concurrency-limit.writes.initial-limit=1",
+                "--app.concurrency-limit.writes.max-limit=1", "--app.concurrency-limit.min-limit=1"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/accounts/import whose body stalls after the first row, and while
+     * it holds the only write permit, an http request to POST localhost:8080/messages; then the same request again once
+     * the import has finished
+     *
+     * Expected Response:
+     *  Status Code: 503 with Retry-After: 1 while the import runs, 200 for the import and the message afterwards
+     */
+    @Test
+    public void writesOverLimitAreShed() throws IOException, InterruptedException {
+        // The import is written by hand, so that its body can stop half-way for as long as the test needs
+        byte[] first = "{\"username\":\"slowimport\",\"password\":\"password1\"}\n".getBytes(StandardCharsets.UTF_8);
+        byte[] rest = "{\"username\":\"slowimport2\",\"password\":\"password2\"}\n".getBytes(StandardCharsets.UTF_8);
+        try (Socket importConnection = new Socket("localhost", 8080)) {
+            OutputStream out = importConnection.getOutputStream();
+            out.write(("POST /accounts/import HTTP/1.1\r\nHost: localhost:8080\r\n"
+                    + "Content-Type: application/x-ndjson\r\nContent-Length: " + (first.length + rest.length)
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(first);
+            out.flush();
+
+            while (app.getBean(ConcurrencyLimitFilter.class).getWriteLimit().getInFlight() == 0) {
+                Thread.sleep(10);
+            }
+            HttpResponse<String> shed = postMessage();
+            Assertions.assertEquals(503, shed.statusCode());
+            Assertions.assertEquals("1", shed.headers().firstValue("Retry-After").orElse(null));
+
+            out.write(rest);
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(importConnection.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Assertions.assertEquals("HTTP/1.1 200", in.readLine().substring(0, 12));
+        }
+        // The filter gives the permit back after the response has gone out
+        ConcurrencyLimitFilter filter = app.getBean(ConcurrencyLimitFilter.class);
+        while (filter.getWriteLimit().getInFlight() > 0) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(200, postMessage().statusCode());
+    }
+
+    private HttpResponse<String> postMessage() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"postedBy\":9999,\"messageText\": \"hello\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class ContentNegotiationTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient for interacting locally on
+     * the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with an Accept header of application/cbor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: CBOR representation of a list containing all messages retrieved from the database.
+     */
+    @Test
+    public void getAllMessagesAsCbor() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .header("Accept", "application/cbor")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        Assertions.assertEquals("application/cbor", response.headers().firstValue("Content-Type").orElse(null));
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        List<Message> actualResult = cborMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(seededMessages(), actualResult, "Expected="+seededMessages() + ", Actual="+actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/9999/messages with an Accept header of
+     * application/x-jackson-smile
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Smile representation of a list containing the messages posted by the account.
+     */
+    @Test
+    public void getAllMessagesFromUserAsSmile() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9999/messages"))
+                .header("Accept", "application/x-jackson-smile")
+                .build();
+        HttpResponse<byte[]> response = webClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+        ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+        List<Message> expectedResult = new ArrayList<Message>();
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        List<Message> actualResult = smileMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    private List<Message> seededMessages() {
+        List<Message> messages = new ArrayList<Message>();
+        messages.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        messages.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        messages.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        return messages;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class IdempotencyKeyTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending the same POST localhost:8080/messages request twice with the same Idempotency-Key
+     *
+     * Expected Response:
+     *  Status Code: 200 for both requests, with the same message in both bodies, and only one new message stored
+     */
+    @Test
+    public void createMessageRetriedWithSameKey() throws IOException, InterruptedException {
+        HttpRequest request = postMessageRequest("retry-key-1");
+        HttpResponse<String> first = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> second = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals(200, second.statusCode());
+        Message firstResult = objectMapper.readValue(first.body(), Message.class);
+        Message secondResult = objectMapper.readValue(second.body(), Message.class);
+        Assertions.assertEquals(firstResult, secondResult);
+        Assertions.assertEquals(4, countMessages(), "The retry should not have created a second message.");
+    }
+
+    /**
+     * Sending the same POST localhost:8080/messages request concurrently with the same Idempotency-Key
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request, all returning the same message
+     */
+    @Test
+    public void createMessageConcurrentDuplicates() throws IOException, InterruptedException {
+        HttpRequest request = postMessageRequest("retry-key-2");
+        CompletableFuture<HttpResponse<String>> first = webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> second = webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> third = webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        Message expected = objectMapper.readValue(first.join().body(), Message.class);
+        Assertions.assertEquals(expected, objectMapper.readValue(second.join().body(), Message.class));
+        Assertions.assertEquals(expected, objectMapper.readValue(third.join().body(), Message.class));
+        Assertions.assertEquals(4, countMessages(), "Concurrent duplicates should share one insert.");
+    }
+
+    /**
+     * Sending the same POST localhost:8080/register request twice with the same Idempotency-Key
+     *
+     * Expected Response:
+     *  Status Code: 200 for both requests instead of 409 for the retry
+     */
+    @Test
+    public void registerRetriedWithSameKey() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"user\",\"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", "register-key")
+                .build();
+        HttpResponse<String> first = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> second = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals(200, second.statusCode(), "Expected Status Code 200 - Actual Code was: " + second.statusCode());
+        Assertions.assertEquals(objectMapper.readValue(first.body(), Account.class),
+                objectMapper.readValue(second.body(), Account.class));
+    }
+
+    /**
+     * Reusing an Idempotency-Key for a different POST localhost:8080/messages request
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void createMessageKeyReusedForDifferentMessage() throws IOException, InterruptedException {
+        webClient.send(postMessageRequest("retry-key-3"), HttpResponse.BodyHandlers.ofString());
+        HttpRequest other = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\": \"another message\",\"timePostedEpoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", "retry-key-3")
+                .build();
+        HttpResponse<String> response = webClient.send(other, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, response.statusCode(), "Expected Status Code 400 - Actual Code was: " + response.statusCode());
+    }
+
+    private HttpRequest postMessageRequest(String idempotencyKey) {
+        String json = "{\"postedBy\":9999,\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", idempotencyKey)
+                .build();
+    }
+
+    private int countMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        List<Message> messages = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        return messages.size();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.util.KSortableIdGenerator;
+import com.example.util.LongHashSet;
+
+public class KSortableIdGeneratorTest {
+
+    /**
+     * Generating IDs on a fixed clock
+     *
+     * Expected Result:
+     *  The IDs carry the clock's millisecond and the node, and count up in the sequence bits
+     */
+    @Test
+    public void layout() {
+        long now = 1669947792000L;
+        KSortableIdGenerator generator = new KSortableIdGenerator(5, () -> now);
+        long first = generator.nextId();
+        long second = generator.nextId();
+        Assertions.assertEquals(now, KSortableIdGenerator.timestampMillis(first));
+        Assertions.assertEquals(5, KSortableIdGenerator.node(first));
+        Assertions.assertEquals(first + 1, second);
+        Assertions.assertEquals(KSortableIdGenerator.minIdAt(now) | 5 << 12, first);
+    }
+
+    /**
+     * Generating more IDs than one millisecond holds, then moving the clock backwards
+     *
+     * Expected Result:
+     *  The IDs keep increasing: the generator runs ahead into the next millisecond instead of repeating an ID
+     */
+    @Test
+    public void exhaustedSequenceAndClockGoingBack() {
+        AtomicLong clock = new AtomicLong(1669947792000L);
+        KSortableIdGenerator generator = new KSortableIdGenerator(1, clock::get);
+        long previous = -1;
+        for (int i = 0; i < 5000; i++) {
+            long id = generator.nextId();
+            Assertions.assertTrue(id > previous);
+            previous = id;
+        }
+        Assertions.assertEquals(1669947792001L, KSortableIdGenerator.timestampMillis(previous));
+
+        clock.addAndGet(-1000);
+        Assertions.assertTrue(generator.nextId() > previous);
+    }
+
+    /**
+     * Eight threads generating 100000 IDs each from one generator
+     *
+     * Expected Result:
+     *  Every ID is distinct and each thread sees its own IDs increase
+     */
+    @Test
+    public void concurrentIdsAreUnique() throws Exception {
+        KSortableIdGenerator generator = new KSortableIdGenerator(1023);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(threads.submit(() -> {
+                    long[] ids = new long[100_000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            LongHashSet seen = new LongHashSet();
+            for (Future<long[]> result : results) {
+                long[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    Assertions.assertTrue(i == 0 || ids[i] > ids[i - 1]);
+                    Assertions.assertTrue(seen.add(ids[i]), "duplicate ID " + ids[i]);
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessagePage;
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import com.example.repository.MessageArchive;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageArchiver;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageArchiveTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Path archiveDirectory;
+
+    /**
+     * Before every test, reset the database, restart the app with an empty archive directory, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException, IOException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        archiveDirectory = Files.createTempDirectory("archive-test");
+        String[] args = new String[] {"--app.archive.directory=" + archiveDirectory};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException, IOException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+        try (Stream<Path> files = Files.walk(archiveDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Archiving the seeded messages, then sending GET localhost:8080/messages, GET localhost:8080/messages/9999 and
+     * GET localhost:8080/accounts/9999/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the message table is empty, but the archived messages are still found by ID and by account
+     */
+    @Test
+    public void archivedMessagesAreStillReadable() throws IOException, InterruptedException {
+        Assertions.assertEquals(3, app.getBean(MessageArchiver.class).archiveOlderThan(1669947793L));
+        Assertions.assertEquals(1, app.getBean(MessageArchive.class).countSegments());
+
+        Assertions.assertEquals("[]", getBody("/messages"));
+        Message expected = new Message(9999, 9999, "test message 1", 1669947792L);
+        Assertions.assertEquals(expected, objectMapper.readValue(getBody("/messages/9999"), Message.class));
+        Assertions.assertEquals(List.of(expected), objectMapper.readValue(getBody("/accounts/9999/messages"),
+                new TypeReference<List<Message>>() {}));
+        Assertions.assertEquals("", getBody("/messages/9998"));
+    }
+
+    /**
+     * Posting a new message for account 9999, archiving the seeded messages, then sending
+     * GET localhost:8080/accounts/9999/messages and GET localhost:8080/accounts/9999/stats
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the archived and the recent message, and statistics covering both
+     */
+    @Test
+    public void accountReadsSpanBothTiers() throws IOException, InterruptedException {
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\":\"recent message\",\"timePostedEpoch\":1669947900}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assertions.assertEquals(3, app.getBean(MessageArchiver.class).archiveOlderThan(1669947793L));
+
+        List<Message> messages = objectMapper.readValue(getBody("/accounts/9999/messages"),
+                new TypeReference<List<Message>>() {});
+        Assertions.assertEquals(2, messages.size());
+        Assertions.assertEquals("test message 1", messages.get(0).getMessageText());
+        Assertions.assertEquals("recent message", messages.get(1).getMessageText());
+        Assertions.assertEquals(new AccountStats(9999, 2L, 1669947792L, 1669947900L),
+                objectMapper.readValue(getBody("/accounts/9999/stats"), AccountStats.class));
+    }
+
+    /**
+     * Posting a new message for account 9999, archiving the seeded messages, then sending
+     * GET localhost:8080/messages?postedBy=9999,9997&limit=2 and following its nextCursor
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the recent message and archived message 9999 on the first page, archived message 9997 on the
+     *  second, with no nextCursor after it
+     */
+    @Test
+    public void timelineSpansBothTiers() throws IOException, InterruptedException {
+        Assertions.assertEquals(200, send("POST", "/messages",
+                "{\"postedBy\":9999,\"messageText\":\"recent message\",\"timePostedEpoch\":1669947900}")
+                .statusCode());
+        app.getBean(MessageArchiver.class).archiveOlderThan(1669947793L);
+
+        MessagePage first = objectMapper.readValue(getBody("/messages?postedBy=9999,9997&limit=2"), MessagePage.class);
+        Assertions.assertEquals(2, first.getMessages().size());
+        Assertions.assertEquals("recent message", first.getMessages().get(0).getMessageText());
+        Assertions.assertEquals(new Message(9999, 9999, "test message 1", 1669947792L), first.getMessages().get(1));
+        Assertions.assertNotNull(first.getNextCursor());
+
+        MessagePage second = objectMapper.readValue(
+                getBody("/messages?postedBy=9999,9997&limit=2&cursor=" + first.getNextCursor()), MessagePage.class);
+        Assertions.assertEquals(List.of(new Message(9997, 9997, "test message 2", 1669947792L)),
+                second.getMessages());
+        Assertions.assertNull(second.getNextCursor());
+    }
+
+    /**
+     * Archiving the seeded messages and opening the archive directory again, as happens at startup
+     *
+     * Expected Response:
+     *  The completed segment is loaded with its index, so counts, statistics and lookups by ID are unchanged
+     */
+    @Test
+    public void archiveIsReopenedAtStartup() throws IOException, InterruptedException {
+        app.getBean(MessageArchiver.class).archiveOlderThan(1669947793L);
+        MessageArchive reopened = new MessageArchive(archiveDirectory.toString(),
+                app.getBean(MessageRepository.class));
+        reopened.open();
+        try {
+            Assertions.assertEquals(3, reopened.countMessages());
+            Assertions.assertEquals(new AccountStats(9997, 1L, 1669947792L, 1669947792L),
+                    reopened.aggregateStatsForPostedBy(9997));
+            Assertions.assertEquals("test message 3", reopened.findById(9996).orElseThrow().getMessageText());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    /**
+     * Archiving the seeded messages, then sending DELETE localhost:8080/messages/9999 twice, PATCH
+     * localhost:8080/messages/9997 and reads of the deleted message, and opening the archive directory again
+     *
+     * Expected Response:
+     *  Status Code: 200, and 400 for the PATCH
+     *  Response Body: 1 for the first DELETE and empty for the second; the deleted message is no longer found by ID, by
+     *  account or in the statistics, also after reopening
+     */
+    @Test
+    public void archivedMessagesCanBeDeleted() throws IOException, InterruptedException {
+        app.getBean(MessageArchiver.class).archiveOlderThan(1669947793L);
+
+        Assertions.assertEquals("1", send("DELETE", "/messages/9999").body());
+        Assertions.assertEquals("", send("DELETE", "/messages/9999").body());
+        Assertions.assertEquals(400, send("PATCH", "/messages/9997").statusCode());
+        Assertions.assertEquals("", getBody("/messages/9999"));
+        Assertions.assertEquals("[]", getBody("/accounts/9999/messages"));
+        Assertions.assertEquals(new AccountStats(9999, 0L, null, null),
+                objectMapper.readValue(getBody("/accounts/9999/stats"), AccountStats.class));
+
+        MessageArchive reopened = new MessageArchive(archiveDirectory.toString(),
+                app.getBean(MessageRepository.class));
+        reopened.open();
+        try {
+            Assertions.assertTrue(reopened.findById(9999).isEmpty());
+            Assertions.assertEquals(new AccountStats(9999, 0L, null, null), reopened.aggregateStatsForPostedBy(9999));
+            Assertions.assertEquals(2, reopened.aggregateStatsByPostedBy().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+        return send(method, path, "{\"messageText\":\"edited\"}");
+    }
+
+    private HttpResponse<String> send(String method, String path, String json)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String getBody(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response.body();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageExportTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/export
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: one JSON message per line, ordered by messageId
+     */
+    @Test
+    public void exportAllAsNdjson() throws IOException, InterruptedException {
+        HttpResponse<String> response = export("");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElse(null));
+        List<Message> actualResult = new ArrayList<>();
+        for (String line : response.body().split("\n")) {
+            actualResult.add(objectMapper.readValue(line, Message.class));
+        }
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(9996, 9996, "test message 3", 1669947792L));
+        expectedResult.add(new Message(9997, 9997, "test message 2", 1669947792L));
+        expectedResult.add(new Message(9999, 9999, "test message 1", 1669947792L));
+        Assertions.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Posting a message with commas, quotes and a newline, then sending GET
+     * localhost:8080/messages/export?format=csv&postedBy=9998&from=1669947793
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a header line and the one matching message, quoted as CSV requires
+     */
+    @Test
+    public void exportFilteredAsCsv() throws IOException, InterruptedException {
+        String json = "{\"postedBy\":9998,\"messageText\": \"she said \\\"hi\\\",\\nthen left\",\"timePostedEpoch\": 1669947800}";
+        HttpRequest postRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        Message created = objectMapper.readValue(
+                webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).body(), Message.class);
+
+        HttpResponse<String> response = export("?format=csv&postedBy=9998&from=1669947793");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("messageId,postedBy,messageText,timePostedEpoch\n"
+                + created.getMessageId() + ",9998,\"she said \"\"hi\"\",\nthen left\",1669947800\n", response.body());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/export?to=1669947792 (nothing before that time)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: empty
+     */
+    @Test
+    public void exportEmptyRange() throws IOException, InterruptedException {
+        HttpResponse<String> response = export("?to=1669947792");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("", response.body());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/export?format=xml
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void exportUnsupportedFormat() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, export("?format=xml").statusCode());
+    }
+
+    private HttpResponse<String> export(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/export" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
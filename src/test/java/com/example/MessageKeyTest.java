@@ -0,0 +1,126 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.example.util.KSortableIdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MessageKeyTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/9996 and GET localhost:8080/messages/9999, seeded without
+     * a messageKey
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages with keys backfilled at startup from their post time and ID, as JSON strings
+     */
+    @Test
+    public void seededMessagesAreBackfilled() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("http://localhost:8080/messages/9996");
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(objectMapper.readTree(response.body()).get("messageKey").isTextual());
+        long first = objectMapper.readValue(response.body(), Message.class).getMessageKey();
+        long second = objectMapper.readValue(get("http://localhost:8080/messages/9999").body(), Message.class)
+                .getMessageKey();
+        Assertions.assertEquals(1669947792000L, KSortableIdGenerator.timestampMillis(first));
+        Assertions.assertEquals(KSortableIdGenerator.minIdAt(1669947792000L) + 9996, first);
+        Assertions.assertEquals(first + 3, second);
+    }
+
+    /**
+     * Sending two http requests to POST localhost:8080/messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: messages whose keys increase in creation order, above every backfilled key, and carry the
+     *  time they were created
+     */
+    @Test
+    public void createdMessagesGetIncreasingKeys() throws IOException, InterruptedException {
+        long before = System.currentTimeMillis();
+        Message first = create("first");
+        Message second = create("second");
+        long after = System.currentTimeMillis();
+
+        Assertions.assertTrue(second.getMessageKey() > first.getMessageKey());
+        long seeded = objectMapper.readValue(get("http://localhost:8080/messages/9999").body(), Message.class)
+                .getMessageKey();
+        Assertions.assertTrue(first.getMessageKey() > seeded);
+        long created = KSortableIdGenerator.timestampMillis(first.getMessageKey());
+        Assertions.assertTrue(created >= before && created <= after, "created at " + created);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages whose body carries the messageKey of message 9999
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the created message with a newly generated key instead of the one sent
+     */
+    @Test
+    public void clientMessageKeyIsReplaced() throws IOException, InterruptedException {
+        long seeded = objectMapper.readValue(get("http://localhost:8080/messages/9999").body(), Message.class)
+                .getMessageKey();
+        Message created = create("borrowed key", "\"messageKey\":\"" + seeded + "\",");
+        Assertions.assertNotEquals(seeded, created.getMessageKey());
+        Assertions.assertTrue(created.getMessageKey() > seeded);
+    }
+
+    private Message create(String text) throws IOException, InterruptedException {
+        return create(text, "");
+    }
+
+    private Message create(String text, String extraFields) throws IOException, InterruptedException {
+        String json = "{" + extraFields + "\"postedBy\":9999,\"messageText\": \"" + text
+                + "\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,81 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+public class MessageRateLimitTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database and restart the app with a bucket of two messages that practically never
+     * refills, then create a new webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {"--app.rate-limit.messages.capacity=2",
+                "--app.rate-limit.messages.refill-per-second=0.001"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending three http requests to POST localhost:8080/messages for the same account
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first two requests, then 429 with a Retry-After header
+     */
+    @Test
+    public void createMessageOverRateLimit() throws IOException, InterruptedException {
+        Assertions.assertEquals(200, postMessage(9999).statusCode());
+        Assertions.assertEquals(200, postMessage(9999).statusCode());
+        HttpResponse<String> response = postMessage(9999);
+        int status = response.statusCode();
+        Assertions.assertEquals(429, status, "Expected Status Code 429 - Actual Code was: " + status);
+        Assertions.assertTrue(response.headers().firstValue("Retry-After").isPresent());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages after another account has used up its bucket
+     *
+     * Expected Response:
+     *  Status Code: 200
+     */
+    @Test
+    public void createMessageOtherAccountNotThrottled() throws IOException, InterruptedException {
+        postMessage(9999);
+        postMessage(9999);
+        postMessage(9999);
+        HttpResponse<String> response = postMessage(9998);
+        int status = response.statusCode();
+        Assertions.assertEquals(200, status, "Expected Status Code 200 - Actual Code was: " + status);
+    }
+
+    private HttpResponse<String> postMessage(int postedBy) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + postedBy + ",\"messageText\": \"hello message\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessageBatch;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MultiGetMessagesTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?ids=9999,1,9996,9999
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: messages 9999 and 9996 in that order, and 1 as missing
+     */
+    @Test
+    public void getMessagesByIdsInRequestOrder() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?ids=9999,1,9996,9999"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        MessageBatch expectedResult = new MessageBatch(List.of(
+                new Message(9999, 9999, "test message 1", 1669947792L),
+                new Message(9996, 9996, "test message 3", 1669947792L)), List.of(1));
+        Assertions.assertEquals(expectedResult, objectMapper.readValue(response.body(), MessageBatch.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/lookup with the IDs [9997, 2]
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: message 9997, and 2 as missing
+     */
+    @Test
+    public void lookupMessagesFromBody() throws IOException, InterruptedException {
+        HttpResponse<String> response = lookup("[9997,2]");
+        Assertions.assertEquals(200, response.statusCode());
+        MessageBatch expectedResult = new MessageBatch(
+                List.of(new Message(9997, 9997, "test message 2", 1669947792L)), List.of(2));
+        Assertions.assertEquals(expectedResult, objectMapper.readValue(response.body(), MessageBatch.class));
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages/lookup with more IDs than one request may ask for
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void lookupTooManyMessages() throws IOException, InterruptedException {
+        String ids = IntStream.rangeClosed(1, 1001).mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        Assertions.assertEquals(400, lookup(ids).statusCode());
+    }
+
+    private HttpResponse<String> lookup(String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/lookup"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class NearDuplicateTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Reset the database, restart the app with the given near-duplicate policy and a threshold of two, and create a
+     * new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    private void start(String policy) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.messages.near-duplicates.policy=" + policy,
+                "--app.messages.near-duplicates.threshold=2"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        if (app != null) {
+            SpringApplication.exit(app);
+        }
+    }
+
+    /**
+     * Starting the app with a near-duplicate threshold of 9 and a capacity of 1, which leaves every ring of the index
+     * its minimum depth of 8
+     *
+     * Expected Result:
+     *  Startup fails, since no text could ever be counted as repeated 9 times
+     */
+    @Test
+    public void thresholdBeyondRingDepthIsRefused() {
+        String[] args = new String[] {"--app.messages.near-duplicates.threshold=9",
+                "--app.messages.near-duplicates.capacity=1"};
+        Exception e = Assertions.assertThrows(Exception.class, () -> SpringApplication.run(SocialMediaApp.class, args));
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        Assertions.assertTrue(cause instanceof IllegalArgumentException, cause.toString());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages with the same text, varied in case and punctuation, from
+     * three accounts, then with an unrelated text, under the REJECT policy
+     *
+     * Expected Response:
+     *  Status Code: 200 for the first two, 400 for the third, which nearly repeats two recent messages, and 200 for
+     *  the unrelated text
+     */
+    @Test
+    public void rejectNearDuplicates() throws IOException, InterruptedException {
+        start("REJECT");
+        Assertions.assertEquals(200, post(9999, "Get 1000 free followers now at spam dot example!!!").statusCode());
+        Assertions.assertEquals(200, post(9998, "GET 1000 FREE FOLLOWERS NOW at spam dot example").statusCode());
+        Assertions.assertEquals(400, post(9997, "get 1000 free followers now, at spam-dot-example?").statusCode());
+        Assertions.assertEquals(200, post(9996, "Lovely weather for a walk along the river today").statusCode());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages with the same text three times under the FLAG policy
+     *
+     * Expected Response:
+     *  Status Code: 200 for all three; only the third message is flagged in the message table
+     */
+    @Test
+    public void flagNearDuplicates() throws IOException, InterruptedException {
+        start("FLAG");
+        int[] messageIds = new int[3];
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> response = post(9999, "Get 1000 free followers now at spam dot example!!!");
+            Assertions.assertEquals(200, response.statusCode());
+            messageIds[i] = objectMapper.readValue(response.body(), Message.class).getMessageId();
+        }
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(i == 2, jdbcTemplate.queryForObject(
+                    "SELECT flagged FROM message WHERE messageId = ?", Boolean.class, messageIds[i]));
+        }
+    }
+
+    private HttpResponse<String> post(int postedBy, String messageText) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + postedBy + ",\"messageText\": \"" + messageText
+                + "\",\"timePostedEpoch\": 1669947792}";
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+public class OptimisticEditTest {
+    ApplicationContext app;
+    HttpClient webClient;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient for interacting locally on
+     * the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/9999, then PATCH localhost:8080/messages/9999 twice with
+     * the ETag it returned in If-Match
+     *
+     * Expected Response:
+     *  Status Code: 200 with ETag "0" for the read, 200 with ETag "1" for the first edit, and 412 for the second edit,
+     *  whose If-Match is stale by then
+     *  Response Body: the first edit's text stays
+     */
+    @Test
+    public void staleIfMatchIsRejected() throws IOException, InterruptedException {
+        HttpResponse<String> read = get();
+        Assertions.assertEquals(200, read.statusCode());
+        String etag = read.headers().firstValue("ETag").orElseThrow();
+        Assertions.assertEquals("\"0\"", etag);
+
+        HttpResponse<String> first = patch("first edit", etag);
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals("1", first.body());
+        Assertions.assertEquals("\"1\"", first.headers().firstValue("ETag").orElseThrow());
+
+        HttpResponse<String> second = patch("second edit", etag);
+        Assertions.assertEquals(412, second.statusCode());
+
+        Assertions.assertTrue(get().body().contains("first edit"));
+        Assertions.assertEquals(1.0, app.getBean(MeterRegistry.class).counter("messages.edit.conflicts").count());
+    }
+
+    /**
+     * Sending an http request to PATCH localhost:8080/messages/9999 twice without If-Match
+     *
+     * Expected Response:
+     *  Status Code: 200 for both, with ETags "1" and "2"
+     */
+    @Test
+    public void editWithoutIfMatchTakesCurrentVersion() throws IOException, InterruptedException {
+        HttpResponse<String> first = patch("first edit", null);
+        Assertions.assertEquals(200, first.statusCode());
+        Assertions.assertEquals("\"1\"", first.headers().firstValue("ETag").orElseThrow());
+
+        HttpResponse<String> second = patch("second edit", null);
+        Assertions.assertEquals(200, second.statusCode());
+        Assertions.assertEquals("\"2\"", second.headers().firstValue("ETag").orElseThrow());
+    }
+
+    /**
+     * Sending an http request to PATCH localhost:8080/messages/9999 with an If-Match that is not an ETag
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void malformedIfMatchIsRejected() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, patch("edit", "\"abc\"").statusCode());
+    }
+
+    private HttpResponse<String> get() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> patch(String messageText, String ifMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/9999"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"" + messageText + "\"}"))
+                .header("Content-Type", "application/json");
+        if (ifMatch != null) {
+            request.header("If-Match", ifMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.dto.MessageLikes;
+import com.example.service.ReactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ReactionTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app with the scheduled flush effectively switched off, and
+     * create a new webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.likes.flush-interval-ms=3600000"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending PUT localhost:8080/messages/9999/likes/9998 twice, then PUT .../likes/9997
+     *
+     * Expected Response:
+     *  Status Code: 200 each time; the repeated like is not counted again
+     */
+    @Test
+    public void likeIsCountedOncePerAccount() throws IOException, InterruptedException {
+        Assertions.assertEquals(new MessageLikes(9999, 1), send("PUT", "/messages/9999/likes/9998"));
+        Assertions.assertEquals(new MessageLikes(9999, 1), send("PUT", "/messages/9999/likes/9998"));
+        Assertions.assertEquals(new MessageLikes(9999, 2), send("PUT", "/messages/9999/likes/9997"));
+        Assertions.assertEquals(new MessageLikes(9999, 2), send("GET", "/messages/9999/likes"));
+    }
+
+    /**
+     * Liking, unliking and liking again around flushes
+     *
+     * Expected Result:
+     *  The stored rows and counts match the API once flushed, and a flush never counts a like twice
+     */
+    @Test
+    public void flushWritesLikesAndCounts() throws IOException, InterruptedException {
+        ReactionService reactionService = app.getBean(ReactionService.class);
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        send("PUT", "/messages/9997/likes/9999");
+        send("PUT", "/messages/9997/likes/9998");
+        reactionService.flush();
+        Assertions.assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT likeCount FROM message_like_count WHERE messageId = 9997", Long.class));
+        Assertions.assertEquals(new MessageLikes(9997, 2), send("GET", "/messages/9997/likes"));
+
+        Assertions.assertEquals(new MessageLikes(9997, 1), send("DELETE", "/messages/9997/likes/9999"));
+        reactionService.flush();
+        Assertions.assertEquals(1L, jdbcTemplate.queryForObject(
+                "SELECT likeCount FROM message_like_count WHERE messageId = 9997", Long.class));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM message_like WHERE messageId = 9997", Integer.class));
+        Assertions.assertEquals(new MessageLikes(9997, 1), send("GET", "/messages/9997/likes"));
+    }
+
+    /**
+     * Liking a message that another instance sharing the database has already stored the same like for, then flushing
+     *
+     * Expected Result:
+     *  The flush succeeds without counting the like twice, and later likes are still flushed
+     */
+    @Test
+    public void flushSkipsLikesStoredElsewhere() throws IOException, InterruptedException {
+        ReactionService reactionService = app.getBean(ReactionService.class);
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO message_like (messageId, accountId) VALUES (9999, 9998)");
+        jdbcTemplate.update("INSERT INTO message_like_count (messageId, likeCount) VALUES (9999, 1)");
+        send("PUT", "/messages/9999/likes/9998");
+        reactionService.flush();
+        Assertions.assertEquals(new MessageLikes(9999, 1), send("GET", "/messages/9999/likes"));
+
+        send("PUT", "/messages/9999/likes/9997");
+        reactionService.flush();
+        Assertions.assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT likeCount FROM message_like_count WHERE messageId = 9999", Long.class));
+        Assertions.assertEquals(new MessageLikes(9999, 2), send("GET", "/messages/9999/likes"));
+    }
+
+    /**
+     * Sending PUT localhost:8080/messages/1234/likes/9999 (message does NOT exist)
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void likeMessageNotFound() throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request("PUT", "/messages/1234/likes/9999"),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, response.statusCode());
+    }
+
+    /**
+     * Deleting a liked message
+     *
+     * Expected Result:
+     *  Its stored likes are removed with it
+     */
+    @Test
+    public void deletingMessageDropsItsLikes() throws IOException, InterruptedException {
+        send("PUT", "/messages/9996/likes/9999");
+        app.getBean(ReactionService.class).flush();
+        HttpResponse<String> response = webClient.send(request("DELETE", "/messages/9996"),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        JdbcTemplate jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM message_like WHERE messageId = 9996", Integer.class));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM message_like_count WHERE messageId = 9996", Integer.class));
+    }
+
+    private MessageLikes send(String method, String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = webClient.send(request(method, path), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readValue(response.body(), MessageLikes.class);
+    }
+
+    private HttpRequest request(String method, String path) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+}
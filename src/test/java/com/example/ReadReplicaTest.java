@@ -0,0 +1,111 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.config.H2ReplicaFeeder;
+import com.example.config.ReplicaLagMonitor;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ReadReplicaTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    H2ReplicaFeeder feeder;
+
+    /**
+     * Before every test, restart the app with a second in-memory H2 database as its read replica. The scheduled feed
+     * is effectively switched off so that each test decides when the replica catches up.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.datasource.replica.url=jdbc:h2:mem:replicadb",
+                "--app.datasource.replica.feed-from-primary=true",
+                "--app.datasource.replica.feed-interval-ms=3600000"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        feeder = app.getBean(H2ReplicaFeeder.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Inserting a message directly into the primary, then sending GET localhost:8080/messages/{messageId} before and
+     * after the replica is fed
+     *
+     * Expected Response:
+     *  Status Code: 200 both times, with an empty body while the replica is stale and the message afterwards
+     */
+    @Test
+    public void readsServedByReplica() throws IOException, InterruptedException {
+        feeder.feed();
+        Assertions.assertTrue(app.getBean(ReplicaLagMonitor.class).isReplicaCaughtUp());
+        new JdbcTemplate(app.getBean("primaryDataSource", DataSource.class))
+                .update("insert into message (messageId, postedBy, messageText, timePostedEpoch) "
+                        + "values (5000, 9999, 'written behind the replica', 1669947792)");
+
+        HttpResponse<String> stale = getMessage(5000);
+        Assertions.assertEquals(200, stale.statusCode());
+        Assertions.assertTrue(stale.body().isEmpty(), "The replica should not have the message yet.");
+
+        feeder.feed();
+        HttpResponse<String> fresh = getMessage(5000);
+        Assertions.assertEquals(200, fresh.statusCode());
+        Message expectedResult = new Message(5000, 9999, "written behind the replica", 1669947792L);
+        Assertions.assertEquals(expectedResult, objectMapper.readValue(fresh.body(), Message.class));
+    }
+
+    /**
+     * Registering an account and logging in with it before the replica has caught up
+     *
+     * Expected Response:
+     *  Status Code: 200 for the login, because reads fall back to the primary after a write
+     */
+    @Test
+    public void loginRightAfterRegisterReadsPrimary() throws IOException, InterruptedException {
+        feeder.feed();
+        String json = "{\"username\": \"replicauser\",\"password\": \"password\"}";
+        HttpResponse<String> register = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, register.statusCode());
+
+        HttpResponse<String> login = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, login.statusCode(), "Expected Status Code 200 - Actual Code was: " + login.statusCode());
+        Assertions.assertFalse(app.getBean(ReplicaLagMonitor.class).isReplicaCaughtUp());
+    }
+
+    private HttpResponse<String> getMessage(int messageId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,115 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SessionTokenTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Reset the database, restart the app with the given arguments, and create a new webClient and ObjectMapper for
+     * interacting locally on the web.
+     * @throws InterruptedException
+     */
+    private void start(String... args) throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login, then to POST localhost:8080/messages without postedBy and
+     * with the returned session token
+     *
+     * Expected Response:
+     *  Status Code: 200 for both
+     *  Response Header: Session-Token on the login
+     *  Response Body: the created message, posted by the logged-in account
+     */
+    @Test
+    public void createMessageWithSessionToken() throws IOException, InterruptedException {
+        start();
+        String token = login();
+        HttpResponse<String> response = post("{\"messageText\": \"hello from a session\",\"timePostedEpoch\": 1669947792}",
+                "Bearer " + token);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals(9999, objectMapper.readValue(response.body(), Message.class).getPostedBy());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/messages with a session token whose signature was altered, with a
+     * token of another account than postedBy, and with a non-Bearer Authorization header
+     *
+     * Expected Response:
+     *  Status Code: 401 for the altered token, 400 for the mismatched poster and 401 for the wrong scheme
+     */
+    @Test
+    public void createMessageWithBadSessionToken() throws IOException, InterruptedException {
+        start();
+        String token = login();
+        char last = token.charAt(token.length() - 1);
+        String forged = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+        String body = "{\"messageText\": \"hello from a session\",\"timePostedEpoch\": 1669947792}";
+        Assertions.assertEquals(401, post(body, "Bearer " + forged).statusCode());
+        Assertions.assertEquals(401, post(body, "Bearer 9998" + token.substring(4)).statusCode());
+        Assertions.assertEquals(400, post("{\"postedBy\":9998,\"messageText\": \"hello from a session\"}",
+                "Bearer " + token).statusCode());
+        Assertions.assertEquals(401, post(body, "Basic " + token).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages with a session token that has expired
+     *
+     * Expected Response:
+     *  Status Code: 401
+     */
+    @Test
+    public void createMessageWithExpiredSessionToken() throws IOException, InterruptedException {
+        start("--app.sessions.ttl-seconds=0");
+        String token = login();
+        Assertions.assertEquals(401, post("{\"messageText\": \"hello from a session\"}", "Bearer " + token)
+                .statusCode());
+    }
+
+    private String login() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser1\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        return response.headers().firstValue("Session-Token").orElseThrow();
+    }
+
+    private HttpResponse<String> post(String json, String authorization) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .header("Authorization", authorization)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
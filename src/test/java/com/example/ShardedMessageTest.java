@@ -0,0 +1,148 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.Message;
+import com.example.repository.MessageShard;
+import com.example.repository.MessageShards;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ShardedMessageTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    MessageShards shards;
+
+    /**
+     * Before every test, restart the app with the message table spread over three in-memory H2 databases.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.sharding.enabled=true",
+                "--app.sharding.urls=jdbc:h2:mem:shard0,jdbc:h2:mem:shard1,jdbc:h2:mem:shard2"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        shards = app.getBean(MessageShards.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Posting messages for four accounts and checking where they were stored
+     *
+     * Expected Response:
+     *  Every message lives only on its poster's shard, and its ID modulo the shard count is that shard's index
+     */
+    @Test
+    public void messagesPlacedOnPosterShard() throws IOException, InterruptedException {
+        for (int postedBy = 9996; postedBy <= 9999; postedBy++) {
+            Message created = postMessage(postedBy, "sharded message", 1669947800L);
+            MessageShard shard = shards.forPostedBy(postedBy);
+            Assertions.assertEquals(shard.getIndex(), created.getMessageId() % shards.count());
+            for (MessageShard other : shards.all()) {
+                Integer rows = new JdbcTemplate(other.getDataSource()).queryForObject(
+                        "select count(*) from message where messageId = ?", Integer.class, created.getMessageId());
+                Assertions.assertEquals(other == shard ? 1 : 0, rows);
+            }
+        }
+    }
+
+    /**
+     * Sending GET localhost:8080/messages after posting messages across shards out of time order
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: all messages from every shard, ordered by timePostedEpoch
+     */
+    @Test
+    public void getAllMessagesMergedByTime() throws IOException, InterruptedException {
+        List<Message> expectedResult = new ArrayList<Message>();
+        Message third = postMessage(9999, "third", 1669947803L);
+        Message first = postMessage(9998, "first", 1669947801L);
+        Message fourth = postMessage(9997, "fourth", 1669947804L);
+        Message second = postMessage(9996, "second", 1669947802L);
+        expectedResult.add(first);
+        expectedResult.add(second);
+        expectedResult.add(third);
+        expectedResult.add(fourth);
+
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode());
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(expectedResult, actualResult, "Expected="+expectedResult + ", Actual="+actualResult);
+    }
+
+    /**
+     * Reading, updating and deleting a sharded message by ID, and reading an account's messages
+     *
+     * Expected Response:
+     *  Status Code: 200 for every request, with the changes visible afterwards
+     */
+    @Test
+    public void messageLifecycleOnShard() throws IOException, InterruptedException {
+        Message created = postMessage(9997, "before update", 1669947800L);
+        String messageUri = "http://localhost:8080/messages/" + created.getMessageId();
+
+        HttpResponse<String> patch = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create(messageUri))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"messageText\": \"after update\"}"))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, patch.statusCode());
+
+        HttpResponse<String> byAccount = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/9997/messages"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        List<Message> accountMessages = objectMapper.readValue(byAccount.body(), new TypeReference<List<Message>>(){});
+        Assertions.assertEquals(1, accountMessages.size());
+        Assertions.assertEquals("after update", accountMessages.get(0).getMessageText());
+
+        HttpResponse<String> delete = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create(messageUri))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals("1", delete.body());
+
+        HttpResponse<String> get = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create(messageUri))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, get.statusCode());
+        Assertions.assertTrue(get.body().isEmpty(), "The deleted message should be gone.");
+    }
+
+    private Message postMessage(int postedBy, String text, long timePostedEpoch) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + postedBy + ",\"messageText\": \"" + text + "\",\"timePostedEpoch\": "
+                + timePostedEpoch + "}";
+        HttpResponse<String> response = webClient.send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, response.statusCode(), response.body());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.example.util.SimHashIndex;
+
+public class SimHashIndexTest {
+
+    private static final int CAPACITY = 100_000;
+
+    /**
+     * Building an index of the default capacity for every allowed max-distance
+     *
+     * Expected Result:
+     *  Each band holds about capacity fingerprints, however wide its bands are, and a lookup reads at most a few
+     *  hundred slots per band
+     */
+    @Test
+    public void sizeFollowsCapacity() {
+        for (int maxDistance = 0; maxDistance <= 7; maxDistance++) {
+            SimHashIndex index = new SimHashIndex(CAPACITY, 60_000, maxDistance);
+            int bands = maxDistance + 1;
+            String label = "max-distance " + maxDistance;
+            Assertions.assertTrue(index.getSlots() >= (long) bands * CAPACITY, label);
+            Assertions.assertTrue(index.getSlots() <= (long) bands * CAPACITY * 101 / 100, label);
+            // The 8-bit bands at max-distance 7 have 256 values, so their rings are capacity / 256 deep
+            Assertions.assertTrue(index.getSlotsPerLookup() <= bands * 400, label);
+            Assertions.assertTrue(index.getMinDepth() >= 64, label);
+        }
+        Assertions.assertEquals(8, new SimHashIndex(1, 60_000, 0).getSlots());
+    }
+
+    /**
+     * Filling an index of the default capacity with random fingerprints for every allowed max-distance, then adding
+     * one fingerprint three times and looking up a variant that differs in max-distance bits, and its complement
+     *
+     * Expected Result:
+     *  The variant finds the three copies and the complement finds none; each lookup takes well under a millisecond
+     */
+    @Test
+    public void lookupsFindNearEntriesQuickly() {
+        Random random = new Random(42);
+        for (int maxDistance = 0; maxDistance <= 7; maxDistance++) {
+            SimHashIndex index = new SimHashIndex(CAPACITY, 60_000, maxDistance);
+            long now = 1669947792000L;
+            for (int i = 0; i < CAPACITY; i++) {
+                index.addAndCount(random.nextLong(), now, 1);
+            }
+            long fingerprint = random.nextLong();
+            for (int i = 0; i < 3; i++) {
+                index.addAndCount(fingerprint, now, 10);
+            }
+            long variant = fingerprint ^ ((1L << maxDistance) - 1);
+
+            int lookups = 10_000;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                index.addAndCount(random.nextLong(), now, 10);
+            }
+            long nanosPerLookup = (System.nanoTime() - start) / lookups;
+
+            Assertions.assertEquals(3, index.addAndCount(variant, now, 10), "max-distance " + maxDistance);
+            Assertions.assertEquals(0, index.addAndCount(~fingerprint, now, 10), "max-distance " + maxDistance);
+            Assertions.assertTrue(nanosPerLookup < 200_000, "max-distance " + maxDistance + ": " + nanosPerLookup);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.exception.TooManyRequestsException;
+import com.example.util.SingleFlight;
+
+public class SingleFlightTest {
+    ExecutorService callers;
+
+    @BeforeEach
+    public void setUp() {
+        callers = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+    }
+
+    /**
+     * Eight callers ask for the same key while the first load is held open
+     *
+     * Expected Result:
+     *  The loader runs once and every caller gets its value
+     */
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        List<Future<String>> results = startCallers(flight, 8, () -> {
+            loads.incrementAndGet();
+            await(release);
+            return "value";
+        });
+        waitForWaiters(flight, 7);
+        release.countDown();
+        for (Future<String> result : results) {
+            Assertions.assertEquals("value", result.get(5, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(1, flight.getLoads());
+        Assertions.assertEquals(7, flight.getShared());
+
+        // Nothing is remembered once the load has finished
+        Assertions.assertEquals("again", flight.execute(1, () -> "again"));
+    }
+
+    /**
+     * The shared load fails
+     *
+     * Expected Result:
+     *  Every caller sees the load's exception, and the next call loads again
+     */
+    @Test
+    public void failureReachesEveryCaller() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>(5000);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = startCallers(flight, 4, () -> {
+            await(release);
+            throw new IllegalArgumentException("load failed");
+        });
+        waitForWaiters(flight, 3);
+        release.countDown();
+        for (Future<String> result : results) {
+            Exception e = Assertions.assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            Assertions.assertEquals("load failed", e.getCause().getMessage());
+        }
+        Assertions.assertEquals("recovered", flight.execute(1, () -> "recovered"));
+    }
+
+    /**
+     * A caller arrives while a load is stuck for longer than the wait timeout
+     *
+     * Expected Result:
+     *  The waiting caller gives up with TooManyRequestsException; the load itself still completes
+     */
+    @Test
+    public void waitingIsBounded() throws Exception {
+        SingleFlight<Integer, String> flight = new SingleFlight<>(100);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> leader = startCallers(flight, 1, () -> {
+            await(release);
+            return "slow";
+        }).get(0);
+        while (flight.getLoads() == 0) {
+            Thread.sleep(1);
+        }
+        Assertions.assertThrows(TooManyRequestsException.class, () -> flight.execute(1, () -> "unused"));
+        release.countDown();
+        Assertions.assertEquals("slow", leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private List<Future<String>> startCallers(SingleFlight<Integer, String> flight, int count,
+                                              Supplier<String> loader) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            results.add(callers.submit(() -> flight.execute(1, loader)));
+        }
+        return results;
+    }
+
+    private static void waitForWaiters(SingleFlight<Integer, String> flight, int waiters) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flight.getShared() < waiters && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.entity.AccountStats;
+import com.example.entity.Message;
+import com.example.service.MessageCompactor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class SoftDeleteTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Before every test, reset the database, restart the app with the background compactor off, and create a new
+     * webClient and ObjectMapper for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {"--app.messages.compaction.enabled=false"};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        jdbcTemplate = app.getBean(JdbcTemplate.class);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending an http request to DELETE localhost:8080/messages/9999, then reading the message, the account's messages
+     * and all messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: 1 for the delete; the message is gone from every read while its row stays flagged in the table
+     *  until the compactor runs
+     */
+    @Test
+    public void deleteLeavesTombstoneUntilCompaction() throws IOException, InterruptedException {
+        // Warm the caches first, so the delete has to evict the message
+        Assertions.assertFalse(get("http://localhost:8080/messages/9999").body().isEmpty());
+        Assertions.assertEquals(1, readMessages("http://localhost:8080/accounts/9999/messages").size());
+
+        HttpResponse<String> response = delete(9999);
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("1", response.body());
+
+        Assertions.assertTrue(get("http://localhost:8080/messages/9999").body().isEmpty());
+        Assertions.assertEquals(List.of(), readMessages("http://localhost:8080/accounts/9999/messages"));
+        Assertions.assertFalse(readMessages("http://localhost:8080/messages").stream()
+                .anyMatch(message -> message.getMessageId() == 9999));
+        Assertions.assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "SELECT deleted FROM message WHERE messageId = 9999", Boolean.class));
+
+        Assertions.assertEquals(1, app.getBean(MessageCompactor.class).compact());
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM message WHERE messageId = 9999", Integer.class));
+        Assertions.assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message", Integer.class));
+    }
+
+    /**
+     * Sending an http request to DELETE localhost:8080/messages/9997 twice
+     *
+     * Expected Response:
+     *  Status Code: 200 both times
+     *  Response Body: 1 the first time, empty for the tombstoned message the second time
+     */
+    @Test
+    public void deleteTwice() throws IOException, InterruptedException {
+        Assertions.assertEquals("1", delete(9997).body());
+        HttpResponse<String> again = delete(9997);
+        Assertions.assertEquals(200, again.statusCode());
+        Assertions.assertTrue(again.body().isEmpty());
+    }
+
+    /**
+     * Posting a second message for account 9999, then sending eight concurrent http requests to
+     * DELETE localhost:8080/messages/9999
+     *
+     * Expected Response:
+     *  Status Code: 200 for all
+     *  Response Body: 1 for exactly one of them and empty for the others; the account's message count drops by one
+     */
+    @Test
+    public void concurrentDeletesCountOnce() throws IOException, InterruptedException {
+        HttpRequest post = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"postedBy\":9999,\"messageText\":\"second message\",\"timePostedEpoch\":1669947900}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(webClient.sendAsync(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/9999"))
+                    .DELETE()
+                    .build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        int deleted = 0;
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            Assertions.assertEquals(200, response.join().statusCode());
+            deleted += response.join().body().isEmpty() ? 0 : Integer.parseInt(response.join().body());
+        }
+        Assertions.assertEquals(1, deleted);
+        Assertions.assertEquals(new AccountStats(9999, 1L, 1669947900L, 1669947900L), objectMapper.readValue(
+                get("http://localhost:8080/accounts/9999/stats").body(), AccountStats.class));
+    }
+
+    private List<Message> readMessages(String uri) throws IOException, InterruptedException {
+        return objectMapper.readValue(get(uri).body(), new TypeReference<List<Message>>() {});
+    }
+
+    private HttpResponse<String> get(String uri) throws IOException, InterruptedException {
+        return webClient.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> delete(int messageId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + messageId))
+                .DELETE()
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
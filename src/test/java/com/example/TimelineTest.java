@@ -0,0 +1,120 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+
+import com.example.dto.MessagePage;
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TimelineTest {
+    ApplicationContext app;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+
+    /**
+     * Before every test, reset the database, restart the app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        String[] args = new String[] {};
+        app = SpringApplication.run(SocialMediaApp.class, args);
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        Thread.sleep(500);
+        SpringApplication.exit(app);
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages?postedBy=9999,9998,9999&limit=3, following nextCursor until
+     * it is absent, after posting messages at times 100, 104 and 106 for account 9999 and 101, 104 and 107 for 9998
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the seeded message of 9999 and then times 107, 106, 104, 104, 101 and 100, three per page,
+     *  each message once, with no nextCursor on the last page
+     */
+    @Test
+    public void getTimelinePageByPage() throws IOException, InterruptedException {
+        for (long time : new long[]{100, 104, 106}) {
+            post(9999, time);
+        }
+        for (long time : new long[]{101, 104, 107}) {
+            post(9998, time);
+        }
+
+        List<Long> times = new ArrayList<>();
+        Set<Integer> messageIds = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            HttpResponse<String> response = get("postedBy=9999,9998,9999&limit=3"
+                    + (cursor == null ? "" : "&cursor=" + cursor));
+            Assertions.assertEquals(200, response.statusCode());
+            MessagePage page = objectMapper.readValue(response.body(), MessagePage.class);
+            Assertions.assertTrue(page.getMessages().size() <= 3);
+            for (Message message : page.getMessages()) {
+                times.add(message.getTimePostedEpoch());
+                Assertions.assertTrue(messageIds.add(message.getMessageId()));
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        Assertions.assertEquals(List.of(1669947792L, 107L, 106L, 104L, 104L, 101L, 100L), times);
+        Assertions.assertEquals(3, pages);
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages with postedBy and a limit of 0, with a malformed cursor, and
+     * with both postedBy and ids
+     *
+     * Expected Response:
+     *  Status Code: 400 for all three
+     */
+    @Test
+    public void getTimelineInvalid() throws IOException, InterruptedException {
+        Assertions.assertEquals(400, get("postedBy=9999&limit=0").statusCode());
+        Assertions.assertEquals(400, get("postedBy=9999&cursor=yesterday").statusCode());
+        Assertions.assertEquals(400, get("postedBy=9999&ids=9999").statusCode());
+    }
+
+    private void post(int postedBy, long timePostedEpoch) throws IOException, InterruptedException {
+        String json = "{\"postedBy\":" + postedBy + ",\"messageText\": \"timeline " + timePostedEpoch
+                + "\",\"timePostedEpoch\": " + timePostedEpoch + "}";
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .header("Content-Type", "application/json")
+                .build();
+        Assertions.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private HttpResponse<String> get(String query) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?" + query))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
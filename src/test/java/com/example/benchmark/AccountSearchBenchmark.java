@@ -0,0 +1,105 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Account;
+import com.example.repository.AccountRepository;
+import com.example.service.AccountSearchService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Loads 1M accounts (or the count given as the first argument) and looks up random 3-letter username prefixes, top 10,
+ * through the in-memory index of AccountSearchService and through LIKE queries on the account table, with the index on
+ * username usable (case-sensitive {@code username LIKE ?}) and not ({@code LOWER(username) LIKE ?}). Reports microseconds per
+ * lookup, the time to build the index and the heap it retains.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.AccountSearchBenchmark}
+ */
+public class AccountSearchBenchmark {
+
+    private static final int LIMIT = 10;
+    private static final int BATCH = 10_000;
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("account-search-benchmark");
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db"),
+                "--spring.jpa.hibernate.ddl-auto=create-drop", "--spring.sql.init.mode=always");
+        try {
+            AccountRepository accountRepository = context.getBean(AccountRepository.class);
+            // Keeps the sequence clear of the seeded IDs
+            accountRepository.reserveIdsThrough(9999);
+            Random random = new Random(42);
+            for (int i = 0; i < accounts; i += BATCH) {
+                List<Account> batch = new ArrayList<>(BATCH);
+                for (int j = i; j < Math.min(accounts, i + BATCH); j++) {
+                    batch.add(new Account(randomName(random) + j, "password"));
+                }
+                accountRepository.insertAll(batch);
+            }
+
+            // The JDBC inserts bypass the index, which still holds only the seeded accounts
+            AccountSearchService searchService = context.getBean(AccountSearchService.class);
+            long baseline = liveHeap();
+            long start = System.nanoTime();
+            searchService.rebuild();
+            long buildMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%d accounts, index built in %d ms, %.1f MB retained%n", accounts, buildMillis,
+                    (liveHeap() - baseline) / 1e6);
+
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS account_username ON account (username)");
+            measure("AccountSearchService", 200_000, prefix -> searchService.search(prefix, LIMIT).size());
+            measure("username LIKE ?", 2_000, prefix -> jdbcTemplate.queryForList(
+                    "SELECT accountId, username FROM account WHERE username LIKE ? ORDER BY username LIMIT ?",
+                    prefix + "%", LIMIT).size());
+            measure("LOWER(username) LIKE ?", 20, prefix -> jdbcTemplate.queryForList(
+                    "SELECT accountId, username FROM account WHERE LOWER(username) LIKE ? ORDER BY username LIMIT ?",
+                    prefix + "%", LIMIT).size());
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void measure(String label, int lookups, Function<String, Integer> search) {
+        // Warm-up pass, then the measured one
+        for (int pass = 0; pass < 2; pass++) {
+            Random random = new Random(7);
+            long found = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                found += search.apply(randomName(random).substring(0, 3));
+            }
+            if (pass == 1) {
+                System.out.printf("%-24s %10.1f us/lookup  %5.1f matches/lookup%n", label,
+                        (System.nanoTime() - start) / 1e3 / lookups, found / (double) lookups);
+            }
+        }
+    }
+
+    private static String randomName(Random random) {
+        char[] name = new char[6];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(name);
+    }
+
+    private static long liveHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
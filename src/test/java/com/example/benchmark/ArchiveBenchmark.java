@@ -0,0 +1,136 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.repository.MessageArchive;
+import com.example.service.BulkImportService;
+import com.example.service.FileFormat;
+import com.example.service.MessageArchiver;
+import com.example.service.MessageService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Loads a year of messages (1M by default, or the count given as the first argument) from 1000 accounts into a
+ * file-backed H2, archives the older 90% of them, and compares the message table and read latency before and after.
+ * Reported are the table's row count and size on disk, the size of the archive, and the mean latency of listing every
+ * message, fetching random messages by ID (recent ones, and old ones that end up archived) and listing an account's
+ * messages.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.ArchiveBenchmark}
+ */
+public class ArchiveBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+    private static final long START_EPOCH = 1669947792L;
+    private static final long YEAR_SECONDS = 365L * 24 * 3600;
+    private static final int LOOKUPS = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("archive-benchmark");
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.rate-limit.messages.enabled=false",
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db"),
+                "--spring.jpa.hibernate.ddl-auto=create-drop", "--spring.sql.init.mode=always",
+                "--app.archive.directory=" + directory.resolve("archive"));
+        try {
+            load(context, directory, messages);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Integer> ids = jdbcTemplate.queryForList("SELECT messageId FROM message ORDER BY timePostedEpoch",
+                    Integer.class);
+            // Oldest 90% will be archived; lookups draw from both sides of the cutoff
+            int cutoffIndex = ids.size() * 9 / 10;
+            long cutoff = jdbcTemplate.queryForObject("SELECT timePostedEpoch FROM message WHERE messageId = ?",
+                    Long.class, ids.get(cutoffIndex));
+            List<Integer> oldIds = ids.subList(0, cutoffIndex);
+            List<Integer> recentIds = ids.subList(cutoffIndex, ids.size());
+
+            report("before archiving", context, jdbcTemplate, oldIds, recentIds);
+            long start = System.nanoTime();
+            long archived = context.getBean(MessageArchiver.class).archiveOlderThan(cutoff);
+            System.out.printf("Archived %d messages in %d ms%n%n", archived, (System.nanoTime() - start) / 1_000_000);
+            report("after archiving", context, jdbcTemplate, oldIds, recentIds);
+        } finally {
+            SpringApplication.exit(context);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void load(ConfigurableApplicationContext context, Path directory, int messages)
+            throws IOException {
+        Path accounts = directory.resolve("accounts.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(accounts, StandardCharsets.UTF_8)) {
+            writer.write("username,password\n");
+            for (int i = 0; i < ACCOUNTS; i++) {
+                writer.write("archiveuser" + i + ",password\n");
+            }
+        }
+        Path file = directory.resolve("messages.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("postedBy,messageText,timePostedEpoch\n");
+            for (int i = 0; i < messages; i++) {
+                writer.write((1 + i % ACCOUNTS) + ",message number " + i + " from the archive benchmark,"
+                        + (START_EPOCH + YEAR_SECONDS * i / messages) + "\n");
+            }
+        }
+        BulkImportService importService = context.getBean(BulkImportService.class);
+        try (FileChannel channel = FileChannel.open(accounts, StandardOpenOption.READ)) {
+            importService.importAccounts(FileFormat.CSV, channel);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            importService.importMessages(FileFormat.CSV, channel);
+        }
+        Files.delete(accounts);
+        Files.delete(file);
+    }
+
+    private static void report(String label, ConfigurableApplicationContext context, JdbcTemplate jdbcTemplate,
+                               List<Integer> oldIds, List<Integer> recentIds) {
+        MessageService messageService = context.getBean(MessageService.class);
+        MessageArchive archive = context.getBean(MessageArchive.class);
+        jdbcTemplate.execute("CHECKPOINT SYNC");
+        System.out.printf("%s: %d rows in the message table, %.1f MB on disk; %d archived, %.1f MB on disk%n", label,
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM message", Long.class),
+                jdbcTemplate.queryForObject("SELECT DISK_SPACE_USED('MESSAGE')", Long.class) / 1e6,
+                archive.countMessages(), archive.sizeOnDisk() / 1e6);
+
+        Random random = new Random(42);
+        time("  getMessages", 5, i -> messageService.getMessages());
+        time("  getMessageById, recent", LOOKUPS,
+                i -> messageService.getMessageById(recentIds.get(random.nextInt(recentIds.size()))));
+        time("  getMessageById, old", LOOKUPS,
+                i -> messageService.getMessageById(oldIds.get(random.nextInt(oldIds.size()))));
+        time("  getMessagesByAccountId", LOOKUPS / 10,
+                i -> messageService.getMessagesByAccountId(1 + random.nextInt(ACCOUNTS)));
+        System.out.println();
+    }
+
+    private static void time(String label, int iterations, IntConsumer operation) {
+        // Warm up first so that JIT compilation and cold caches do not count
+        for (int i = 0; i < Math.max(1, iterations / 10); i++) {
+            operation.accept(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.accept(i);
+        }
+        System.out.printf("%-28s %10.1f us/op%n", label, (System.nanoTime() - start) / 1e3 / iterations);
+    }
+}
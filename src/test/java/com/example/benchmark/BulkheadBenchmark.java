@@ -0,0 +1,119 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures POST /login latency from one client while 32 others keep scanning GET /messages over 20,000 messages with
+ * the caches, single-flight and the concurrency limit off, once with the bulkheads off and once with them on. Reports
+ * the login median and 99th percentile, and the scans completed and rejected per second.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.BulkheadBenchmark}
+ */
+public class BulkheadBenchmark {
+
+    private static final int MESSAGES = 20_000;
+    private static final int SCANNERS = 32;
+    private static final int LOGINS = 300;
+
+    public static void main(String[] args) throws Exception {
+        for (boolean bulkheads : new boolean[]{false, true}) {
+            run(bulkheads);
+        }
+    }
+
+    private static void run(boolean bulkheads) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.bulkheads.enabled=" + bulkheads,
+                "--app.concurrency-limit.enabled=false", "--app.single-flight.enabled=false",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        try {
+            List<Message> messages = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                messages.add(new Message(9996 + i % 4, "message number " + i, 1669947792L + i));
+            }
+            context.getBean(MessageRepository.class).insertAll(messages);
+
+            String base = "http://localhost:"
+                    + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest scan = HttpRequest.newBuilder().uri(URI.create(base + "/messages")).build();
+            HttpRequest login = HttpRequest.newBuilder().uri(URI.create(base + "/login"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            // Warm-up, then the measured logins
+            measureLogins(client, login, 100);
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicLong scans = new AtomicLong();
+            AtomicLong rejected = new AtomicLong();
+            List<Thread> scanners = new ArrayList<>(SCANNERS);
+            for (int i = 0; i < SCANNERS; i++) {
+                scanners.add(new Thread(() -> {
+                    while (running.get()) {
+                        try {
+                            int status = client.send(scan, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            if (status == 200) {
+                                scans.incrementAndGet();
+                            } else {
+                                rejected.incrementAndGet();
+                                Thread.sleep(10);
+                            }
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }));
+            }
+            scanners.forEach(Thread::start);
+            Thread.sleep(2000);
+
+            long start = System.nanoTime();
+            long[] latencies = measureLogins(client, login, LOGINS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            running.set(false);
+            for (Thread scanner : scanners) {
+                scanner.join();
+            }
+            System.out.printf("bulkheads %-3s  login p50 %7.1f ms  p99 %7.1f ms   %6.1f scans/s %6.1f rejected/s%n",
+                    bulkheads ? "on" : "off", latencies[LOGINS / 2] / 1e6, latencies[LOGINS * 99 / 100] / 1e6,
+                    scans.get() / seconds, rejected.get() / seconds);
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    /**
+     * @return The sorted latencies of the logins, in nanoseconds.
+     */
+    private static long[] measureLogins(HttpClient client, HttpRequest login, int count) throws Exception {
+        long[] latencies = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            HttpResponse<String> response = client.send(login, HttpResponse.BodyHandlers.ofString());
+            latencies[i] = System.nanoTime() - start;
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Login returned " + response.statusCode());
+            }
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+}
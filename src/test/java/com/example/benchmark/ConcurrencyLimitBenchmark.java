@@ -0,0 +1,132 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives GET /accounts/{accountId}/messages, 2,000 messages per account with the caches and single-flight off, from a
+ * growing number of closed-loop clients that give up on a response after 500 ms, once with the adaptive concurrency
+ * limit off and once with it on. Reports per step the goodput (200s within the deadline per second), the requests shed
+ * with 503, the ones that timed out, and the median and 99th percentile latency of the successes.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.ConcurrencyLimitBenchmark}
+ */
+public class ConcurrencyLimitBenchmark {
+
+    private static final int MESSAGES = 8_000;
+    private static final int[] CLIENTS = {1, 4, 16, 64, 256};
+    private static final Duration DEADLINE = Duration.ofMillis(500);
+    private static final long STEP_NANOS = 5_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        for (boolean limited : new boolean[]{false, true}) {
+            run(limited);
+        }
+    }
+
+    private static void run(boolean limited) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.concurrency-limit.enabled=" + limited,
+                "--app.single-flight.enabled=false",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        try {
+            List<Message> messages = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                messages.add(new Message(9996 + i % 4, "message number " + i, 1669947792L + i));
+            }
+            context.getBean(MessageRepository.class).insertAll(messages);
+
+            String base = "http://localhost:"
+                    + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(DEADLINE).build();
+            // Warm-up step, so the JIT has compiled the request path before the first measured step
+            step(client, base, 16, false);
+            System.out.println("concurrency limit " + (limited ? "on" : "off"));
+            for (int clients : CLIENTS) {
+                step(client, base, clients, true);
+            }
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void step(HttpClient client, String base, int clients, boolean report) throws InterruptedException {
+        AtomicLong shed = new AtomicLong();
+        AtomicLong timedOut = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>(clients);
+        List<Thread> threads = new ArrayList<>(clients);
+        long end = System.nanoTime() + STEP_NANOS;
+        for (int c = 0; c < clients; c++) {
+            long[] samples = new long[1 << 16];
+            latencies.add(samples);
+            threads.add(new Thread(() -> {
+                int count = 0;
+                while (System.nanoTime() < end) {
+                    HttpRequest request = HttpRequest.newBuilder()
+                            .uri(URI.create(base + "/accounts/" + (9996 + ThreadLocalRandom.current().nextInt(4))
+                                    + "/messages"))
+                            .timeout(DEADLINE)
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() == 503) {
+                            shed.incrementAndGet();
+                            // Honor Retry-After loosely, as a well-behaved client would, without idling the step
+                            Thread.sleep(10);
+                        } else if (System.nanoTime() - start > DEADLINE.toNanos()) {
+                            timedOut.incrementAndGet();
+                        } else if (count < samples.length - 1) {
+                            samples[count++] = System.nanoTime() - start;
+                        }
+                    } catch (IOException e) {
+                        // The deadline passed before or while the body arrived
+                        timedOut.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                samples[samples.length - 1] = count;
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Let requests abandoned by the clients drain before the next step
+        Thread.sleep(2000);
+        if (!report) {
+            return;
+        }
+
+        long[] all = latencies.stream()
+                .flatMapToLong(samples -> Arrays.stream(samples, 0, (int) samples[samples.length - 1]))
+                .sorted()
+                .toArray();
+        System.out.printf("%4d clients %8.0f ok/s %8d shed %8d timed out   p50 %7.1f ms  p99 %7.1f ms%n", clients,
+                all.length / (STEP_NANOS / 1e9), shed.get(), timedOut.get(), percentile(all, 0.5) / 1e6,
+                percentile(all, 0.99) / 1e6);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, sorted.length * fraction)];
+    }
+}
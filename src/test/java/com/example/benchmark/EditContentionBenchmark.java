@@ -0,0 +1,111 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.exception.ConcurrentEditException;
+import com.example.repository.MessageRepository;
+import com.example.repository.MessageShard;
+import com.example.repository.MessageShards;
+import com.example.service.MessageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Has 16 threads edit 4 hot messages, 2,000 edits each, once through MessageService's compare-and-set with retries
+ * and once by locking the row with SELECT ... FOR UPDATE before changing it, and reports the edits per second, the
+ * edits that gave up, and for the optimistic run the conflicts and retries counted in messages.edit.*.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.EditContentionBenchmark}
+ */
+public class EditContentionBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int HOT_MESSAGES = 4;
+    private static final int EDITS_PER_THREAD = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN");
+        try {
+            List<Message> hot = new ArrayList<>(HOT_MESSAGES);
+            for (int i = 0; i < HOT_MESSAGES; i++) {
+                hot.add(new Message(9996 + i, "hot message " + i, 1669947792L + i));
+            }
+            context.getBean(MessageRepository.class).insertAll(hot);
+            int[] ids = hot.stream().mapToInt(Message::getMessageId).toArray();
+
+            MessageService messageService = context.getBean(MessageService.class);
+            MessageShards shards = context.getBean(MessageShards.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            // Warm-up pass, then the measured one
+            for (int pass = 0; pass < 2; pass++) {
+                double conflicts = meterRegistry.counter("messages.edit.conflicts").count();
+                double retries = meterRegistry.counter("messages.edit.retries").count();
+                long[] optimistic = run(ids, (id, text) -> {
+                    Message edit = new Message();
+                    edit.setMessageText(text);
+                    messageService.patchMessage(id, edit);
+                });
+                long[] pessimistic = run(ids, (id, text) -> {
+                    MessageShard shard = shards.forMessageId(id);
+                    shard.getWriteTransaction().executeWithoutResult(status -> shard.getEntityManager()
+                            .find(Message.class, id, LockModeType.PESSIMISTIC_WRITE).setMessageText(text));
+                });
+                if (pass == 1) {
+                    report("compare-and-set", optimistic);
+                    System.out.printf("%-20s %10.0f conflicts %10.0f retries%n", "",
+                            meterRegistry.counter("messages.edit.conflicts").count() - conflicts,
+                            meterRegistry.counter("messages.edit.retries").count() - retries);
+                    report("SELECT FOR UPDATE", pessimistic);
+                }
+            }
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private interface Edit {
+        void apply(int messageId, String messageText);
+    }
+
+    /**
+     * @return The elapsed nanoseconds and the number of edits that gave up.
+     */
+    private static long[] run(int[] ids, Edit edit) throws InterruptedException {
+        AtomicLong failed = new AtomicLong();
+        List<Thread> threads = new ArrayList<>(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < EDITS_PER_THREAD; i++) {
+                    int id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+                    try {
+                        edit.apply(id, "edit " + i + " by thread " + thread);
+                    } catch (ConcurrentEditException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[]{System.nanoTime() - start, failed.get()};
+    }
+
+    private static void report(String label, long[] result) {
+        long edits = (long) THREADS * EDITS_PER_THREAD;
+        System.out.printf("%-20s %10.0f edits/s %10d gave up%n", label,
+                (edits - result[1]) / (result[0] / 1e9), result[1]);
+    }
+}
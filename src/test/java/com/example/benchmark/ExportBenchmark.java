@@ -0,0 +1,116 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.dto.TransferResult;
+import com.example.service.FileFormat;
+import com.example.service.MessageExportService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports a 1M-message table to a temporary file as NDJSON and as CSV and reports rows/s, MB/s and how much heap the
+ * export retains halfway through (live heap after a full GC, compared with before the export started). The in-memory
+ * H2 table itself is part of the baseline.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.ExportBenchmark}
+ */
+public class ExportBenchmark {
+
+    private static final int MESSAGES = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN");
+        Path path = Files.createTempFile("messages", ".export");
+        Map<FileFormat, Double> retainedMegabytes = new EnumMap<>(FileFormat.class);
+        try {
+            insertMessages(context.getBean(JdbcTemplate.class));
+            MessageExportService exportService = context.getBean(MessageExportService.class);
+
+            System.out.printf("%-7s %10s %10s %10s %18s%n", "format", "rows/s", "MB", "MB/s", "retained heap MB");
+            Map<FileFormat, Long> sizes = new EnumMap<>(FileFormat.class);
+            for (int pass = 0; pass < 3; pass++) {
+                for (FileFormat format : FileFormat.values()) {
+                    long baseline = liveHeap();
+                    long[] retained = {0};
+                    long halfway = sizes.getOrDefault(format, Long.MAX_VALUE) / 2;
+                    TransferResult result;
+                    try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                        // Samples the live heap once, when half of the expected output has been written
+                        WritableByteChannel channel = new WritableByteChannel() {
+                            private long written;
+
+                            @Override
+                            public int write(ByteBuffer source) throws IOException {
+                                int n = file.write(source);
+                                if (written < halfway && written + n >= halfway) {
+                                    retained[0] = liveHeap() - baseline;
+                                }
+                                written += n;
+                                return n;
+                            }
+
+                            @Override
+                            public boolean isOpen() {
+                                return file.isOpen();
+                            }
+
+                            @Override
+                            public void close() {
+                            }
+                        };
+                        result = exportService.export(format, null, null, null, channel);
+                    }
+                    sizes.put(format, result.getBytes());
+                    // The sampled pass is slowed down by its full GC, so throughput comes from the last pass
+                    if (pass == 1) {
+                        retainedMegabytes.put(format, retained[0] / 1e6);
+                    } else if (pass == 2) {
+                        double megabytes = result.getBytes() / 1e6;
+                        System.out.printf("%-7s %10d %10.1f %10.1f %18.1f%n", format, result.getRowsPerSecond(),
+                                megabytes, megabytes * 1000 / Math.max(1, result.getElapsedMillis()),
+                                retainedMegabytes.get(format));
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void insertMessages(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < MESSAGES; i++) {
+            batch.add(new Object[]{100_000 + i, 9996 + i % 4, "message number " + i + ", from the \"load\" generator",
+                    1669947792L + i});
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch) "
+                        + "VALUES (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static long liveHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
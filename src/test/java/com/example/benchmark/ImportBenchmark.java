@@ -0,0 +1,126 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.dto.TransferResult;
+import com.example.entity.Message;
+import com.example.service.BulkImportService;
+import com.example.service.FileFormat;
+import com.example.service.MessageService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Imports a generated message file (1M rows by default, or the count given as the first argument, e.g. 10000000)
+ * through BulkImportService and compares it with creating messages one at a time through MessageService. Reports
+ * rows/s and how much heap the import retains halfway through (live heap after a full GC, compared with before it
+ * started). The database is a file-backed H2 in a temporary directory, so the table itself does not sit on the heap.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.ImportBenchmark}
+ */
+public class ImportBenchmark {
+
+    /**
+     * Stays below the seeded IDs, which the sequence would otherwise run into.
+     */
+    private static final int SINGLE_ROW_MESSAGES = 5_000;
+
+    public static void main(String[] args) throws IOException {
+        long messages = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        Path directory = Files.createTempDirectory("import-benchmark");
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.rate-limit.messages.enabled=false",
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db"),
+                "--spring.jpa.hibernate.ddl-auto=create-drop", "--spring.sql.init.mode=always");
+        try {
+            MessageService messageService = context.getBean(MessageService.class);
+            long start = System.nanoTime();
+            for (int i = 0; i < SINGLE_ROW_MESSAGES; i++) {
+                messageService.createMessage(new Message(9996 + i % 4, "single row message " + i, 1669947792L + i));
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%-28s %10d rows/s%n", "MessageService.createMessage",
+                    SINGLE_ROW_MESSAGES * 1000L / Math.max(1, elapsedMillis));
+
+            BulkImportService importService = context.getBean(BulkImportService.class);
+            for (FileFormat format : FileFormat.values()) {
+                Path file = directory.resolve("messages." + format.getExtension());
+                writeFile(file, format, messages);
+                long baseline = liveHeap();
+                long halfway = Files.size(file) / 2;
+                long[] retained = {0};
+                TransferResult result;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    // Samples the live heap once, when half of the file has been read
+                    ReadableByteChannel sampling = new ReadableByteChannel() {
+                        @Override
+                        public int read(ByteBuffer target) throws IOException {
+                            long before = channel.position();
+                            int n = channel.read(target);
+                            if (before < halfway && channel.position() >= halfway) {
+                                retained[0] = liveHeap() - baseline;
+                            }
+                            return n;
+                        }
+
+                        @Override
+                        public boolean isOpen() {
+                            return channel.isOpen();
+                        }
+
+                        @Override
+                        public void close() {
+                        }
+                    };
+                    result = importService.importMessages(format, sampling);
+                }
+                System.out.printf("%-28s %10d rows/s  %6.1f MB/s  %6.1f MB retained  (%d rows, %d rejected)%n",
+                        "BulkImportService " + format, result.getRowsPerSecond(),
+                        result.getBytes() / 1e3 / Math.max(1, result.getElapsedMillis()), retained[0] / 1e6,
+                        result.getRows(), result.getRejectedRows());
+                Files.delete(file);
+            }
+        } finally {
+            SpringApplication.exit(context);
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeFile(Path file, FileFormat format, long messages) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == FileFormat.CSV) {
+                writer.write("postedBy,messageText,timePostedEpoch\n");
+            }
+            for (long i = 0; i < messages; i++) {
+                int postedBy = 9996 + (int) (i % 4);
+                String text = "message number " + i + " from the load generator";
+                if (format == FileFormat.NDJSON) {
+                    writer.write("{\"postedBy\":" + postedBy + ",\"messageText\":\"" + text
+                            + "\",\"timePostedEpoch\":" + (1669947792L + i) + "}\n");
+                } else {
+                    writer.write(postedBy + "," + text + "," + (1669947792L + i) + "\n");
+                }
+            }
+        }
+    }
+
+    private static long liveHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.repository.MessageRepository;
+import com.example.service.AccountService;
+import com.example.service.ReactionService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Many threads liking the same message, each like by a different account: a naive per-like
+ * {@code UPDATE ... SET likeCount = likeCount + 1} transaction against ReactionService, whose likes only touch memory
+ * until the scheduled batch flush. Both validate the message and the account the same way.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.LikeContentionBenchmark}
+ */
+public class LikeContentionBenchmark {
+
+    private static final int THREADS = 16;
+    private static final int LIKES_PER_THREAD = 2_000;
+    private static final int HOT_MESSAGE = 9999;
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN");
+        try {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            TransactionTemplate transactionTemplate =
+                    new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            ReactionService reactionService = context.getBean(ReactionService.class);
+
+            List<Object[]> accounts = new ArrayList<>();
+            for (int i = 0; i < 2 * THREADS * LIKES_PER_THREAD; i++) {
+                accounts.add(new Object[]{100_000 + i, "liker" + i});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO account VALUES (?, ?, 'password')", accounts);
+            jdbcTemplate.update("INSERT INTO message_like_count VALUES (?, 0)", HOT_MESSAGE);
+
+            // Same validation as ReactionService, so that only the counting differs
+            MessageRepository messageRepository = context.getBean(MessageRepository.class);
+            AccountService accountService = context.getBean(AccountService.class);
+            run("naive update", like -> {
+                messageRepository.existsById(HOT_MESSAGE);
+                accountService.getUserById(100_000 + like);
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                        "UPDATE message_like_count SET likeCount = likeCount + 1 WHERE messageId = ?", HOT_MESSAGE));
+            });
+            run("reactions", like -> reactionService.like(HOT_MESSAGE, 100_000 + THREADS * LIKES_PER_THREAD + like));
+            long start = System.nanoTime();
+            reactionService.flush();
+            System.out.printf("flush of %d likes took %.1f ms%n", THREADS * LIKES_PER_THREAD,
+                    (System.nanoTime() - start) / 1e6);
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void run(String label, IntConsumer like) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int first = t * LIKES_PER_THREAD;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                        like.accept(first + i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-12s %10.0f likes/s%n", label, THREADS * LIKES_PER_THREAD / seconds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
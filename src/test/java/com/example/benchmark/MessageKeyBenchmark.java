@@ -0,0 +1,109 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageKeyBackfill;
+import com.example.util.KSortableIdGenerator;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the cost of an ID from KSortableIdGenerator, on one thread and on four, with drawing one from the messageId
+ * sequence as every JPA insert does, then backfills keys for 1M messages (or the count given as the first argument)
+ * inserted without them. The database is a file-backed H2 in the same process, so the sequence figure leaves out the
+ * network round trip a database server would add.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.MessageKeyBenchmark}
+ */
+public class MessageKeyBenchmark {
+
+    private static final int GENERATED = 10_000_000;
+    private static final int SEQUENCE_CALLS = 100_000;
+    private static final int THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        KSortableIdGenerator generator = new KSortableIdGenerator(1);
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            long sink = 0;
+            for (int i = 0; i < GENERATED; i++) {
+                sink += generator.nextId();
+            }
+            if (pass == 1) {
+                System.out.printf("%-36s %10.1f ns/id (%d)%n", "KSortableIdGenerator, 1 thread",
+                        (System.nanoTime() - start) / (double) GENERATED, sink & 1);
+            }
+        }
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(threads.submit(() -> {
+                    long sink = 0;
+                    for (int i = 0; i < GENERATED / THREADS; i++) {
+                        sink += generator.nextId();
+                    }
+                    return sink;
+                }));
+            }
+            for (Future<Long> result : results) {
+                result.get();
+            }
+            System.out.printf("%-36s %10.1f ns/id%n", "KSortableIdGenerator, " + THREADS + " threads",
+                    (System.nanoTime() - start) / (double) GENERATED);
+        } finally {
+            threads.shutdownNow();
+        }
+
+        Path directory = Files.createTempDirectory("message-key-benchmark");
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.ids.backfill.enabled=false",
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db"),
+                "--spring.jpa.hibernate.ddl-auto=create-drop", "--spring.sql.init.mode=always");
+        try {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < SEQUENCE_CALLS; i++) {
+                    jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR messageId", Long.class);
+                }
+                if (pass == 1) {
+                    System.out.printf("%-36s %10.1f ns/id%n", "SELECT NEXT VALUE FOR messageId",
+                            (System.nanoTime() - start) / (double) SEQUENCE_CALLS);
+                }
+            }
+
+            MessageRepository messageRepository = context.getBean(MessageRepository.class);
+            List<Message> batch = new ArrayList<>();
+            for (int i = 0; i < messages; i++) {
+                batch.add(new Message(9996 + i % 4, "message number " + i, 1669947792L + i / 100));
+                if (batch.size() == 10_000 || i == messages - 1) {
+                    messageRepository.insertAll(batch);
+                    batch.clear();
+                }
+            }
+            jdbcTemplate.update("UPDATE message SET messageKey = NULL");
+            long start = System.nanoTime();
+            long updated = context.getBean(MessageKeyBackfill.class).backfill();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%-36s %10d rows/s (%d rows)%n", "Backfill", updated * 1000 / Math.max(1, elapsedMillis),
+                    updated);
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves feed pages of 50 random message IDs over HTTP, once with one GET /messages/{messageId} per ID and once with
+ * a single GET /messages?ids=..., with the second-level cache on and off. Reports the time and the database statements
+ * per page.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.MultiGetBenchmark}
+ */
+public class MultiGetBenchmark {
+
+    private static final int MESSAGES = 10_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int PAGES = 200;
+
+    public static void main(String[] args) throws Exception {
+        for (boolean cache : new boolean[]{false, true}) {
+            run(cache);
+        }
+    }
+
+    private static void run(boolean cache) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=" + cache);
+        try {
+            List<Message> messages = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                messages.add(new Message(9996 + i % 4, "message number " + i, 1669947792L + i));
+            }
+            context.getBean(MessageRepository.class).insertAll(messages);
+            List<Integer> ids = messages.stream().map(Message::getMessageId).collect(Collectors.toList());
+
+            String base = "http://localhost:"
+                    + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newHttpClient();
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class)
+                    .getStatistics();
+            String label = "cache " + (cache ? "on " : "off");
+            for (boolean multiGet : new boolean[]{false, true}) {
+                Random random = new Random(42);
+                // Warm-up pass, then the measured one
+                for (int pass = 0; pass < 2; pass++) {
+                    long before = statistics.getPrepareStatementCount();
+                    long start = System.nanoTime();
+                    for (int page = 0; page < PAGES; page++) {
+                        List<Integer> pageIds = new ArrayList<>(PAGE_SIZE);
+                        for (int i = 0; i < PAGE_SIZE; i++) {
+                            pageIds.add(ids.get(random.nextInt(ids.size())));
+                        }
+                        if (multiGet) {
+                            get(client, base + "/messages?ids=" + pageIds.stream().map(String::valueOf)
+                                    .collect(Collectors.joining(",")));
+                        } else {
+                            for (Integer id : pageIds) {
+                                get(client, base + "/messages/" + id);
+                            }
+                        }
+                    }
+                    if (pass == 1) {
+                        System.out.printf("%s  %-28s %8.2f ms/page %8.2f statements/page%n", label,
+                                multiGet ? "GET /messages?ids=" : "GET /messages/{id} x " + PAGE_SIZE,
+                                (System.nanoTime() - start) / 1e6 / PAGES,
+                                (statistics.getPrepareStatementCount() - before) / (double) PAGES);
+                    }
+                }
+            }
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void get(HttpClient client, String uri) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder().uri(URI.create(uri)).build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException(uri + " returned " + response.statusCode());
+        }
+    }
+}
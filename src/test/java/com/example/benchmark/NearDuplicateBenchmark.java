@@ -0,0 +1,124 @@
+package com.example.benchmark;
+
+import com.example.util.SimHash;
+import com.example.util.SimHashIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times the near-duplicate check of the write path, fingerprinting and a lookup in a full 100,000-entry index, and
+ * measures what it catches: 100,000 organic messages of random words are interleaved with bot campaigns, each
+ * posting 200 copies of one text with one to three characters changed and a random number appended. Reports the share
+ * of campaign messages and of organic messages that reach the default threshold of 3 near matches within distance 6.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.NearDuplicateBenchmark}
+ */
+public class NearDuplicateBenchmark {
+
+    private static final int CAPACITY = 100_000;
+    private static final int ORGANIC = 100_000;
+    private static final int CAMPAIGNS = 50;
+    private static final int COPIES = 200;
+    private static final int THRESHOLD = 3;
+    private static final int MAX_DISTANCE = 6;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        String[] vocabulary = new String[5000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random);
+        }
+
+        List<String> organic = new ArrayList<>(ORGANIC);
+        for (int i = 0; i < ORGANIC; i++) {
+            organic.add(sentence(random, vocabulary, 40 + random.nextInt(200)));
+        }
+        for (int length : new int[]{40, 120, 255}) {
+            String text = sentence(random, vocabulary, length);
+            long sink = 0;
+            // Warm-up pass, then the measured one
+            for (int pass = 0; pass < 2; pass++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 200_000; i++) {
+                    sink += SimHash.fingerprint(text);
+                }
+                if (pass == 1) {
+                    System.out.printf("fingerprint, %3d chars   %8.2f us%n", text.length(),
+                            (System.nanoTime() - start) / 1e3 / 200_000);
+                }
+            }
+            if (sink == 42) {
+                System.out.println();
+            }
+        }
+
+        // A full index, then lookups of fresh organic fingerprints
+        SimHashIndex index = new SimHashIndex(CAPACITY, Long.MAX_VALUE / 2, MAX_DISTANCE);
+        long[] fingerprints = organic.stream().mapToLong(SimHash::fingerprint).toArray();
+        for (long fingerprint : fingerprints) {
+            index.addAndCount(fingerprint, 0, THRESHOLD);
+        }
+        long start = System.nanoTime();
+        for (int pass = 0; pass < 10; pass++) {
+            for (long fingerprint : fingerprints) {
+                index.addAndCount(fingerprint ^ 0x5555_0000_0000L, 0, THRESHOLD);
+            }
+        }
+        System.out.printf("index lookup and add      %8.2f us%n", (System.nanoTime() - start) / 1e3 / (10.0 * ORGANIC));
+
+        // Detection on a mixed stream through a fresh index
+        index = new SimHashIndex(CAPACITY, Long.MAX_VALUE / 2, MAX_DISTANCE);
+        int organicFlagged = 0;
+        int campaignFlagged = 0;
+        int campaignMessages = 0;
+        int perCampaignGap = ORGANIC / (CAMPAIGNS * COPIES) + 1;
+        String[] campaignTexts = new String[CAMPAIGNS];
+        for (int c = 0; c < CAMPAIGNS; c++) {
+            campaignTexts[c] = sentence(random, vocabulary, 60 + random.nextInt(120));
+        }
+        int nextOrganic = 0;
+        for (int i = 0; nextOrganic < ORGANIC; i++) {
+            if (i % perCampaignGap == 0 && campaignMessages < CAMPAIGNS * COPIES) {
+                String variant = variant(random, campaignTexts[campaignMessages % CAMPAIGNS]);
+                if (index.addAndCount(SimHash.fingerprint(variant), 0, THRESHOLD) >= THRESHOLD) {
+                    campaignFlagged++;
+                }
+                campaignMessages++;
+            } else if (index.addAndCount(fingerprints[nextOrganic++], 0, THRESHOLD) >= THRESHOLD) {
+                organicFlagged++;
+            }
+        }
+        System.out.printf("campaign messages caught  %8.1f %% of %d%n", 100.0 * campaignFlagged / campaignMessages,
+                campaignMessages);
+        System.out.printf("organic messages caught   %8.3f %% of %d%n", 100.0 * organicFlagged / ORGANIC, ORGANIC);
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(8);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private static String sentence(Random random, String[] vocabulary, int length) {
+        StringBuilder sentence = new StringBuilder();
+        while (sentence.length() < length) {
+            sentence.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        return sentence.substring(0, length);
+    }
+
+    private static String variant(Random random, String text) {
+        StringBuilder variant = new StringBuilder(text);
+        int edits = 1 + random.nextInt(3);
+        for (int i = 0; i < edits; i++) {
+            variant.setCharAt(random.nextInt(variant.length()), (char) ('a' + random.nextInt(26)));
+        }
+        return variant.append(' ').append(random.nextInt(10_000)).toString();
+    }
+}
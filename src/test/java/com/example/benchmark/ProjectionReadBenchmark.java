@@ -0,0 +1,79 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Compares the entity read path ({@code findAll}) with the unmanaged projection ({@code findAllProjected}) on a
+ * 100k-message table: average latency and bytes allocated by the calling thread per call. Both run in a read-only
+ * transaction, as they do behind MessageService.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.ProjectionReadBenchmark}
+ */
+public class ProjectionReadBenchmark {
+
+    private static final int MESSAGES = 100_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN");
+        try {
+            MessageRepository messageRepository = context.getBean(MessageRepository.class);
+            TransactionTemplate readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            readOnly.setReadOnly(true);
+            insertMessages(context.getBean(JdbcTemplate.class));
+
+            System.out.printf("%-10s %10s %16s%n", "read path", "ms/op", "allocated MB/op");
+            measure("entity", () -> readOnly.execute(status -> messageRepository.findAll()));
+            measure("projection", () -> readOnly.execute(status -> messageRepository.findAllProjected()));
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void insertMessages(JdbcTemplate jdbcTemplate) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < MESSAGES; i++) {
+            batch.add(new Object[]{100_000 + i, 9996 + i % 4, "message number " + i + " from the load generator",
+                    1669947792L + i});
+            if (batch.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("INSERT INTO message (messageId, postedBy, messageText, timePostedEpoch) "
+                        + "VALUES (?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static void measure(String label, Supplier<List<Message>> read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            read.get();
+        }
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int rows = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            rows = read.get().size();
+        }
+        double millisPerOp = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+        double megabytesPerOp = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) / 1e6
+                / MEASURED_ITERATIONS;
+        System.out.printf("%-10s %10.1f %16.1f   (%d rows)%n", label, millisPerOp, megabytesPerOp, rows);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Account;
+import com.example.entity.Message;
+import com.example.service.AccountService;
+import com.example.service.MessageService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Counts the JDBC statements (database round trips) of a realistic read/write mix with and without the second-level
+ * and query cache. The mix is 10% createMessage, 30% getMessageById, 30% getMessagesByAccountId and 30% getUserById
+ * (the lookup every createMessage performs), spread over a few hundred accounts.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.SecondLevelCacheBenchmark}
+ */
+public class SecondLevelCacheBenchmark {
+
+    private static final int ACCOUNTS = 200;
+    private static final int OPERATIONS = 50_000;
+
+    public static void main(String[] args) {
+        // Warm-up pass so that neither measured configuration pays for JIT compilation
+        run("warm-up", "--spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=true");
+        run("cache on", "--spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=true");
+        run("cache off", "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false");
+    }
+
+    private static void run(String label, String... cacheArgs) {
+        List<String> args = new ArrayList<>(List.of("--server.port=0", "--app.rate-limit.messages.enabled=false",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(cacheArgs));
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, args.toArray(new String[0]));
+        try {
+            AccountService accountService = context.getBean(AccountService.class);
+            MessageService messageService = context.getBean(MessageService.class);
+            Statistics statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class)
+                    .getStatistics();
+
+            List<Account> accounts = new ArrayList<>();
+            List<Integer> messageIds = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS; i++) {
+                Account account = accountService.register(new Account("bench" + i, "password"));
+                accounts.add(account);
+                messageIds.add(messageService.createMessage(
+                        new Message(account.getAccountId(), "seed " + i, 1669947792L + i)).getMessageId());
+            }
+
+            statistics.clear();
+            Random random = new Random(42);
+            long start = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                Account account = accounts.get(random.nextInt(ACCOUNTS));
+                int operation = random.nextInt(10);
+                if (operation == 0) {
+                    messageIds.add(messageService.createMessage(
+                            new Message(account.getAccountId(), "message " + i, 1669947792L + i)).getMessageId());
+                } else if (operation <= 3) {
+                    messageService.getMessageById(messageIds.get(random.nextInt(messageIds.size())));
+                } else if (operation <= 6) {
+                    messageService.getMessagesByAccountId(account.getAccountId());
+                } else {
+                    accountService.getUserById(account.getAccountId());
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-9s statements=%d (%.2f per op)  L2 hit/miss=%d/%d  query cache hit/miss=%d/%d  "
+                            + "%.0f ops/s%n",
+                    label, statistics.getPrepareStatementCount(),
+                    statistics.getPrepareStatementCount() / (double) OPERATIONS,
+                    statistics.getSecondLevelCacheHitCount(), statistics.getSecondLevelCacheMissCount(),
+                    statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(), OPERATIONS / seconds);
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+}
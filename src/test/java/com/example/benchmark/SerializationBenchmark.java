@@ -0,0 +1,75 @@
+package com.example.benchmark;
+
+import com.example.entity.Message;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares wire size and serialization CPU of the encodings offered by the list endpoints (JSON, CBOR and Smile),
+ * with and without gzip, for 1k/10k/100k-message responses.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.SerializationBenchmark}
+ */
+public class SerializationBenchmark {
+
+    private static final int[] RESPONSE_SIZES = {1_000, 10_000, 100_000};
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", new ObjectMapper());
+        mappers.put("cbor", new ObjectMapper(new CBORFactory()));
+        mappers.put("smile", new ObjectMapper(new SmileFactory()));
+
+        System.out.printf("%-8s %-6s %14s %14s %12s%n", "messages", "format", "raw bytes", "gzip bytes", "ms/op");
+        for (int size : RESPONSE_SIZES) {
+            List<Message> messages = timeline(size);
+            for (Map.Entry<String, ObjectMapper> entry : mappers.entrySet()) {
+                ObjectMapper mapper = entry.getValue();
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    mapper.writeValueAsBytes(messages);
+                }
+                long start = System.nanoTime();
+                byte[] raw = null;
+                for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                    raw = mapper.writeValueAsBytes(messages);
+                }
+                double millisPerOp = (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+                System.out.printf("%-8d %-6s %14d %14d %12.2f%n", size, entry.getKey(), raw.length, gzip(raw).length,
+                        millisPerOp);
+            }
+        }
+    }
+
+    /**
+     * Builds a timeline that resembles production data: a few thousand posters, short texts and increasing timestamps.
+     */
+    private static List<Message> timeline(int size) {
+        List<Message> messages = new ArrayList<>(size);
+        long epoch = 1669947792L;
+        for (int i = 0; i < size; i++) {
+            messages.add(new Message(i + 1, 1 + i % 5000, "message number " + i + " from the load generator",
+                    epoch + i));
+        }
+        return messages;
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        }
+        return out.toByteArray();
+    }
+}
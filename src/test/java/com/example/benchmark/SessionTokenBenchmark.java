@@ -0,0 +1,63 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.service.AccountService;
+import com.example.service.SessionTokens;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+
+/**
+ * Compares the two ways createMessage can establish its poster: verifying a session token in memory, and the account
+ * lookup by ID it replaces. Reports the time per call, and for verification the heap allocated per call; the lookup
+ * runs on the reads bulkhead's threads, where the calling thread's allocation counter does not see it.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.SessionTokenBenchmark}
+ */
+public class SessionTokenBenchmark {
+
+    private static final int CALLS = 200_000;
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN");
+        try {
+            SessionTokens sessionTokens = context.getBean(SessionTokens.class);
+            AccountService accountService = context.getBean(AccountService.class);
+            String token = sessionTokens.issue(9999);
+
+            // Warm-up pass, then the measured one
+            for (int pass = 0; pass < 2; pass++) {
+                measure(pass == 1, true, "token verification", () -> sessionTokens.verify(token));
+                measure(pass == 1, false, "account lookup", () -> accountService.getUserById(9999).getAccountId());
+            }
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void measure(boolean print, boolean allocations, String label, IntSupplier call) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long sink = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            sink += call.getAsInt();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (print && allocations) {
+            System.out.printf("%-20s %8.2f us  %6.0f bytes allocated per call%n", label, nanos / 1e3 / CALLS,
+                    (double) allocated / CALLS);
+        } else if (print) {
+            System.out.printf("%-20s %8.2f us%n", label, nanos / 1e3 / CALLS);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
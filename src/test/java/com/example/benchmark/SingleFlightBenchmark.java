@@ -0,0 +1,100 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageService;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Thundering herd: in every round a write invalidates the cached data, then 64 threads request the same message and
+ * the same account's messages (20,000 of them) at once. Runs with the second-level and query caches on and off, each
+ * with single-flight on and off, and reports database statements per request and the mean round time.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.SingleFlightBenchmark}
+ */
+public class SingleFlightBenchmark {
+
+    private static final int CALLERS = 64;
+    private static final int ROUNDS = 30;
+    private static final int ACCOUNT_MESSAGES = 20_000;
+
+    public static void main(String[] args) throws Exception {
+        for (boolean cache : new boolean[]{false, true}) {
+            for (boolean singleFlight : new boolean[]{false, true}) {
+                run(cache, singleFlight);
+            }
+        }
+    }
+
+    private static void run(boolean cache, boolean singleFlight) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.single-flight.enabled=" + singleFlight,
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=" + cache,
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=" + cache);
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Message> messages = new ArrayList<>(ACCOUNT_MESSAGES);
+            for (int i = 0; i < ACCOUNT_MESSAGES; i++) {
+                messages.add(new Message(9999, "message number " + i, 1669947792L + i));
+            }
+            context.getBean(MessageRepository.class).insertAll(messages);
+
+            MessageService messageService = context.getBean(MessageService.class);
+            SessionFactory sessionFactory = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class);
+            String label = "cache " + (cache ? "on " : "off") + ", single-flight " + (singleFlight ? "on " : "off");
+            herd(label + "  getMessageById", sessionFactory, callers, i -> messageService.getMessageById(9999));
+            herd(label + "  getMessagesByAccountId", sessionFactory, callers,
+                    i -> messageService.getMessagesByAccountId(9999));
+        } finally {
+            callers.shutdownNow();
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void herd(String label, SessionFactory sessionFactory, ExecutorService callers,
+                             IntConsumer request) throws Exception {
+        Statistics statistics = sessionFactory.getStatistics();
+        Cache cache = sessionFactory.getCache();
+        long statements = 0;
+        long nanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            // What a new or edited message does to the cached data
+            cache.evictAllRegions();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                int caller = i;
+                results.add(callers.submit(() -> {
+                    start.await();
+                    request.accept(caller);
+                    return null;
+                }));
+            }
+            long before = statistics.getPrepareStatementCount();
+            long startNanos = System.nanoTime();
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+            nanos += System.nanoTime() - startNanos;
+            statements += statistics.getPrepareStatementCount() - before;
+        }
+        System.out.printf("%-58s %6.2f statements/request %8.1f ms/round%n", label,
+                statements / (double) (ROUNDS * CALLERS), nanos / 1e6 / ROUNDS);
+    }
+}
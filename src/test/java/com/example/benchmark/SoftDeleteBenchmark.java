@@ -0,0 +1,98 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageCompactor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes 10,000 of 400,000 messages, spread over the table, one row at a time while another thread keeps scanning account timelines, once
+ * with a hard DELETE and once by setting the tombstone, and reports the time per delete and the scans completed per
+ * second meanwhile. Then times MessageCompactor removing the tombstoned rows. The database is a file-backed H2.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.SoftDeleteBenchmark}
+ */
+public class SoftDeleteBenchmark {
+
+    private static final int MESSAGES = 400_000;
+    private static final int DELETES = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("soft-delete-benchmark");
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.messages.compaction.enabled=false",
+                "--app.messages.compaction.batch-size=" + DELETES,
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db"),
+                "--spring.jpa.hibernate.ddl-auto=create-drop", "--spring.sql.init.mode=always");
+        try {
+            MessageRepository messageRepository = context.getBean(MessageRepository.class);
+            List<Message> batch = new ArrayList<>();
+            List<Integer> ids = new ArrayList<>(MESSAGES);
+            for (int i = 0; i < MESSAGES; i++) {
+                batch.add(new Message(9996 + i % 4, "message number " + i, 1669947792L + i));
+                if (batch.size() == 10_000) {
+                    messageRepository.insertAll(batch);
+                    batch.forEach(message -> ids.add(message.getMessageId()));
+                    batch.clear();
+                }
+            }
+
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            // Moderation sweeps hit messages spread over the table, not a contiguous range
+            List<Integer> hard = new ArrayList<>(DELETES);
+            List<Integer> soft = new ArrayList<>(DELETES);
+            int stride = MESSAGES / DELETES;
+            for (int i = 0; i < DELETES; i++) {
+                hard.add(ids.get(i * stride));
+                soft.add(ids.get(i * stride + 1));
+            }
+            run(jdbcTemplate, "hard DELETE", "DELETE FROM message WHERE messageId = ?", hard);
+            run(jdbcTemplate, "tombstone UPDATE", "UPDATE message SET deleted = TRUE WHERE messageId = ?", soft);
+
+            long start = System.nanoTime();
+            int purged = context.getBean(MessageCompactor.class).compact();
+            System.out.printf("%-20s %10.1f ms for %d rows%n", "compaction",
+                    (System.nanoTime() - start) / 1e6, purged);
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static void run(JdbcTemplate jdbcTemplate, String label, String sql, List<Integer> ids)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong scans = new AtomicLong();
+        Thread scanner = new Thread(() -> {
+            int postedBy = 9996;
+            while (running.get()) {
+                jdbcTemplate.queryForList("SELECT messageId, messageText FROM message "
+                        + "WHERE postedBy = ? AND deleted = FALSE FETCH FIRST 50 ROWS ONLY",
+                        postedBy);
+                postedBy = postedBy == 9999 ? 9996 : postedBy + 1;
+                scans.incrementAndGet();
+            }
+        });
+        scanner.start();
+        long start = System.nanoTime();
+        for (Integer id : ids) {
+            jdbcTemplate.update(sql, id);
+        }
+        long elapsed = System.nanoTime() - start;
+        running.set(false);
+        scanner.join();
+        System.out.printf("%-20s %10.1f us/delete %10.0f scans/s alongside%n", label, elapsed / 1e3 / ids.size(),
+                scans.get() / (elapsed / 1e9));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Starts SocialMediaApp in a fresh process several times per configuration and reports the median time from process
+ * start to the first successful GET /messages, and the process RSS at that point (read from /proc, so Linux only).
+ * After the last start of each configuration it also measures steady-state throughput of GET /messages/9999; the fast
+ * profile does not seed data, so there the lookup misses.
+ *
+ * Configurations: the default profile on the JVM, the fast profile, the fast profile with the class-data sharing
+ * archive when {@code mvn -Pappcds package} has produced target/app-cds.jsa, and the native executable when
+ * {@code mvn -Pnative package} has produced target/social-media-app.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.StartupBenchmark}
+ */
+public class StartupBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int PORT = 18080;
+    private static final String MAIN_CLASS = "com.example.SocialMediaApp";
+    private static final int CLIENT_THREADS = 8;
+    private static final long WARMUP_MILLIS = 10_000;
+    private static final long MEASURE_MILLIS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = projectClasspath();
+        HttpClient client = HttpClient.newHttpClient();
+
+        System.out.printf("%-14s %22s %10s %12s %10s%n", "configuration", "time to first request", "RSS",
+                "requests/s", "RSS after");
+        measure(client, "default", List.of(java, "-cp", classpath, MAIN_CLASS));
+        measure(client, "fast", List.of(java, "-cp", classpath, MAIN_CLASS, "--spring.profiles.active=fast"));
+
+        Path archive = Paths.get("target", "app-cds.jsa");
+        Path archiveClasspath = Paths.get("target", "app-cds.classpath");
+        Path plainJar = Paths.get("target", "Challenges-1.1.jar");
+        if (Files.exists(archive) && Files.exists(archiveClasspath) && Files.exists(plainJar)) {
+            String cdsClasspath = plainJar + File.pathSeparator + Files.readString(archiveClasspath).trim();
+            measure(client, "fast + AppCDS", List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=off",
+                    "-cp", cdsClasspath, MAIN_CLASS, "--spring.profiles.active=fast"));
+        } else {
+            System.out.println("fast + AppCDS: skipped, run mvn -Pappcds package -DskipTests first");
+        }
+
+        Path nativeImage = Paths.get("target", "social-media-app");
+        if (Files.isExecutable(nativeImage)) {
+            measure(client, "native", List.of(nativeImage.toString()));
+        } else {
+            System.out.println("native: skipped, run mvn -Pnative package -DskipTests with GraalVM first");
+        }
+    }
+
+    private static void measure(HttpClient client, String label, List<String> command) throws Exception {
+        List<String> fullCommand = new ArrayList<>(command);
+        fullCommand.add("--server.port=" + PORT);
+        fullCommand.add("--logging.level.root=WARN");
+
+        long[] millis = new long[RUNS];
+        long[] rssKilobytes = new long[RUNS];
+        double throughput = 0;
+        long steadyRssKilobytes = 0;
+        for (int run = 0; run < RUNS; run++) {
+            Process process = new ProcessBuilder(fullCommand).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            long start = System.nanoTime();
+            try {
+                waitForFirstRequest(client, process);
+                millis[run] = (System.nanoTime() - start) / 1_000_000;
+                rssKilobytes[run] = rssKilobytes(process.pid());
+                if (run == RUNS - 1) {
+                    load(client, WARMUP_MILLIS);
+                    throughput = load(client, MEASURE_MILLIS);
+                    steadyRssKilobytes = rssKilobytes(process.pid());
+                }
+            } finally {
+                process.destroy();
+                process.waitFor();
+            }
+        }
+        Arrays.sort(millis);
+        Arrays.sort(rssKilobytes);
+        System.out.printf("%-14s %19d ms %7d MB %12.0f %7d MB%n", label, millis[RUNS / 2],
+                rssKilobytes[RUNS / 2] / 1024, throughput, steadyRssKilobytes / 1024);
+    }
+
+    /**
+     * Sends GET /messages/9999 from several threads for the given time.
+     *
+     * @return Requests per second.
+     */
+    private static double load(HttpClient client, long durationMillis) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/messages/9999")).build();
+        long deadline = System.currentTimeMillis() + durationMillis;
+        LongAdder completed = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                while (System.currentTimeMillis() < deadline) {
+                    try {
+                        client.send(request, HttpResponse.BodyHandlers.discarding());
+                        completed.increment();
+                    } catch (IOException e) {
+                        // Counted as not completed
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return completed.sum() * 1000.0 / durationMillis;
+    }
+
+    private static void waitForFirstRequest(HttpClient client, Process process) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/messages")).build();
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with code " + process.exitValue());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static long rssKilobytes(long pid) throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc", String.valueOf(pid), "status"))) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The application's class path; under exec:java it is only known to the context class loader.
+     */
+    private static String projectClasspath() {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        if (loader instanceof URLClassLoader) {
+            return Arrays.stream(((URLClassLoader) loader).getURLs())
+                    .map(URL::getFile)
+                    .collect(Collectors.joining(File.pathSeparator));
+        }
+        return System.getProperty("java.class.path");
+    }
+}
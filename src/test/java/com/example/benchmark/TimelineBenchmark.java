@@ -0,0 +1,107 @@
+package com.example.benchmark;
+
+import com.example.SocialMediaApp;
+import com.example.dto.MessagePage;
+import com.example.entity.Message;
+import com.example.repository.MessageRepository;
+import com.example.service.MessageService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Builds the first two 20-message pages of a combined timeline of 10 random accounts out of 100, each with 2,000
+ * messages, in two ways: the way clients do it today, reading every account's full history and sorting it, and with
+ * {@link MessageService#getTimeline}, which merges per-account index cursors. The query cache is off, as it is after
+ * any write to the message table. Also prints the query plan of one account's cursor.
+ *
+ * Not a unit test; run it with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.example.benchmark.TimelineBenchmark}
+ */
+public class TimelineBenchmark {
+
+    private static final int ACCOUNTS = 100;
+    private static final int MESSAGES_PER_ACCOUNT = 2_000;
+    private static final int FOLLOWED = 10;
+    private static final int PAGE_SIZE = 20;
+    private static final int REQUESTS = 200;
+    private static final Comparator<Message> NEWEST_FIRST = Comparator.comparing(Message::getTimePostedEpoch)
+            .thenComparing(Message::getMessageId).reversed();
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = SpringApplication.run(SocialMediaApp.class, "--server.port=0",
+                "--logging.level.root=WARN", "--app.rate-limit.messages.enabled=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false");
+        try {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            List<Object[]> accounts = new ArrayList<>();
+            for (int i = 1; i <= ACCOUNTS; i++) {
+                accounts.add(new Object[]{i, "timeline" + i, "password"});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO account (accountId, username, password) VALUES (?, ?, ?)", accounts);
+            Random random = new Random(42);
+            List<Message> messages = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS * MESSAGES_PER_ACCOUNT; i++) {
+                messages.add(new Message(1 + random.nextInt(ACCOUNTS), "timeline message " + i,
+                        1669947792L + random.nextInt(10_000_000)));
+            }
+            context.getBean(MessageRepository.class).insertAll(messages);
+
+            for (Map<String, Object> row : jdbcTemplate.queryForList("EXPLAIN SELECT messageId FROM message "
+                    + "WHERE postedBy = 1 AND deleted = FALSE AND timePostedEpoch IS NOT NULL "
+                    + "ORDER BY postedBy, deleted, timePostedEpoch DESC, messageId DESC FETCH FIRST 21 ROWS ONLY")) {
+                System.out.println(row.values().iterator().next());
+            }
+
+            MessageService messageService = context.getBean(MessageService.class);
+            // Warm-up pass, then the measured one
+            for (int pass = 0; pass < 2; pass++) {
+                long checksum = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < REQUESTS; i++) {
+                    List<Message> timeline = new ArrayList<>();
+                    for (Integer accountId : followed(new Random(i))) {
+                        timeline.addAll(messageService.getMessagesByAccountId(accountId));
+                    }
+                    timeline.sort(NEWEST_FIRST);
+                    checksum += timeline.get(0).getMessageId() + timeline.get(2 * PAGE_SIZE - 1).getMessageId();
+                }
+                long historiesNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < REQUESTS; i++) {
+                    List<Integer> followed = followed(new Random(i));
+                    MessagePage first = messageService.getTimeline(followed, PAGE_SIZE, null);
+                    MessagePage second = messageService.getTimeline(followed, PAGE_SIZE, first.getNextCursor());
+                    checksum -= first.getMessages().get(0).getMessageId()
+                            + second.getMessages().get(PAGE_SIZE - 1).getMessageId();
+                }
+                long timelineNanos = System.nanoTime() - start;
+                if (pass == 1) {
+                    System.out.printf("full histories + sort  %8.2f ms per two pages%n", historiesNanos / 1e6 / REQUESTS);
+                    System.out.printf("merged index cursors   %8.2f ms per two pages%n", timelineNanos / 1e6 / REQUESTS);
+                    System.out.println(checksum == 0 ? "pages match" : "PAGES DIFFER");
+                }
+            }
+        } finally {
+            SpringApplication.exit(context);
+        }
+    }
+
+    private static List<Integer> followed(Random random) {
+        List<Integer> followed = new ArrayList<>(FOLLOWED);
+        while (followed.size() < FOLLOWED) {
+            int accountId = 1 + random.nextInt(ACCOUNTS);
+            if (!followed.contains(accountId)) {
+                followed.add(accountId);
+            }
+        }
+        return followed;
+    }
+}